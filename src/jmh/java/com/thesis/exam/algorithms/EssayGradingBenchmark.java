@@ -0,0 +1,200 @@
+package com.thesis.exam.algorithms;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Essays graded per second by VotingBasedEssayGradingAlgorithm, before and after the
+ * single-pass EssayFeatures extractor.
+ *
+ * legacyGradeEssay is the regex-based grading the extractor replaced (kept below as
+ * LegacyGrader); gradeEssay is the current algorithm, and gradeEssayWithProfile reuses a
+ * prepared reference profile as EssayProfileCache does. Each operation grades one of
+ * ESSAYS synthetic 150-400 word essays.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EssayGradingBenchmark {
+
+    private static final int ESSAYS = 2000;
+
+    private static final String[] VOCABULARY = {
+            "the", "a", "of", "and", "to", "in", "is", "for", "with", "by", "process", "memory", "thread",
+            "scheduler", "state", "kernel", "resource", "deadlock", "mutex", "semaphore", "virtual", "page",
+            "cache", "disk", "network", "packet", "protocol", "layer", "data", "structure", "algorithm",
+            "complexity", "however", "therefore", "moreover", "thus", "first", "second", "finally",
+            "because", "system", "design", "performance", "latency", "throughput", "consistency"
+    };
+
+    private final VotingBasedEssayGradingAlgorithm algorithm = new VotingBasedEssayGradingAlgorithm();
+
+    private String[] essays;
+    private String reference;
+    private List<String> keywords;
+    private EssayReferenceProfile profile;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        essays = new String[ESSAYS];
+        for (int i = 0; i < ESSAYS; i++) {
+            essays[i] = essay(random, 150 + random.nextInt(251));
+        }
+        reference = essay(random, 250);
+        keywords = List.of("deadlock", "mutex", "virtual memory", "scheduler", "page");
+        profile = EssayReferenceProfile.build(reference, keywords);
+    }
+
+    @Benchmark
+    public double legacyGradeEssay() {
+        return LegacyGrader.gradeEssay(nextEssay(), reference, keywords);
+    }
+
+    @Benchmark
+    public double gradeEssay() {
+        return algorithm.gradeEssay(nextEssay(), reference, keywords);
+    }
+
+    @Benchmark
+    public double gradeEssayWithProfile() {
+        return algorithm.gradeEssay(nextEssay(), profile);
+    }
+
+    @Benchmark
+    public EssayFeatures extractFeatures() {
+        return EssayFeatures.extract(nextEssay());
+    }
+
+    private String nextEssay() {
+        String essay = essays[next];
+        next = next + 1 == ESSAYS ? 0 : next + 1;
+        return essay;
+    }
+
+    private static String essay(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            String word = VOCABULARY[random.nextInt(VOCABULARY.length)];
+            text.append(w == 0 || text.charAt(text.length() - 2) == '.'
+                    ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            text.append(random.nextInt(12) == 0 ? ". " : random.nextInt(10) == 0 ? ", " : " ");
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Grading as it was before EssayFeatures: regex splits and repeated lowercasing per voter.
+     */
+    static final class LegacyGrader {
+
+        private static final String[] TRANSITIONS = {"however", "therefore", "moreover", "furthermore",
+                "additionally", "consequently", "thus", "hence", "first", "second", "finally", "in conclusion"};
+
+        static double gradeEssay(String essay, String reference, List<String> keywords) {
+            if (essay == null || essay.trim().isEmpty()) {
+                return 0.0;
+            }
+            double score = keywordPresence(essay, keywords) * 0.30
+                    + length(essay, reference) * 0.15
+                    + vocabulary(essay) * 0.15
+                    + coherence(essay) * 0.20
+                    + similarity(essay, reference) * 0.20;
+            return Math.max(0.0, Math.min(1.0, score));
+        }
+
+        private static double keywordPresence(String essay, List<String> keywords) {
+            if (keywords == null || keywords.isEmpty()) {
+                return 1.0;
+            }
+            String essayLower = essay.toLowerCase();
+            int found = 0;
+            for (String keyword : keywords) {
+                if (essayLower.contains(keyword.toLowerCase())) {
+                    found++;
+                }
+            }
+            return (double) found / keywords.size();
+        }
+
+        private static double length(String essay, String reference) {
+            int essayWords = countWords(essay);
+            int refWords = countWords(reference);
+            if (refWords == 0) {
+                return 1.0;
+            }
+            double ratio = (double) essayWords / refWords;
+            if (ratio >= 0.7 && ratio <= 1.5) {
+                return 1.0;
+            } else if (ratio >= 0.5 && ratio <= 2.0) {
+                return 0.7;
+            } else if (ratio >= 0.3 && ratio <= 3.0) {
+                return 0.4;
+            }
+            return 0.2;
+        }
+
+        private static double vocabulary(String essay) {
+            String[] words = essay.toLowerCase().split("\\s+");
+            Set<String> unique = new HashSet<>(Arrays.asList(words));
+            return Math.min(1.0, ((double) unique.size() / words.length) / 0.7);
+        }
+
+        private static double coherence(String essay) {
+            String[] sentences = essay.split("[.!?]+");
+            if (sentences.length < 2) {
+                return 0.5;
+            }
+            String essayLower = essay.toLowerCase();
+            int transitions = 0;
+            for (String transition : TRANSITIONS) {
+                if (essayLower.contains(transition)) {
+                    transitions++;
+                }
+            }
+            return Math.min(1.0, transitions / (sentences.length / 3.0));
+        }
+
+        private static double similarity(String essay, String reference) {
+            Set<String> essayWords = new HashSet<>(Arrays.asList(essay.toLowerCase().split("\\s+")));
+            Set<String> refWords = new HashSet<>(Arrays.asList(reference.toLowerCase().split("\\s+")));
+            Set<String> stopWords = new HashSet<>(Arrays.asList("the", "a", "an", "and", "or", "but", "is",
+                    "are", "was", "were", "in", "on", "at", "to", "for", "of", "with", "by"));
+            essayWords.removeAll(stopWords);
+            refWords.removeAll(stopWords);
+            Set<String> intersection = new HashSet<>(essayWords);
+            intersection.retainAll(refWords);
+            Set<String> union = new HashSet<>(essayWords);
+            union.addAll(refWords);
+            return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
+        }
+
+        private static int countWords(String text) {
+            if (text == null || text.trim().isEmpty()) {
+                return 0;
+            }
+            return text.trim().split("\\s+").length;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.thesis.exam.algorithms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of one Computerized Adaptive Testing (CAT) session
+ *
+ * Flow:
+ * 1. nextItem() picks an unasked item with maximum information at the current theta
+ *    (randomly among the top randomesqueSize items, for exposure control)
+ * 2. recordResponse() folds the answer into an EAP posterior over a fixed theta grid
+ * 3. The session stops once the standard error drops below the target
+ *    (after a minimum number of items) or the maximum length is reached
+ *
+ * The item bank is shared between sessions; per-session state is a bitset of
+ * asked items, the grid posterior and the administered sequence, so thousands
+ * of concurrent sessions fit comfortably in memory.
+ */
+public class AdaptiveTestSession {
+
+    private final IRTBloomTaxonomyAlgorithm irtAlgorithm;
+    private final ItemParameterBank bank;
+    private final int minItems;
+    private final int maxItems;
+    private final double targetStandardError;
+    private final int randomesqueSize;
+
+    private final BitSet asked;
+    private final double[] logPosterior;
+    private final int[] administered;
+    private final BitSet correct;
+    private final String[] answers;
+    private final int[] responseTimes;
+
+    private int administeredCount = 0;
+    private int pendingItem = -1;
+    private double theta;
+    private double standardError;
+    private boolean finished = false;
+
+    public AdaptiveTestSession(IRTBloomTaxonomyAlgorithm irtAlgorithm, ItemParameterBank bank,
+                               int minItems, int maxItems, double targetStandardError,
+                               int randomesqueSize) {
+        this.irtAlgorithm = irtAlgorithm;
+        this.bank = bank;
+        this.minItems = minItems;
+        this.maxItems = Math.min(maxItems, bank.size());
+        this.targetStandardError = targetStandardError;
+        this.randomesqueSize = randomesqueSize;
+
+        this.asked = new BitSet(bank.size());
+        this.logPosterior = irtAlgorithm.priorLogPosterior();
+        this.administered = new int[this.maxItems];
+        this.correct = new BitSet(this.maxItems);
+        this.answers = new String[this.maxItems];
+        this.responseTimes = new int[this.maxItems];
+
+        double[] estimate = irtAlgorithm.estimateAbilityEAP(logPosterior);
+        this.theta = estimate[0];
+        this.standardError = estimate[1];
+        this.finished = this.maxItems == 0;
+    }
+
+    /**
+     * Returns the bank index of the item the student should answer next,
+     * or -1 if the session is finished
+     */
+    public synchronized int nextItem() {
+        if (finished) {
+            return -1;
+        }
+        if (pendingItem < 0) {
+            pendingItem = irtAlgorithm.selectNextQuestion(theta, bank, asked, randomesqueSize);
+            if (pendingItem < 0) {
+                finished = true;
+            }
+        }
+        return pendingItem;
+    }
+
+    /**
+     * Record the answer to the pending item and update the ability estimate
+     *
+     * @throws IllegalStateException if itemIndex is not the item that was handed out
+     */
+    public void recordResponse(int itemIndex, boolean isCorrect) {
+        recordResponse(itemIndex, isCorrect, null, -1);
+    }
+
+    /**
+     * Same as recordResponse(itemIndex, isCorrect), also keeping the answer text and
+     * response time (milliseconds, -1 if unknown) for the response history
+     */
+    public synchronized void recordResponse(int itemIndex, boolean isCorrect, String answer, int responseTimeMillis) {
+        if (finished || itemIndex != pendingItem) {
+            throw new IllegalStateException("Item " + itemIndex + " is not awaiting an answer in this session");
+        }
+
+        asked.set(itemIndex);
+        irtAlgorithm.updateLogPosterior(logPosterior, bank.a(itemIndex), bank.b(itemIndex), bank.c(itemIndex), isCorrect);
+        double[] estimate = irtAlgorithm.estimateAbilityEAP(logPosterior);
+        theta = estimate[0];
+        standardError = estimate[1];
+
+        if (isCorrect) {
+            correct.set(administeredCount);
+        }
+        answers[administeredCount] = answer;
+        responseTimes[administeredCount] = responseTimeMillis;
+        administered[administeredCount++] = itemIndex;
+        pendingItem = -1;
+
+        boolean precise = administeredCount >= minItems && standardError <= targetStandardError;
+        if (precise || administeredCount >= maxItems) {
+            finished = true;
+        }
+    }
+
+    /**
+     * Drop the pending item without an answer (e.g. its question no longer exists): it is never
+     * handed out again, and the ability estimate and response history are left unchanged
+     *
+     * @throws IllegalStateException if no item is pending
+     */
+    public synchronized void skipPending() {
+        if (finished || pendingItem < 0) {
+            throw new IllegalStateException("No item is awaiting an answer in this session");
+        }
+        asked.set(pendingItem);
+        pendingItem = -1;
+    }
+
+    public synchronized long pendingQuestionId() {
+        return pendingItem >= 0 ? bank.questionId(pendingItem) : -1;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized double getTheta() {
+        return theta;
+    }
+
+    public synchronized double getStandardError() {
+        return standardError;
+    }
+
+    public synchronized int getAdministeredCount() {
+        return administeredCount;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Question IDs in the order they were administered
+     */
+    public synchronized List<Long> getAdministeredQuestionIds() {
+        List<Long> ids = new ArrayList<>(administeredCount);
+        for (int i = 0; i < administeredCount; i++) {
+            ids.add(bank.questionId(administered[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Question IDs that were answered correctly
+     */
+    public synchronized List<Long> getCorrectQuestionIds() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = correct.nextSetBit(0); i >= 0 && i < administeredCount; i = correct.nextSetBit(i + 1)) {
+            ids.add(bank.questionId(administered[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Answer text by question ID (questions answered without text are omitted)
+     */
+    public synchronized Map<Long, String> getAnswers() {
+        Map<Long, String> byQuestion = new HashMap<>();
+        for (int i = 0; i < administeredCount; i++) {
+            if (answers[i] != null) {
+                byQuestion.put(bank.questionId(administered[i]), answers[i]);
+            }
+        }
+        return byQuestion;
+    }
+
+    /**
+     * Response time in milliseconds by question ID (unknown times are omitted)
+     */
+    public synchronized Map<Long, Integer> getResponseTimes() {
+        Map<Long, Integer> byQuestion = new HashMap<>();
+        for (int i = 0; i < administeredCount; i++) {
+            if (responseTimes[i] >= 0) {
+                byQuestion.put(bank.questionId(administered[i]), responseTimes[i]);
+            }
+        }
+        return byQuestion;
+    }
+}
@@ -0,0 +1,28 @@
+package com.thesis.exam.algorithms;
+
+/**
+ * Immutable coefficients of the difficulty regression
+ * difficulty = beta0 + beta1 * mastery + beta2 * normalizedResponseTime + beta3 * recentAccuracy.
+ *
+ * LinearRegressionDifficultyAlgorithm publishes a new instance instead of changing coefficients,
+ * so a prediction always sees one consistent set.
+ */
+public record DifficultyModel(double beta0, double beta1, double beta2, double beta3) {
+
+    // Untrained starting coefficients
+    public static final DifficultyModel DEFAULT = new DifficultyModel(0.5, 0.8, -0.1, 0.6);
+
+    // Response times are normalized to 0-1 over this range (seconds)
+    public static final double MAX_RESPONSE_TIME = 300.0;
+
+    public static double normalizeResponseTime(double avgResponseTime) {
+        return Math.min(avgResponseTime / MAX_RESPONSE_TIME, 1.0);
+    }
+
+    /**
+     * Unclamped prediction from already normalized features.
+     */
+    public double predictRaw(double mastery, double normalizedTime, double recentAccuracy) {
+        return beta0 + beta1 * mastery + beta2 * normalizedTime + beta3 * recentAccuracy;
+    }
+}
@@ -0,0 +1,158 @@
+package com.thesis.exam.algorithms;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the essay voters need from one text, extracted in a single pass.
+ *
+ * Words are runs of non-whitespace characters; a word's term is the word lowercased
+ * with leading and trailing punctuation removed ("State." and "state" are the same term).
+ * Sentences are the pieces between runs of '.', '!' or '?'.
+ */
+public final class EssayFeatures {
+
+    // Words ignored by the similarity voter
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "a", "an", "and", "or", "but", "is", "are", "was", "were",
+            "in", "on", "at", "to", "for", "of", "with", "by");
+
+    // Transition words counted by the coherence voter (bit index per word);
+    // "in conclusion" is matched as the two terms "in" + "conclusion"
+    private static final Map<String, Integer> SINGLE_WORD_TRANSITIONS = Map.ofEntries(
+            Map.entry("however", 0), Map.entry("therefore", 1), Map.entry("moreover", 2),
+            Map.entry("furthermore", 3), Map.entry("additionally", 4), Map.entry("consequently", 5),
+            Map.entry("thus", 6), Map.entry("hence", 7), Map.entry("first", 8),
+            Map.entry("second", 9), Map.entry("finally", 10));
+    private static final int IN_CONCLUSION = 11;
+
+    private final String lowerText;
+    private final int wordCount;
+    private final int uniqueWordCount;
+    private final int sentenceCount;
+    private final int transitionCount;
+    private final Set<String> terms;
+
+    private EssayFeatures(String lowerText, int wordCount, int uniqueWordCount, int sentenceCount,
+                          int transitionCount, Set<String> terms) {
+        this.lowerText = lowerText;
+        this.wordCount = wordCount;
+        this.uniqueWordCount = uniqueWordCount;
+        this.sentenceCount = sentenceCount;
+        this.transitionCount = transitionCount;
+        this.terms = terms;
+    }
+
+    /**
+     * Extract the features of a text (null is treated as empty).
+     */
+    public static EssayFeatures extract(String text) {
+        String lower = text != null ? text.toLowerCase(Locale.ROOT) : "";
+        int length = lower.length();
+
+        Set<String> uniqueWords = new HashSet<>();
+        Set<String> terms = new HashSet<>();
+        int wordCount = 0;
+        int sentenceCount = 1;
+        int transitionMask = 0;
+        boolean previousWasIn = false;
+
+        int i = 0;
+        while (i < length) {
+            char ch = lower.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+                continue;
+            }
+
+            // One word: [start, end)
+            int start = i;
+            while (i < length && !Character.isWhitespace(lower.charAt(i))) {
+                char c = lower.charAt(i);
+                if (isSentenceEnd(c)) {
+                    // Count a run of terminators once, and only if more text follows it
+                    while (i + 1 < length && isSentenceEnd(lower.charAt(i + 1))) {
+                        i++;
+                    }
+                    if (i + 1 < length) {
+                        sentenceCount++;
+                    }
+                }
+                i++;
+            }
+            int end = i;
+            wordCount++;
+
+            int termStart = start;
+            int termEnd = end;
+            while (termStart < termEnd && !Character.isLetterOrDigit(lower.charAt(termStart))) {
+                termStart++;
+            }
+            while (termEnd > termStart && !Character.isLetterOrDigit(lower.charAt(termEnd - 1))) {
+                termEnd--;
+            }
+            if (termStart == termEnd) {
+                uniqueWords.add(lower.substring(start, end));
+                previousWasIn = false;
+                continue;
+            }
+
+            String term = lower.substring(termStart, termEnd);
+            uniqueWords.add(term);
+            if (!STOP_WORDS.contains(term)) {
+                terms.add(term);
+            }
+
+            Integer transition = SINGLE_WORD_TRANSITIONS.get(term);
+            if (transition != null) {
+                transitionMask |= 1 << transition;
+            } else if (previousWasIn && term.equals("conclusion")) {
+                transitionMask |= 1 << IN_CONCLUSION;
+            }
+            previousWasIn = term.equals("in");
+        }
+
+        return new EssayFeatures(lower, wordCount, uniqueWords.size(), sentenceCount,
+                Integer.bitCount(transitionMask), Collections.unmodifiableSet(terms));
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    /**
+     * The text lowercased (for substring keyword checks).
+     */
+    public String lowerText() {
+        return lowerText;
+    }
+
+    public int wordCount() {
+        return wordCount;
+    }
+
+    public int uniqueWordCount() {
+        return uniqueWordCount;
+    }
+
+    public int sentenceCount() {
+        return sentenceCount;
+    }
+
+    /**
+     * Number of distinct transition words used.
+     */
+    public int transitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Distinct terms without stop words (unmodifiable).
+     */
+    public Set<String> terms() {
+        return terms;
+    }
+}
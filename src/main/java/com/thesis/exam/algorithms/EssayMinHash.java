@@ -0,0 +1,122 @@
+package com.thesis.exam.algorithms;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures of essays for near-duplicate (copied essay) detection.
+ *
+ * An essay is reduced to its set of word 3-shingles (lowercased words with surrounding
+ * punctuation removed), and the signature keeps the minimum of each of SIGNATURE_SIZE hash
+ * functions over that set. The fraction of equal positions in two signatures estimates the
+ * Jaccard similarity of the shingle sets, so essays can be compared without keeping their text.
+ * Signatures are split into BANDS bands of ROWS rows for locality-sensitive hashing (LshIndex).
+ */
+@Component
+public class EssayMinHash {
+
+    public static final int SHINGLE_WORDS = 3;
+    public static final int BANDS = 20;
+    public static final int ROWS = 6;
+    public static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+    // Shorter answers share too much ordinary phrasing to tell copying apart
+    public static final int MIN_WORDS = 20;
+
+    // Fixed seed so signatures stay comparable across restarts
+    private static final long SEED = 0x5DEECE66DL;
+
+    // Multiply-shift hash functions h(x) = (a * x + b) >>> 33 with odd a (non-negative ints)
+    private static final long[] MULTIPLIERS = new long[SIGNATURE_SIZE];
+    private static final long[] OFFSETS = new long[SIGNATURE_SIZE];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            MULTIPLIERS[i] = random.nextLong() | 1L;
+            OFFSETS[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Signature of an essay, or null if it has fewer than MIN_WORDS words.
+     */
+    public int[] signature(String essay) {
+        if (essay == null) {
+            return null;
+        }
+        String lower = essay.toLowerCase(Locale.ROOT);
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        // Rolling window of the last SHINGLE_WORDS word hashes
+        long[] window = new long[SHINGLE_WORDS];
+        int words = 0;
+        int length = lower.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            long wordHash = 1125899906842597L;
+            while (i < length && !Character.isWhitespace(lower.charAt(i))) {
+                char c = lower.charAt(i++);
+                if (Character.isLetterOrDigit(c)) {
+                    wordHash = 31 * wordHash + c;
+                }
+            }
+            window[words % SHINGLE_WORDS] = mix(wordHash);
+            words++;
+            if (words >= SHINGLE_WORDS) {
+                long shingle = 0;
+                for (int w = words - SHINGLE_WORDS; w < words; w++) {
+                    shingle = mix(shingle * 31 + window[w % SHINGLE_WORDS]);
+                }
+                for (int h = 0; h < SIGNATURE_SIZE; h++) {
+                    int value = (int) ((MULTIPLIERS[h] * shingle + OFFSETS[h]) >>> 33);
+                    if (value < signature[h]) {
+                        signature[h] = value;
+                    }
+                }
+            }
+        }
+        return words >= MIN_WORDS ? signature : null;
+    }
+
+    /**
+     * Estimated Jaccard similarity (0 to 1) of the essays behind two signatures.
+     */
+    public double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    /**
+     * Hash of one band of a signature (the LSH bucket key).
+     */
+    public static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) {
+            key = mix(key * 31 + signature[r]);
+        }
+        return key;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
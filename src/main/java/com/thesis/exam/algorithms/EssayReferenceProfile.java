@@ -0,0 +1,37 @@
+package com.thesis.exam.algorithms;
+
+import java.util.List;
+
+/**
+ * The reference-answer side of essay grading, prepared once per question.
+ *
+ * Holds the reference answer's features (term set, word count) and a keyword
+ * automaton, so grading many essays for the same question only analyses the
+ * essays themselves. Immutable and safe to share between threads.
+ */
+public final class EssayReferenceProfile {
+
+    private final EssayFeatures reference;
+    private final KeywordMatcher keywords;
+
+    private EssayReferenceProfile(EssayFeatures reference, KeywordMatcher keywords) {
+        this.reference = reference;
+        this.keywords = keywords;
+    }
+
+    /**
+     * @param referenceAnswer The model answer (null is treated as empty)
+     * @param keywords Important keywords, or null/empty for none
+     */
+    public static EssayReferenceProfile build(String referenceAnswer, List<String> keywords) {
+        return new EssayReferenceProfile(EssayFeatures.extract(referenceAnswer), KeywordMatcher.of(keywords));
+    }
+
+    public EssayFeatures reference() {
+        return reference;
+    }
+
+    public KeywordMatcher keywords() {
+        return keywords;
+    }
+}
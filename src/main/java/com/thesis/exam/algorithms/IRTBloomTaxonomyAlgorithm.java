@@ -2,6 +2,9 @@ package com.thesis.exam.algorithms;
 
 import org.springframework.stereotype.Component;
 
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Item Response Theory (IRT) with Bloom's Taxonomy Integration
  * 
@@ -24,6 +27,21 @@ import org.springframework.stereotype.Component;
 @Component
 public class IRTBloomTaxonomyAlgorithm {
     
+    /**
+     * Fixed quadrature grid over the ability scale (-4 to +4 in steps of 0.1)
+     * Used for Expected A Posteriori (EAP) ability estimation
+     */
+    public static final double[] THETA_GRID = buildThetaGrid(-4.0, 4.0, 81);
+    
+    private static double[] buildThetaGrid(double min, double max, int points) {
+        double[] grid = new double[points];
+        double step = (max - min) / (points - 1);
+        for (int k = 0; k < points; k++) {
+            grid[k] = min + k * step;
+        }
+        return grid;
+    }
+    
     /**
      * Calculate probability of correct answer using 3PL IRT model
      * 
@@ -90,13 +108,15 @@ public class IRTBloomTaxonomyAlgorithm {
     /**
      * Calculate information function for an item
      * Higher information = more precise ability estimation
+     * 
+     * 3PL item information: I(θ) = a² * (Q/P) * ((P - c) / (1 - c))²
      */
     public double calculateInformation(double theta, double a, double b, double c) {
         double p = calculateProbability(theta, a, b, c);
         double pStar = (p - c) / (1 - c);
         double q = 1 - p;
         
-        return (a * a * pStar * (1 - pStar)) / (p * q);
+        return a * a * (q / p) * pStar * pStar;
     }
     
     /**
@@ -137,4 +157,183 @@ public class IRTBloomTaxonomyAlgorithm {
         
         return bestQuestion;
     }
+    
+    /**
+     * Bulk information evaluation over a contiguous slice of an item bank
+     * Writes I(θ) for items [from, to) into out[0 .. to-from) in one tight loop over primitive arrays
+     */
+    public void calculateInformation(double theta, ItemParameterBank bank, int from, int to, double[] out) {
+        double[] a = bank.discriminations();
+        double[] b = bank.difficulties();
+        double[] c = bank.guessings();
+        
+        for (int i = from; i < to; i++) {
+            double ai = a[i];
+            double ci = c[i];
+            double pStar = 1 / (1 + Math.exp(-ai * (theta - b[i])));
+            double p = ci + (1 - ci) * pStar;
+            out[i - from] = ai * ai * ((1 - p) / p) * pStar * pStar;
+        }
+    }
+    
+    /**
+     * Bulk information evaluation for every item in a bank
+     */
+    public double[] calculateInformation(double theta, ItemParameterBank bank) {
+        double[] out = new double[bank.size()];
+        calculateInformation(theta, bank, 0, bank.size(), out);
+        return out;
+    }
+    
+    /**
+     * Select next best question from an item bank using Maximum Information criterion
+     * Skips items already set in the alreadyAsked bitset
+     * 
+     * @return Index of the best item in the bank, or -1 if every item has been asked
+     */
+    public int selectNextQuestion(double currentTheta, ItemParameterBank bank, BitSet alreadyAsked) {
+        return selectNextQuestion(currentTheta, bank, alreadyAsked, 1);
+    }
+    
+    /**
+     * Randomesque item selection (exposure control)
+     * Picks uniformly at random among the randomesqueSize most informative unasked items,
+     * so the single best item at each theta is not given to every student
+     * 
+     * Every non-empty bucket of the bank's b index gets an upper bound on the information its
+     * items can give at theta. Buckets are visited in descending order of that bound, and the
+     * search stops once the best remaining bound cannot beat the k-th best item found, so on
+     * large banks only items with b near theta are evaluated and the result is the same as a
+     * full scan.
+     * 
+     * @return Index of the chosen item in the bank, or -1 if every item has been asked
+     */
+    public int selectNextQuestion(double currentTheta, ItemParameterBank bank, BitSet alreadyAsked,
+                                  int randomesqueSize) {
+        int k = Math.max(1, randomesqueSize);
+        int[] topItems = new int[k];
+        double[] topInfo = new double[k];
+        int found = 0;
+        double threshold = -1;  // information of the k-th best item once k items are found
+        double[] info = new double[bank.maxBucketSize()];
+        
+        // Non-empty buckets sorted by descending bound (insertion sort, at most BUCKETS entries)
+        int[] order = new int[ItemParameterBank.BUCKETS];
+        double[] bounds = new double[ItemParameterBank.BUCKETS];
+        int buckets = 0;
+        for (int bucket = 0; bucket < ItemParameterBank.BUCKETS; bucket++) {
+            if (bank.bucketStart(bucket) == bank.bucketEnd(bucket)) {
+                continue;
+            }
+            double bound = informationUpperBound(bank, bucket, currentTheta);
+            int pos = buckets++;
+            while (pos > 0 && bounds[pos - 1] < bound) {
+                bounds[pos] = bounds[pos - 1];
+                order[pos] = order[pos - 1];
+                pos--;
+            }
+            bounds[pos] = bound;
+            order[pos] = bucket;
+        }
+        
+        for (int visited = 0; visited < buckets; visited++) {
+            if (bounds[visited] <= threshold) {
+                break;
+            }
+            int bucket = order[visited];
+            int from = bank.bucketStart(bucket);
+            int to = bank.bucketEnd(bucket);
+            calculateInformation(currentTheta, bank, from, to, info);
+            for (int i = from; i < to; i++) {
+                double value = info[i - from];
+                if (value > threshold && !alreadyAsked.get(i)) {
+                    // Insert into the descending top-k list
+                    int pos = Math.min(found, k - 1);
+                    while (pos > 0 && topInfo[pos - 1] < value) {
+                        topInfo[pos] = topInfo[pos - 1];
+                        topItems[pos] = topItems[pos - 1];
+                        pos--;
+                    }
+                    topInfo[pos] = value;
+                    topItems[pos] = i;
+                    if (found < k) {
+                        found++;
+                    }
+                    if (found == k) {
+                        threshold = topInfo[k - 1];
+                    }
+                }
+            }
+        }
+        
+        if (found == 0) {
+            return -1;
+        }
+        return found == 1 ? topItems[0] : topItems[ThreadLocalRandom.current().nextInt(found)];
+    }
+    
+    /**
+     * Upper bound on the information any item in a non-empty bucket can give at theta
+     * 3PL information never exceeds the 2PL value a²P*Q*, and P*Q* <= min(1/4, e^(-a|θ-b|))
+     */
+    private double informationUpperBound(ItemParameterBank bank, int bucket, double theta) {
+        double aMax = bank.bucketMaxDiscrimination(bucket);
+        double distance = ItemParameterBank.bucketDistance(bucket, theta);
+        double peak = aMax * aMax / 4;
+        if (distance <= 0) {
+            return peak;
+        }
+        // a² e^(-a d) is largest at a = 2/d
+        double a = Math.min(aMax, 2.0 / distance);
+        return Math.min(peak, a * a * Math.exp(-a * distance));
+    }
+    
+    /**
+     * Fold one response into a log-posterior over THETA_GRID
+     * Each response only adds log P (or log Q) at every grid point, so the
+     * ability estimate is updated in O(grid) without revisiting earlier responses
+     */
+    public void updateLogPosterior(double[] logPosterior, double a, double b, double c, boolean correct) {
+        for (int k = 0; k < THETA_GRID.length; k++) {
+            double p = calculateProbability(THETA_GRID[k], a, b, c);
+            // Clamp to avoid log(0) for extreme parameters
+            p = Math.max(1e-10, Math.min(1 - 1e-10, p));
+            logPosterior[k] += correct ? Math.log(p) : Math.log(1 - p);
+        }
+    }
+    
+    /**
+     * Log-density of the standard normal prior at each THETA_GRID point (up to a constant)
+     */
+    public double[] priorLogPosterior() {
+        double[] logPosterior = new double[THETA_GRID.length];
+        for (int k = 0; k < THETA_GRID.length; k++) {
+            logPosterior[k] = -0.5 * THETA_GRID[k] * THETA_GRID[k];
+        }
+        return logPosterior;
+    }
+    
+    /**
+     * Expected A Posteriori estimate from a log-posterior over THETA_GRID
+     * 
+     * @return {theta, standard error}
+     */
+    public double[] estimateAbilityEAP(double[] logPosterior) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : logPosterior) {
+            max = Math.max(max, value);
+        }
+        
+        double total = 0, mean = 0, meanSquare = 0;
+        for (int k = 0; k < THETA_GRID.length; k++) {
+            double weight = Math.exp(logPosterior[k] - max);
+            total += weight;
+            mean += weight * THETA_GRID[k];
+            meanSquare += weight * THETA_GRID[k] * THETA_GRID[k];
+        }
+        mean /= total;
+        double variance = Math.max(0.0, meanSquare / total - mean * mean);
+        
+        return new double[]{mean, Math.sqrt(variance)};
+    }
 }
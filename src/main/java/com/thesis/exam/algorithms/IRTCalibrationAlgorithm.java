@@ -0,0 +1,406 @@
+package com.thesis.exam.algorithms;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * IRT item calibration by Marginal Maximum Likelihood (Bock-Aitkin EM)
+ *
+ * Jointly estimates a, b and c of the 3PL model for every item from the response history.
+ * Ability is integrated out over the fixed quadrature grid IRTBloomTaxonomyAlgorithm.THETA_GRID
+ * with a standard normal prior, which also fixes the scale of the parameters.
+ *
+ * Each EM cycle:
+ * 1. E-step (persons): posterior weight of every grid point for every person
+ * 2. E-step (items): expected number of attempts n_k and correct answers r_k at each grid point
+ * 3. M-step (items): a few Fisher scoring steps per item on the expected log-likelihood
+ *
+ * Both passes are independent per person / per item and run as fork/join tasks.
+ * log P and log(1 - P) are tabulated per item and grid point once per cycle, so the
+ * person pass is additions only.
+ * Weak priors on a, b and c (Bayes modal estimation) keep items with few or extreme
+ * responses from drifting to infinity.
+ */
+@Component
+public class IRTCalibrationAlgorithm {
+
+    public static final int MAX_ITERATIONS = 100;
+
+    // Stop when no item parameter moves more than this between cycles
+    public static final double CONVERGENCE_TOLERANCE = 0.001;
+
+    // Items with fewer responses keep their current parameters
+    public static final int MIN_RESPONSES = 30;
+
+    // Fisher scoring steps per item in one M-step
+    private static final int SCORING_STEPS = 5;
+    private static final double MAX_STEP = 0.5;
+
+    // Priors
+    private static final double A_PRIOR_MEAN = 1.0;
+    private static final double A_PRIOR_SD = 0.5;
+    private static final double B_PRIOR_SD = 2.0;
+    private static final double C_PRIOR_SD = 0.05;
+
+    // Parameter bounds
+    private static final double MIN_A = 0.2;
+    private static final double MAX_A = 3.0;
+    private static final double MIN_B = -4.0;
+    private static final double MAX_B = 4.0;
+    private static final double MAX_C = 0.5;
+
+    // Fork/join leaf sizes
+    private static final int PERSONS_PER_TASK = 256;
+    private static final int ITEMS_PER_TASK = 32;
+
+    /**
+     * Calibrated parameters. Items with calibrated[j] == false kept their starting values.
+     */
+    public record CalibrationResult(double[] a, double[] b, double[] c, boolean[] calibrated,
+                                    int iterations, boolean converged, double maxChange,
+                                    double[] logLikelihoodHistory) {
+
+        public double logLikelihood() {
+            return logLikelihoodHistory.length > 0 ? logLikelihoodHistory[logLikelihoodHistory.length - 1] : Double.NaN;
+        }
+    }
+
+    /**
+     * Run EM until convergence or MAX_ITERATIONS.
+     *
+     * @param data Responses (person x item)
+     * @param startA Starting discriminations, one per item
+     * @param startB Starting difficulties
+     * @param startC Starting guessing parameters
+     * @param guessingPrior Prior mean of c per item; 0 means c is not estimated (kept at its start value)
+     * @param pool Fork/join pool for the E- and M-step
+     */
+    public CalibrationResult calibrate(ItemResponseMatrix data, double[] startA, double[] startB, double[] startC,
+                                       double[] guessingPrior, ForkJoinPool pool) {
+        int items = data.itemCount();
+        int points = IRTBloomTaxonomyAlgorithm.THETA_GRID.length;
+
+        double[] a = startA.clone();
+        double[] b = startB.clone();
+        double[] c = startC.clone();
+        boolean[] calibrated = new boolean[items];
+        for (int j = 0; j < items; j++) {
+            calibrated[j] = data.itemResponseCount(j) >= MIN_RESPONSES;
+        }
+
+        double[] logPrior = standardNormalLogWeights();
+        float[] posterior = new float[data.personCount() * points];
+        float[] logCorrect = new float[items * points];
+        float[] logIncorrect = new float[items * points];
+        double[] history = new double[MAX_ITERATIONS];
+
+        int iteration = 0;
+        boolean converged = false;
+        double maxChange = Double.NaN;
+        while (iteration < MAX_ITERATIONS && !converged) {
+            // E-step over persons: posterior on the grid and the marginal log-likelihood
+            double[] currentA = a, currentB = b, currentC = c;
+            pool.invoke(new RangeTask(0, items, ITEMS_PER_TASK, (from, to) ->
+                    tabulateLogProbabilities(currentA, currentB, currentC, logCorrect, logIncorrect, from, to)));
+            DoubleAdder logLikelihood = new DoubleAdder();
+            pool.invoke(new RangeTask(0, data.personCount(), PERSONS_PER_TASK, (from, to) ->
+                    computePosteriors(data, logCorrect, logIncorrect, logPrior, posterior, from, to, logLikelihood)));
+            history[iteration] = logLikelihood.sum();
+
+            // E-step + M-step over items
+            double[] nextA = a.clone();
+            double[] nextB = b.clone();
+            double[] nextC = c.clone();
+            pool.invoke(new RangeTask(0, items, ITEMS_PER_TASK, (from, to) ->
+                    updateItems(data, calibrated, guessingPrior, posterior, nextA, nextB, nextC, from, to)));
+
+            maxChange = 0.0;
+            for (int j = 0; j < items; j++) {
+                if (calibrated[j]) {
+                    maxChange = Math.max(maxChange, Math.abs(nextA[j] - a[j]));
+                    maxChange = Math.max(maxChange, Math.abs(nextB[j] - b[j]));
+                    maxChange = Math.max(maxChange, Math.abs(nextC[j] - c[j]));
+                }
+            }
+            a = nextA;
+            b = nextB;
+            c = nextC;
+            iteration++;
+            converged = maxChange < CONVERGENCE_TOLERANCE;
+        }
+
+        return new CalibrationResult(a, b, c, calibrated, iteration, converged, maxChange,
+                Arrays.copyOf(history, iteration));
+    }
+
+    /**
+     * log P(θ_k) and log(1 - P(θ_k)) for items [from, to), stored row-wise per item.
+     */
+    private void tabulateLogProbabilities(double[] a, double[] b, double[] c,
+                                          float[] logCorrect, float[] logIncorrect, int from, int to) {
+        double[] grid = IRTBloomTaxonomyAlgorithm.THETA_GRID;
+        int points = grid.length;
+        for (int j = from; j < to; j++) {
+            int base = j * points;
+            for (int k = 0; k < points; k++) {
+                double prob = clamp(c[j] + (1 - c[j]) / (1 + Math.exp(-a[j] * (grid[k] - b[j]))));
+                logCorrect[base + k] = (float) Math.log(prob);
+                logIncorrect[base + k] = (float) Math.log(1 - prob);
+            }
+        }
+    }
+
+    /**
+     * Posterior over THETA_GRID for persons [from, to), stored row-wise in posterior.
+     */
+    private void computePosteriors(ItemResponseMatrix data, float[] logCorrect, float[] logIncorrect,
+                                   double[] logPrior, float[] posterior, int from, int to,
+                                   DoubleAdder logLikelihood) {
+        int points = IRTBloomTaxonomyAlgorithm.THETA_GRID.length;
+        double[] logL = new double[points];
+        double sumLogLikelihood = 0.0;
+
+        for (int p = from; p < to; p++) {
+            System.arraycopy(logPrior, 0, logL, 0, points);
+            for (int r = data.personStart(p); r < data.personEnd(p); r++) {
+                float[] table = data.personCorrect(r) ? logCorrect : logIncorrect;
+                int base = data.personItem(r) * points;
+                for (int k = 0; k < points; k++) {
+                    logL[k] += table[base + k];
+                }
+            }
+
+            double max = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < points; k++) {
+                max = Math.max(max, logL[k]);
+            }
+            double sum = 0.0;
+            for (int k = 0; k < points; k++) {
+                logL[k] = Math.exp(logL[k] - max);
+                sum += logL[k];
+            }
+            int base = p * points;
+            for (int k = 0; k < points; k++) {
+                posterior[base + k] = (float) (logL[k] / sum);
+            }
+            sumLogLikelihood += max + Math.log(sum);
+        }
+        logLikelihood.add(sumLogLikelihood);
+    }
+
+    /**
+     * Expected counts and new parameters for items [from, to).
+     */
+    private void updateItems(ItemResponseMatrix data, boolean[] calibrated, double[] guessingPrior, float[] posterior,
+                             double[] a, double[] b, double[] c, int from, int to) {
+        int points = IRTBloomTaxonomyAlgorithm.THETA_GRID.length;
+        double[] expectedAttempts = new double[points];
+        double[] expectedCorrect = new double[points];
+        double[] params = new double[3];
+
+        for (int j = from; j < to; j++) {
+            if (!calibrated[j]) {
+                continue;
+            }
+            Arrays.fill(expectedAttempts, 0.0);
+            Arrays.fill(expectedCorrect, 0.0);
+            for (int r = data.itemStart(j); r < data.itemEnd(j); r++) {
+                int base = data.itemPerson(r) * points;
+                if (data.itemCorrect(r)) {
+                    for (int k = 0; k < points; k++) {
+                        double w = posterior[base + k];
+                        expectedAttempts[k] += w;
+                        expectedCorrect[k] += w;
+                    }
+                } else {
+                    for (int k = 0; k < points; k++) {
+                        expectedAttempts[k] += posterior[base + k];
+                    }
+                }
+            }
+
+            params[0] = a[j];
+            params[1] = b[j];
+            params[2] = c[j];
+            maximize(expectedAttempts, expectedCorrect, params, guessingPrior[j]);
+            a[j] = params[0];
+            b[j] = params[1];
+            c[j] = params[2];
+        }
+    }
+
+    /**
+     * Fisher scoring on the expected complete-data log-likelihood of one item:
+     * sum over k of r_k log P(θ_k) + (n_k - r_k) log(1 - P(θ_k)), plus the log-priors.
+     *
+     * @param params {a, b, c}, updated in place
+     * @param guessingPrior Prior mean of c; if 0, c is held fixed
+     */
+    private void maximize(double[] expectedAttempts, double[] expectedCorrect, double[] params, double guessingPrior) {
+        double[] grid = IRTBloomTaxonomyAlgorithm.THETA_GRID;
+        boolean estimateGuessing = guessingPrior > 0;
+        int dim = estimateGuessing ? 3 : 2;
+        double[] gradient = new double[3];
+        double[][] information = new double[3][3];
+        double[] derivative = new double[3];
+
+        for (int step = 0; step < SCORING_STEPS; step++) {
+            double a = params[0], b = params[1], c = params[2];
+            Arrays.fill(gradient, 0.0);
+            for (double[] row : information) {
+                Arrays.fill(row, 0.0);
+            }
+
+            for (int k = 0; k < grid.length; k++) {
+                double n = expectedAttempts[k];
+                if (n <= 0) {
+                    continue;
+                }
+                double pStar = 1 / (1 + Math.exp(-a * (grid[k] - b)));
+                double p = clamp(c + (1 - c) * pStar);
+                double pq = p * (1 - p);
+                double slope = (1 - c) * pStar * (1 - pStar);
+
+                // dP/da, dP/db, dP/dc
+                derivative[0] = slope * (grid[k] - b);
+                derivative[1] = -slope * a;
+                derivative[2] = 1 - pStar;
+
+                double residual = (expectedCorrect[k] - n * p) / pq;
+                double weight = n / pq;
+                for (int x = 0; x < dim; x++) {
+                    gradient[x] += residual * derivative[x];
+                    for (int y = 0; y < dim; y++) {
+                        information[x][y] += weight * derivative[x] * derivative[y];
+                    }
+                }
+            }
+
+            gradient[0] -= (a - A_PRIOR_MEAN) / (A_PRIOR_SD * A_PRIOR_SD);
+            information[0][0] += 1 / (A_PRIOR_SD * A_PRIOR_SD);
+            gradient[1] -= b / (B_PRIOR_SD * B_PRIOR_SD);
+            information[1][1] += 1 / (B_PRIOR_SD * B_PRIOR_SD);
+            if (estimateGuessing) {
+                gradient[2] -= (c - guessingPrior) / (C_PRIOR_SD * C_PRIOR_SD);
+                information[2][2] += 1 / (C_PRIOR_SD * C_PRIOR_SD);
+            }
+
+            double[] delta = solve(information, gradient, dim);
+            if (delta == null) {
+                return;
+            }
+            double largest = 0.0;
+            for (int x = 0; x < dim; x++) {
+                delta[x] = Math.max(-MAX_STEP, Math.min(MAX_STEP, delta[x]));
+                largest = Math.max(largest, Math.abs(delta[x]));
+            }
+            params[0] = Math.max(MIN_A, Math.min(MAX_A, a + delta[0]));
+            params[1] = Math.max(MIN_B, Math.min(MAX_B, b + delta[1]));
+            if (estimateGuessing) {
+                params[2] = Math.max(0.0, Math.min(MAX_C, c + delta[2]));
+            }
+            if (largest < CONVERGENCE_TOLERANCE / 10) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Solve the dim x dim system m * x = v by Gaussian elimination with partial pivoting.
+     *
+     * @return x, or null if the system is singular
+     */
+    private static double[] solve(double[][] m, double[] v, int dim) {
+        double[][] augmented = new double[dim][dim + 1];
+        for (int x = 0; x < dim; x++) {
+            System.arraycopy(m[x], 0, augmented[x], 0, dim);
+            augmented[x][dim] = v[x];
+        }
+        for (int col = 0; col < dim; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < dim; row++) {
+                if (Math.abs(augmented[row][col]) > Math.abs(augmented[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(augmented[pivot][col]) < 1e-12) {
+                return null;
+            }
+            double[] swap = augmented[col];
+            augmented[col] = augmented[pivot];
+            augmented[pivot] = swap;
+            for (int row = col + 1; row < dim; row++) {
+                double factor = augmented[row][col] / augmented[col][col];
+                for (int k = col; k <= dim; k++) {
+                    augmented[row][k] -= factor * augmented[col][k];
+                }
+            }
+        }
+        double[] solution = new double[dim];
+        for (int row = dim - 1; row >= 0; row--) {
+            double sum = augmented[row][dim];
+            for (int k = row + 1; k < dim; k++) {
+                sum -= augmented[row][k] * solution[k];
+            }
+            solution[row] = sum / augmented[row][row];
+        }
+        return solution;
+    }
+
+    /**
+     * Log of the standard normal quadrature weights on THETA_GRID, normalized to sum to 1.
+     */
+    private static double[] standardNormalLogWeights() {
+        double[] grid = IRTBloomTaxonomyAlgorithm.THETA_GRID;
+        double[] logWeights = new double[grid.length];
+        double sum = 0.0;
+        for (int k = 0; k < grid.length; k++) {
+            sum += Math.exp(-0.5 * grid[k] * grid[k]);
+        }
+        double logSum = Math.log(sum);
+        for (int k = 0; k < grid.length; k++) {
+            logWeights[k] = -0.5 * grid[k] * grid[k] - logSum;
+        }
+        return logWeights;
+    }
+
+    private static double clamp(double probability) {
+        return Math.max(1e-9, Math.min(1 - 1e-9, probability));
+    }
+
+    @FunctionalInterface
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits [from, to) in halves until a range has at most grain elements.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeBody body;
+
+        RangeTask(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.thesis.exam.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Immutable IRT item parameters for one subject's question bank.
+ *
+ * Parameters are kept as parallel primitive arrays (structure of arrays: index i describes
+ * question questionIds[i]) so adaptive testing sessions can share one bank and scan it
+ * without touching JPA entities. The arrays are never modified after construction;
+ * callers must not modify them either.
+ *
+ * Items are stored sorted by difficulty (b) and grouped into fixed-width b buckets, so a
+ * maximum-information search can start at the bucket containing theta and only visit
+ * neighbouring buckets while they can still beat the best item found.
+ */
+public final class ItemParameterBank {
+
+    // b buckets of width 0.1 over -4..+4; items outside the range go to the end buckets
+    public static final double BUCKET_MIN_B = -4.0;
+    public static final double BUCKET_WIDTH = 0.1;
+    public static final int BUCKETS = 80;
+
+    private final long[] questionIds;
+    private final double[] discriminations;  // a
+    private final double[] difficulties;     // b
+    private final double[] guessings;        // c
+
+    // Items of bucket k are the index range [bucketOffsets[k], bucketOffsets[k + 1])
+    private final int[] bucketOffsets;
+    private final double[] bucketMaxDiscrimination;
+    private final int maxBucketSize;
+
+    public ItemParameterBank(long[] questionIds, double[] discriminations,
+                             double[] difficulties, double[] guessings) {
+        int n = questionIds.length;
+
+        // Sort item indices by b so each bucket is a contiguous slice of the arrays
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(difficulties[x], difficulties[y]));
+
+        this.questionIds = new long[n];
+        this.discriminations = new double[n];
+        this.difficulties = new double[n];
+        this.guessings = new double[n];
+        for (int i = 0; i < n; i++) {
+            int source = order[i];
+            this.questionIds[i] = questionIds[source];
+            this.discriminations[i] = discriminations[source];
+            this.difficulties[i] = difficulties[source];
+            this.guessings[i] = guessings[source];
+        }
+
+        this.bucketOffsets = new int[BUCKETS + 1];
+        this.bucketMaxDiscrimination = new double[BUCKETS];
+        int[] counts = new int[BUCKETS];
+        for (int i = 0; i < n; i++) {
+            int bucket = bucketOf(this.difficulties[i]);
+            counts[bucket]++;
+            bucketMaxDiscrimination[bucket] = Math.max(bucketMaxDiscrimination[bucket], Math.abs(this.discriminations[i]));
+        }
+        int largest = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            bucketOffsets[k + 1] = bucketOffsets[k] + counts[k];
+            largest = Math.max(largest, counts[k]);
+        }
+        this.maxBucketSize = largest;
+    }
+
+    /**
+     * Bucket that contains the given b (or theta) value.
+     */
+    public static int bucketOf(double b) {
+        int bucket = (int) Math.floor((b - BUCKET_MIN_B) / BUCKET_WIDTH);
+        return Math.max(0, Math.min(BUCKETS - 1, bucket));
+    }
+
+    /**
+     * Distance from theta to the b range covered by a bucket (0 if theta falls inside it).
+     * The end buckets are open-ended.
+     */
+    public static double bucketDistance(int bucket, double theta) {
+        double lower = bucket == 0 ? Double.NEGATIVE_INFINITY : BUCKET_MIN_B + bucket * BUCKET_WIDTH;
+        double upper = bucket == BUCKETS - 1 ? Double.POSITIVE_INFINITY : BUCKET_MIN_B + (bucket + 1) * BUCKET_WIDTH;
+        if (theta < lower) {
+            return lower - theta;
+        }
+        if (theta > upper) {
+            return theta - upper;
+        }
+        return 0.0;
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    public long questionId(int index) {
+        return questionIds[index];
+    }
+
+    public double a(int index) {
+        return discriminations[index];
+    }
+
+    public double b(int index) {
+        return difficulties[index];
+    }
+
+    public double c(int index) {
+        return guessings[index];
+    }
+
+    public double[] discriminations() {
+        return discriminations;
+    }
+
+    public double[] difficulties() {
+        return difficulties;
+    }
+
+    public double[] guessings() {
+        return guessings;
+    }
+
+    public int bucketStart(int bucket) {
+        return bucketOffsets[bucket];
+    }
+
+    public int bucketEnd(int bucket) {
+        return bucketOffsets[bucket + 1];
+    }
+
+    public double bucketMaxDiscrimination(int bucket) {
+        return bucketMaxDiscrimination[bucket];
+    }
+
+    public int maxBucketSize() {
+        return maxBucketSize;
+    }
+}
@@ -0,0 +1,159 @@
+package com.thesis.exam.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Sparse, immutable response matrix for IRT calibration.
+ *
+ * Responses are stored twice in compressed-row form: grouped by person (for the posterior
+ * over theta) and grouped by item (for the expected counts of the M-step). Persons and
+ * items are dense indices 0..personCount-1 and 0..itemCount-1; the caller maps them to
+ * student and question IDs.
+ */
+public final class ItemResponseMatrix {
+
+    private final int personCount;
+    private final int itemCount;
+
+    // Responses of person p are the range [personOffsets[p], personOffsets[p + 1])
+    private final int[] personOffsets;
+    private final int[] personItems;
+    private final boolean[] personCorrect;
+
+    // Responses to item j are the range [itemOffsets[j], itemOffsets[j + 1])
+    private final int[] itemOffsets;
+    private final int[] itemPersons;
+    private final boolean[] itemCorrect;
+
+    private ItemResponseMatrix(int itemCount, int personCount, int[] personOffsets,
+                               int[] personItems, boolean[] personCorrect) {
+        this.itemCount = itemCount;
+        this.personCount = personCount;
+        this.personOffsets = personOffsets;
+        this.personItems = personItems;
+        this.personCorrect = personCorrect;
+
+        // Counting sort of the person-major responses into item-major order
+        int responses = personItems.length;
+        this.itemOffsets = new int[itemCount + 1];
+        for (int r = 0; r < responses; r++) {
+            itemOffsets[personItems[r] + 1]++;
+        }
+        for (int j = 0; j < itemCount; j++) {
+            itemOffsets[j + 1] += itemOffsets[j];
+        }
+        this.itemPersons = new int[responses];
+        this.itemCorrect = new boolean[responses];
+        int[] cursor = Arrays.copyOf(itemOffsets, itemCount);
+        for (int p = 0; p < personCount; p++) {
+            for (int r = personOffsets[p]; r < personOffsets[p + 1]; r++) {
+                int slot = cursor[personItems[r]]++;
+                itemPersons[slot] = p;
+                itemCorrect[slot] = personCorrect[r];
+            }
+        }
+    }
+
+    public int personCount() {
+        return personCount;
+    }
+
+    public int itemCount() {
+        return itemCount;
+    }
+
+    public int responseCount() {
+        return personItems.length;
+    }
+
+    public int personStart(int person) {
+        return personOffsets[person];
+    }
+
+    public int personEnd(int person) {
+        return personOffsets[person + 1];
+    }
+
+    public int personItem(int response) {
+        return personItems[response];
+    }
+
+    public boolean personCorrect(int response) {
+        return personCorrect[response];
+    }
+
+    public int itemStart(int item) {
+        return itemOffsets[item];
+    }
+
+    public int itemEnd(int item) {
+        return itemOffsets[item + 1];
+    }
+
+    public int itemResponseCount(int item) {
+        return itemOffsets[item + 1] - itemOffsets[item];
+    }
+
+    public int itemPerson(int response) {
+        return itemPersons[response];
+    }
+
+    public boolean itemCorrect(int response) {
+        return itemCorrect[response];
+    }
+
+    /**
+     * Collects (person, item, correct) triples in any order; build() groups them by person.
+     */
+    public static final class Builder {
+        private final int itemCount;
+        private int[] persons = new int[4096];
+        private int[] items = new int[4096];
+        private boolean[] correct = new boolean[4096];
+        private int personCount = 0;
+        private int responseCount = 0;
+
+        public Builder(int itemCount) {
+            this.itemCount = itemCount;
+        }
+
+        public void add(int person, int item, boolean isCorrect) {
+            if (person < 0) {
+                throw new IllegalArgumentException("Person index out of range: " + person);
+            }
+            if (item < 0 || item >= itemCount) {
+                throw new IllegalArgumentException("Item index out of range: " + item);
+            }
+            if (responseCount == items.length) {
+                persons = Arrays.copyOf(persons, persons.length * 2);
+                items = Arrays.copyOf(items, items.length * 2);
+                correct = Arrays.copyOf(correct, correct.length * 2);
+            }
+            persons[responseCount] = person;
+            items[responseCount] = item;
+            correct[responseCount] = isCorrect;
+            responseCount++;
+            personCount = Math.max(personCount, person + 1);
+        }
+
+        public ItemResponseMatrix build() {
+            // Counting sort into person-major order
+            int[] offsets = new int[personCount + 1];
+            for (int r = 0; r < responseCount; r++) {
+                offsets[persons[r] + 1]++;
+            }
+            for (int p = 0; p < personCount; p++) {
+                offsets[p + 1] += offsets[p];
+            }
+            int[] sortedItems = new int[responseCount];
+            boolean[] sortedCorrect = new boolean[responseCount];
+            int[] cursor = Arrays.copyOf(offsets, personCount);
+            for (int r = 0; r < responseCount; r++) {
+                int slot = cursor[persons[r]]++;
+                sortedItems[slot] = items[r];
+                sortedCorrect[slot] = correct[r];
+            }
+            return new ItemResponseMatrix(itemCount, personCount, offsets, sortedItems, sortedCorrect);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.thesis.exam.algorithms;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton that finds a fixed set of keywords in a text in one linear pass.
+ *
+ * Matching is case-insensitive and respects word boundaries: a keyword only matches when the
+ * characters before and after it are not letters or digits, so "thus" does not match inside
+ * "enthusiast". Keywords may contain spaces ("in conclusion"). Built once per keyword set;
+ * immutable and safe to share between threads.
+ */
+public final class KeywordMatcher {
+
+    // Characters below this use a direct lookup table, others go through a map
+    private static final int ASCII = 128;
+
+    private final List<String> keywords;
+    private final int[] asciiClass;            // char -> alphabet index (0 = not in any keyword), case folded
+    private final Map<Character, Integer> otherClass;
+    private final int alphabetSize;
+    private final int[] transitions;           // node * alphabetSize + class -> next node
+    private final int[][] outputs;             // keyword indices ending at each node (incl. via failure links), or null
+
+    private KeywordMatcher(List<String> keywords, int[] asciiClass, Map<Character, Integer> otherClass,
+                           int alphabetSize, int[] transitions, int[][] outputs) {
+        this.keywords = keywords;
+        this.asciiClass = asciiClass;
+        this.otherClass = otherClass;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Build the automaton. Keywords are lowercased and trimmed; blank and duplicate keywords are dropped.
+     */
+    public static KeywordMatcher of(Collection<String> keywords) {
+        Set<String> unique = new LinkedHashSet<>();
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                String lower = keyword != null ? keyword.trim().toLowerCase(Locale.ROOT) : "";
+                if (!lower.isEmpty()) {
+                    unique.add(lower);
+                }
+            }
+        }
+        List<String> list = List.copyOf(unique);
+
+        // Alphabet: only the characters that occur in keywords get their own class
+        int[] asciiClass = new int[ASCII];
+        Map<Character, Integer> otherClass = new HashMap<>();
+        int alphabetSize = 1;
+        for (String keyword : list) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c < ASCII) {
+                    if (asciiClass[c] == 0) {
+                        asciiClass[c] = alphabetSize++;
+                    }
+                } else if (!otherClass.containsKey(c)) {
+                    otherClass.put(c, alphabetSize++);
+                }
+            }
+        }
+
+        for (char c = 'A'; c <= 'Z'; c++) {
+            asciiClass[c] = asciiClass[Character.toLowerCase(c)];
+        }
+
+        // Trie (node 0 is the root; -1 = no edge yet)
+        int maxNodes = 1;
+        for (String keyword : list) {
+            maxNodes += keyword.length();
+        }
+        int[] next = new int[maxNodes * alphabetSize];
+        Arrays.fill(next, -1);
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        nodeOutputs.add(new ArrayList<>());
+        int nodeCount = 1;
+
+        for (int k = 0; k < list.size(); k++) {
+            String keyword = list.get(k);
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int slot = node * alphabetSize + classOf(keyword.charAt(i), asciiClass, otherClass);
+                if (next[slot] < 0) {
+                    next[slot] = nodeCount++;
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next[slot];
+            }
+            nodeOutputs.get(node).add(k);
+        }
+
+        // Failure links by BFS, turning the trie into a complete transition table
+        int[] fail = new int[nodeCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            if (next[c] < 0) {
+                next[c] = 0;
+            } else {
+                fail[next[c]] = 0;
+                queue.add(next[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            nodeOutputs.get(node).addAll(nodeOutputs.get(fail[node]));
+            for (int c = 0; c < alphabetSize; c++) {
+                int slot = node * alphabetSize + c;
+                int child = next[slot];
+                int fallback = next[fail[node] * alphabetSize + c];
+                if (child < 0) {
+                    next[slot] = fallback;
+                } else {
+                    fail[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+
+        int[][] outputs = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            List<Integer> ends = nodeOutputs.get(node);
+            outputs[node] = ends.isEmpty() ? null : ends.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new KeywordMatcher(list, asciiClass, otherClass, alphabetSize,
+                Arrays.copyOf(next, nodeCount * alphabetSize), outputs);
+    }
+
+    private static int classOf(char c, int[] asciiClass, Map<Character, Integer> otherClass) {
+        if (c < ASCII) {
+            return asciiClass[c];
+        }
+        Integer cls = otherClass.get(c);
+        return cls != null ? cls : 0;
+    }
+
+    /**
+     * The distinct keywords, lowercased, in the order they were given.
+     */
+    public List<String> keywords() {
+        return keywords;
+    }
+
+    public int size() {
+        return keywords.size();
+    }
+
+    /**
+     * Indices (into keywords()) of the keywords that occur in the text as whole words.
+     */
+    public BitSet findIn(CharSequence text) {
+        BitSet found = new BitSet(keywords.size());
+        if (keywords.isEmpty() || text == null) {
+            return found;
+        }
+        int length = text.length();
+        int node = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int cls = c < ASCII ? asciiClass[c] : classOf(Character.toLowerCase(c), asciiClass, otherClass);
+            node = transitions[node * alphabetSize + cls];
+            int[] ends = outputs[node];
+            if (ends == null) {
+                continue;
+            }
+            // A match ending here must not run into a following letter or digit
+            if (i + 1 < length && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                continue;
+            }
+            for (int k : ends) {
+                int start = i + 1 - keywords.get(k).length();
+                if (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1))) {
+                    found.set(k);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Number of distinct keywords that occur in the text as whole words.
+     */
+    public int countIn(CharSequence text) {
+        return findIn(text).cardinality();
+    }
+}
@@ -2,22 +2,37 @@ package com.thesis.exam.algorithms;
 
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Linear Regression Algorithm for Adaptive Question Difficulty
  * Predicts optimal difficulty based on student performance patterns
  * 
  * Formula: difficulty = β₀ + β₁(mastery) + β₂(avgResponseTime) + β₃(recentAccuracy)
  * 
+ * The coefficients are an immutable DifficultyModel behind an AtomicReference: training builds
+ * a new model and publishes it in one step, so predictions are lock-free and never see a
+ * half-updated set of coefficients.
+ * 
  * Reference: Integrating automatic question generation with computerised adaptive test
  */
 @Component
 public class LinearRegressionDifficultyAlgorithm {
     
-    // Coefficients learned from data (these would be trained on real data)
-    private double beta0 = 0.5;  // Intercept
-    private double beta1 = 0.8;  // Mastery coefficient
-    private double beta2 = -0.1; // Response time coefficient (negative: faster = easier)
-    private double beta3 = 0.6;  // Recent accuracy coefficient
+    private final AtomicReference<DifficultyModel> model = new AtomicReference<>(DifficultyModel.DEFAULT);
+    
+    public DifficultyModel getModel() {
+        return model.get();
+    }
+    
+    /**
+     * Replace the model only if it is still the expected one (see DifficultyModelTrainingService).
+     *
+     * @return false if another model was published in the meantime
+     */
+    public boolean publishModel(DifficultyModel expected, DifficultyModel candidate) {
+        return model.compareAndSet(expected, candidate);
+    }
     
     /**
      * Predict optimal difficulty level for next question
@@ -29,14 +44,9 @@ public class LinearRegressionDifficultyAlgorithm {
      */
     public double predictDifficulty(double masteryLevel, double avgResponseTime, 
                                     double recentAccuracy) {
-        // Normalize response time (assuming 0-300 seconds range)
-        double normalizedTime = Math.min(avgResponseTime / 300.0, 1.0);
-        
-        // Linear regression prediction
-        double difficulty = beta0 + 
-                          (beta1 * masteryLevel) + 
-                          (beta2 * normalizedTime) + 
-                          (beta3 * recentAccuracy);
+        // Linear regression prediction on one consistent snapshot
+        double difficulty = model.get().predictRaw(masteryLevel,
+                DifficultyModel.normalizeResponseTime(avgResponseTime), recentAccuracy);
         
         // Constrain to [0, 1]
         return Math.max(0.0, Math.min(1.0, difficulty));
@@ -44,18 +54,20 @@ public class LinearRegressionDifficultyAlgorithm {
     
     /**
      * Update coefficients using gradient descent (simple training)
-     * This would be called periodically to retrain the model
+     * Starts from the current model and publishes the result as a new model
      */
     public void trainModel(double[][] features, double[] actualDifficulties, 
                           double learningRate, int iterations) {
         int n = features.length;
+        DifficultyModel start = model.get();
+        double beta0 = start.beta0(), beta1 = start.beta1(), beta2 = start.beta2(), beta3 = start.beta3();
         
         for (int iter = 0; iter < iterations; iter++) {
             double gradBeta0 = 0, gradBeta1 = 0, gradBeta2 = 0, gradBeta3 = 0;
             
             for (int i = 0; i < n; i++) {
                 double mastery = features[i][0];
-                double responseTime = Math.min(features[i][1] / 300.0, 1.0);
+                double responseTime = DifficultyModel.normalizeResponseTime(features[i][1]);
                 double accuracy = features[i][2];
                 
                 double predicted = beta0 + (beta1 * mastery) + 
@@ -75,12 +87,18 @@ public class LinearRegressionDifficultyAlgorithm {
             beta2 -= learningRate * gradBeta2 / n;
             beta3 -= learningRate * gradBeta3 / n;
         }
+        
+        model.set(new DifficultyModel(beta0, beta1, beta2, beta3));
     }
     
     /**
      * Calculate R-squared (coefficient of determination) for model evaluation
      */
     public double calculateRSquared(double[][] features, double[] actualDifficulties) {
+        return calculateRSquared(model.get(), features, actualDifficulties);
+    }
+    
+    public double calculateRSquared(DifficultyModel candidate, double[][] features, double[] actualDifficulties) {
         int n = features.length;
         double mean = 0;
         
@@ -93,12 +111,8 @@ public class LinearRegressionDifficultyAlgorithm {
         double residualSS = 0;  // Residual sum of squares
         
         for (int i = 0; i < n; i++) {
-            double mastery = features[i][0];
-            double responseTime = Math.min(features[i][1] / 300.0, 1.0);
-            double accuracy = features[i][2];
-            
-            double predicted = beta0 + (beta1 * mastery) + 
-                             (beta2 * responseTime) + (beta3 * accuracy);
+            double predicted = candidate.predictRaw(features[i][0],
+                    DifficultyModel.normalizeResponseTime(features[i][1]), features[i][2]);
             
             totalSS += Math.pow(actualDifficulties[i] - mean, 2);
             residualSS += Math.pow(actualDifficulties[i] - predicted, 2);
@@ -106,4 +120,103 @@ public class LinearRegressionDifficultyAlgorithm {
         
         return 1 - (residualSS / totalSS);
     }
+    
+    /**
+     * R-squared from the sufficient statistics of a dataset; equal to calculateRSquared on the same
+     * samples, but the samples never have to be held in memory.
+     */
+    public double calculateRSquared(DifficultyModel candidate, NormalEquations data) {
+        double[] beta = {candidate.beta0(), candidate.beta1(), candidate.beta2(), candidate.beta3()};
+        // residualSS = y'y - 2 beta'X'y + beta'X'X beta
+        double residualSS = data.yy;
+        for (int i = 0; i < 4; i++) {
+            residualSS -= 2 * beta[i] * data.xy[i];
+            for (int j = 0; j < 4; j++) {
+                residualSS += beta[i] * data.xx[i * 4 + j] * beta[j];
+            }
+        }
+        double mean = data.xy[0] / data.count;  // first column is the intercept
+        double totalSS = data.yy - data.count * mean * mean;
+        return 1 - (residualSS / totalSS);
+    }
+    
+    /**
+     * Running sums X'X, X'y and y'y of the design matrix [1, mastery, normalizedTime, accuracy].
+     * Chunks of samples are accumulated independently and merged, and the closed-form least
+     * squares solution needs only these sums, so training streams with constant memory.
+     */
+    public static final class NormalEquations {
+        private final double[] xx = new double[16];
+        private final double[] xy = new double[4];
+        private double yy;
+        private long count;
+        
+        /**
+         * @param avgResponseTime Average response time in seconds (normalized here)
+         */
+        public void add(double mastery, double avgResponseTime, double recentAccuracy, double difficulty) {
+            double[] x = {1.0, mastery, DifficultyModel.normalizeResponseTime(avgResponseTime), recentAccuracy};
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    xx[i * 4 + j] += x[i] * x[j];
+                }
+                xy[i] += x[i] * difficulty;
+            }
+            yy += difficulty * difficulty;
+            count++;
+        }
+        
+        public void merge(NormalEquations other) {
+            for (int i = 0; i < 16; i++) {
+                xx[i] += other.xx[i];
+            }
+            for (int i = 0; i < 4; i++) {
+                xy[i] += other.xy[i];
+            }
+            yy += other.yy;
+            count += other.count;
+        }
+        
+        public long count() {
+            return count;
+        }
+        
+        /**
+         * Solve (X'X + ridge I) beta = X'y by Gaussian elimination with partial pivoting.
+         * The small ridge keeps the system solvable when a feature is constant.
+         */
+        public DifficultyModel solve() {
+            double[][] a = new double[4][5];
+            double ridge = 1e-9 * (xx[0] + xx[5] + xx[10] + xx[15]);
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    a[i][j] = xx[i * 4 + j] + (i == j ? ridge : 0.0);
+                }
+                a[i][4] = xy[i];
+            }
+            for (int col = 0; col < 4; col++) {
+                int pivot = col;
+                for (int row = col + 1; row < 4; row++) {
+                    if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                        pivot = row;
+                    }
+                }
+                double[] swap = a[col];
+                a[col] = a[pivot];
+                a[pivot] = swap;
+                if (Math.abs(a[col][col]) < 1e-12) {
+                    throw new IllegalStateException("Difficulty regression is singular");
+                }
+                for (int row = 0; row < 4; row++) {
+                    if (row != col) {
+                        double factor = a[row][col] / a[col][col];
+                        for (int k = col; k < 5; k++) {
+                            a[row][k] -= factor * a[col][k];
+                        }
+                    }
+                }
+            }
+            return new DifficultyModel(a[0][4] / a[0][0], a[1][4] / a[1][1], a[2][4] / a[2][2], a[3][4] / a[3][3]);
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package com.thesis.exam.algorithms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-sensitive hashing index over MinHash signatures (see EssayMinHash).
+ *
+ * Each signature is stored in one bucket per band; two signatures become candidates when
+ * they agree on all rows of at least one band. With 20 bands of 6 rows, pairs with a
+ * similarity of 0.8 are found with probability above 0.99, while pairs below 0.4 rarely
+ * share a bucket, so finding the candidates for a new essay does not compare it to every
+ * stored essay. Not thread safe.
+ */
+public class LshIndex {
+
+    private final List<Map<Long, List<Integer>>> buckets = new ArrayList<>(EssayMinHash.BANDS);
+    private final List<int[]> signatures = new ArrayList<>();
+    private final List<Long> ids = new ArrayList<>();
+
+    public LshIndex() {
+        for (int band = 0; band < EssayMinHash.BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * A stored signature with the ID it was added under.
+     */
+    public record Entry(long id, int[] signature) {}
+
+    /**
+     * Entries sharing at least one band bucket with the signature.
+     */
+    public List<Entry> candidates(int[] signature) {
+        Set<Integer> positions = new LinkedHashSet<>();
+        for (int band = 0; band < EssayMinHash.BANDS; band++) {
+            List<Integer> bucket = buckets.get(band).get(EssayMinHash.bandKey(signature, band));
+            if (bucket != null) {
+                positions.addAll(bucket);
+            }
+        }
+        List<Entry> result = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            result.add(new Entry(ids.get(position), signatures.get(position)));
+        }
+        return result;
+    }
+
+    public void add(long id, int[] signature) {
+        int position = signatures.size();
+        signatures.add(signature);
+        ids.add(id);
+        for (int band = 0; band < EssayMinHash.BANDS; band++) {
+            buckets.get(band).computeIfAbsent(EssayMinHash.bandKey(signature, band), key -> new ArrayList<>(1))
+                    .add(position);
+        }
+    }
+
+    public int size() {
+        return signatures.size();
+    }
+}
@@ -2,49 +2,154 @@ package com.thesis.exam.algorithms;
 
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
 
 /**
  * Random Forest Algorithm for Analytics and Performance Prediction
  * Used to predict student performance and provide insights
  * 
- * Simplified implementation of Random Forest for educational analytics
+ * Regression trees (variance reduction splits) are grown in parallel, one fork/join task per
+ * tree, each on its own bootstrap sample with a random feature subset at every split.
+ * Feature columns are sorted once per training run; each tree filters the sorted orders down
+ * to its bootstrap sample and keeps them sorted while splitting by stable partitioning, so no
+ * node ever sorts. The trained forest is an immutable RandomForestModel of flat arrays.
  * Reference: https://link.springer.com/article/10.1007/s10639-024-12619-w
  */
 @Component
 public class RandomForestAnalyticsAlgorithm {
-    
-    private List<DecisionTree> forest;
-    private int numTrees = 10;
-    
-    public RandomForestAnalyticsAlgorithm() {
-        this.forest = new ArrayList<>();
+
+    /**
+     * Feature vector layout used by predictPerformance and predict
+     */
+    public static final String[] FEATURE_NAMES = {"masteryLevel", "avgScore", "studyTime", "previousExams", "attendance"};
+
+    public static final int DEFAULT_TREES = 50;
+    public static final int DEFAULT_MAX_DEPTH = 12;
+    public static final int DEFAULT_MIN_LEAF_SIZE = 5;
+
+    // Minimum reduction of the squared error for a split to be kept
+    private static final double MIN_GAIN = 1e-9;
+
+    public static final int DEFAULT_PERMUTATION_REPEATS = 5;
+
+    private static final int MAX_CACHED_IMPORTANCES = 16;
+
+    private volatile RandomForestModel model;
+
+    // The dataset is identified by its size and a SHA-256 of its contents, so the cache holds no data
+    private record ImportanceKey(long modelVersion, int sampleCount, String datasetHash, int repeats) {}
+
+    private final Map<ImportanceKey, Map<String, Double>> importanceCache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ImportanceKey, Map<String, Double>> eldest) {
+                    return size() > MAX_CACHED_IMPORTANCES;
+                }
+            };
+
+    /**
+     * @param featuresPerSplit Features tried at each split (randomly chosen)
+     * @param seed Seed of the bootstrap samples and feature choices (tree t uses seed + t)
+     */
+    public record TrainingOptions(int numTrees, int maxDepth, int minLeafSize, int featuresPerSplit, long seed) {
+
+        public static TrainingOptions defaults(int featureCount) {
+            return new TrainingOptions(DEFAULT_TREES, DEFAULT_MAX_DEPTH, DEFAULT_MIN_LEAF_SIZE,
+                    Math.max(1, (int) Math.round(Math.sqrt(featureCount))), System.nanoTime());
+        }
     }
-    
+
     /**
-     * Decision Tree node for Random Forest
+     * Train a forest and make it the model used by predictPerformance and predict.
+     *
+     * @param samples Feature vectors (sample x feature), in FEATURE_NAMES order for predictPerformance
+     * @param targets Target per sample, e.g. 1 = passed, 0 = failed, or the score (0-1)
+     * @param pool Fork/join pool the trees are built on
      */
-    static class DecisionTree {
-        String feature;
-        double threshold;
-        DecisionTree left;
-        DecisionTree right;
-        Double prediction;  // For leaf nodes
-        
-        public double predict(Map<String, Double> features) {
-            if (prediction != null) {
-                return prediction;
+    public RandomForestModel train(double[][] samples, double[] targets, TrainingOptions options, ForkJoinPool pool) {
+        int n = samples.length;
+        if (n == 0 || targets.length != n) {
+            throw new IllegalArgumentException("Need one target per sample and at least one sample");
+        }
+        int featureCount = samples[0].length;
+
+        // Column-major copy of the features and every column's sort order, shared by all trees
+        double[][] columns = new double[featureCount][n];
+        for (int i = 0; i < n; i++) {
+            for (int f = 0; f < featureCount; f++) {
+                columns[f][i] = samples[i][f];
             }
-            
-            double value = features.getOrDefault(feature, 0.0);
-            if (value <= threshold) {
-                return left != null ? left.predict(features) : 0.0;
-            } else {
-                return right != null ? right.predict(features) : 0.0;
+        }
+        int[][] sortedColumns = new int[featureCount][];
+        for (int f = 0; f < featureCount; f++) {
+            double[] column = columns[f];
+            sortedColumns[f] = IntStream.range(0, n).boxed()
+                    .sorted((x, y) -> Double.compare(column[x], column[y]))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        List<TreeTask> tasks = new ArrayList<>(options.numTrees());
+        for (int t = 0; t < options.numTrees(); t++) {
+            TreeTask task = new TreeTask(columns, sortedColumns, targets, options, options.seed() + t);
+            tasks.add(task);
+            pool.execute(task);
+        }
+        List<TreeBuilder> trees = new ArrayList<>(tasks.size());
+        for (TreeTask task : tasks) {
+            trees.add(task.join());
+        }
+
+        // Concatenate the trees into one set of arrays
+        int totalNodes = 0;
+        for (TreeBuilder tree : trees) {
+            totalNodes += tree.size;
+        }
+        int[] roots = new int[trees.size()];
+        int[] feature = new int[totalNodes];
+        double[] threshold = new double[totalNodes];
+        int[] rightChild = new int[totalNodes];
+        int base = 0;
+        for (int t = 0; t < trees.size(); t++) {
+            TreeBuilder tree = trees.get(t);
+            roots[t] = base;
+            System.arraycopy(tree.feature, 0, feature, base, tree.size);
+            System.arraycopy(tree.threshold, 0, threshold, base, tree.size);
+            for (int i = 0; i < tree.size; i++) {
+                rightChild[base + i] = tree.feature[i] >= 0 ? base + tree.rightChild[i] : -1;
             }
+            base += tree.size;
         }
+
+        RandomForestModel trained = new RandomForestModel(featureCount, roots, feature, threshold, rightChild);
+        model = trained;
+        return trained;
     }
-    
+
+    /**
+     * The current trained forest, or null if none has been trained.
+     */
+    public RandomForestModel getModel() {
+        return model;
+    }
+
+    /**
+     * Predict from a feature vector in FEATURE_NAMES order. Allocation-free; falls back to
+     * the mastery level if no forest has been trained.
+     */
+    public double predict(double[] features) {
+        RandomForestModel current = model;
+        return current != null ? current.predict(features) : features[0];
+    }
+
     /**
      * Predict student performance (pass/fail probability)
      * 
@@ -57,53 +162,356 @@ public class RandomForestAnalyticsAlgorithm {
      * @return Predicted probability of passing (0-1)
      */
     public double predictPerformance(Map<String, Double> features) {
-        if (forest.isEmpty()) {
+        RandomForestModel current = model;
+        if (current == null || current.featureCount() != FEATURE_NAMES.length) {
             // Return simple heuristic if not trained
             return features.getOrDefault("masteryLevel", 0.5);
         }
-        
-        double sum = 0;
-        for (DecisionTree tree : forest) {
-            sum += tree.predict(features);
+
+        double[] vector = new double[FEATURE_NAMES.length];
+        for (int i = 0; i < FEATURE_NAMES.length; i++) {
+            vector[i] = features.getOrDefault(FEATURE_NAMES[i], 0.0);
         }
-        return sum / forest.size();
+        return current.predict(vector);
     }
-    
+
+    /**
+     * Pre-order node arrays of one tree while it is grown; right children are tree-local indices.
+     */
+    private static final class TreeBuilder {
+        int size;
+        int[] feature = new int[64];
+        double[] threshold = new double[64];
+        int[] rightChild = new int[64];
+
+        int add(int splitFeature, double value) {
+            if (size == feature.length) {
+                feature = Arrays.copyOf(feature, size * 2);
+                threshold = Arrays.copyOf(threshold, size * 2);
+                rightChild = Arrays.copyOf(rightChild, size * 2);
+            }
+            feature[size] = splitFeature;
+            threshold[size] = value;
+            return size++;
+        }
+    }
+
+    /**
+     * Grows one tree on a bootstrap sample.
+     */
+    private static final class TreeTask extends RecursiveTask<TreeBuilder> {
+        private final double[][] columns;
+        private final int[][] sortedColumns;
+        private final double[] targets;
+        private final TrainingOptions options;
+        private final long seed;
+
+        // Per-tree state
+        private int[] weight;         // bootstrap multiplicity of each sample
+        private int[][] order;        // in-bag samples per feature, sorted by that feature within each node
+        private int[] buffer;         // right half scratch space for stable partitioning
+        private boolean[] goesLeft;
+        private int[] featurePool;
+        private SplittableRandom random;
+        private TreeBuilder tree;
+
+        TreeTask(double[][] columns, int[][] sortedColumns, double[] targets, TrainingOptions options, long seed) {
+            this.columns = columns;
+            this.sortedColumns = sortedColumns;
+            this.targets = targets;
+            this.options = options;
+            this.seed = seed;
+        }
+
+        @Override
+        protected TreeBuilder compute() {
+            int n = targets.length;
+            int featureCount = columns.length;
+            random = new SplittableRandom(seed);
+            weight = new int[n];
+            for (int i = 0; i < n; i++) {
+                weight[random.nextInt(n)]++;
+            }
+            int inBag = 0;
+            for (int w : weight) {
+                if (w > 0) {
+                    inBag++;
+                }
+            }
+            order = new int[featureCount][inBag];
+            for (int f = 0; f < featureCount; f++) {
+                int k = 0;
+                for (int sample : sortedColumns[f]) {
+                    if (weight[sample] > 0) {
+                        order[f][k++] = sample;
+                    }
+                }
+            }
+            buffer = new int[inBag];
+            goesLeft = new boolean[n];
+            featurePool = new int[featureCount];
+            for (int f = 0; f < featureCount; f++) {
+                featurePool[f] = f;
+            }
+            tree = new TreeBuilder();
+            grow(0, inBag, 0);
+            return tree;
+        }
+
+        /**
+         * Grow the subtree of the in-bag samples order[*][from, to).
+         */
+        private void grow(int from, int to, int depth) {
+            double weightSum = 0;
+            double sum = 0;
+            double sumSquares = 0;
+            int[] samples = order[0];
+            for (int k = from; k < to; k++) {
+                int w = weight[samples[k]];
+                double y = targets[samples[k]];
+                weightSum += w;
+                sum += w * y;
+                sumSquares += w * y * y;
+            }
+            double mean = sum / weightSum;
+            if (depth >= options.maxDepth() || weightSum < 2 * options.minLeafSize()
+                    || sumSquares - sum * mean <= MIN_GAIN) {
+                tree.add(-1, mean);
+                return;
+            }
+
+            // Best split over a random subset of the features
+            int bestFeature = -1;
+            double bestThreshold = 0;
+            double bestScore = sum * mean + MIN_GAIN;
+            int tries = Math.min(options.featuresPerSplit(), featurePool.length);
+            for (int i = 0; i < tries; i++) {
+                int swap = i + random.nextInt(featurePool.length - i);
+                int f = featurePool[swap];
+                featurePool[swap] = featurePool[i];
+                featurePool[i] = f;
+
+                double[] column = columns[f];
+                int[] sorted = order[f];
+                double leftWeight = 0;
+                double leftSum = 0;
+                for (int k = from; k < to - 1; k++) {
+                    int sample = sorted[k];
+                    leftWeight += weight[sample];
+                    leftSum += weight[sample] * targets[sample];
+                    double value = column[sample];
+                    double next = column[sorted[k + 1]];
+                    if (value == next || leftWeight < options.minLeafSize()
+                            || weightSum - leftWeight < options.minLeafSize()) {
+                        continue;
+                    }
+                    double rightSum = sum - leftSum;
+                    // Maximizing this is minimizing the squared error of both halves
+                    double score = leftSum * leftSum / leftWeight + rightSum * rightSum / (weightSum - leftWeight);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestFeature = f;
+                        bestThreshold = (value + next) / 2;
+                    }
+                }
+            }
+            if (bestFeature < 0) {
+                tree.add(-1, mean);
+                return;
+            }
+
+            // Stable partition of every feature's order keeps both halves sorted
+            double[] splitColumn = columns[bestFeature];
+            for (int k = from; k < to; k++) {
+                int sample = order[0][k];
+                goesLeft[sample] = splitColumn[sample] <= bestThreshold;
+            }
+            int mid = from;
+            for (int[] sorted : order) {
+                int left = from;
+                int right = 0;
+                for (int k = from; k < to; k++) {
+                    int sample = sorted[k];
+                    if (goesLeft[sample]) {
+                        sorted[left++] = sample;
+                    } else {
+                        buffer[right++] = sample;
+                    }
+                }
+                System.arraycopy(buffer, 0, sorted, left, right);
+                mid = left;
+            }
+
+            int node = tree.add(bestFeature, bestThreshold);
+            grow(from, mid, depth + 1);
+            tree.rightChild[node] = tree.size;
+            grow(mid, to, depth + 1);
+        }
+    }
+
     /**
-     * Calculate feature importance scores
+     * Calculate feature importance scores of the current forest
      * Returns which factors most affect student performance
+     *
+     * @see #calculateFeatureImportance(RandomForestModel, String[], double[][], double[], int, ForkJoinPool)
      */
     public Map<String, Double> calculateFeatureImportance(String[] featureNames,
                                                           double[][] features,
                                                           double[] targets) {
-        Map<String, Double> importance = new HashMap<>();
-        
-        for (String feature : featureNames) {
-            importance.put(feature, 0.0);
+        RandomForestModel current = model;
+        if (current == null) {
+            throw new IllegalStateException("No random forest has been trained");
         }
-        
-        // Calculate variance for each feature
-        for (int i = 0; i < featureNames.length; i++) {
-            double variance = 0;
-            double mean = 0;
-            
-            // Calculate mean
-            for (double[] sample : features) {
-                mean += sample[i];
+        ImportanceKey key = importanceKey(current, features, targets, DEFAULT_PERMUTATION_REPEATS);
+        Map<String, Double> cached = getCachedImportance(key);
+        if (cached != null) {
+            return cached;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return computeFeatureImportance(key, current, featureNames, features, targets,
+                    DEFAULT_PERMUTATION_REPEATS, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Permutation importance: how much the forest's mean squared error on (samples, targets)
+     * grows when one feature column is shuffled, averaged over the repeats. Features the
+     * forest does not rely on score about 0.
+     *
+     * Every (feature, repeat) pass is a separate task. A pass shuffles an index array instead
+     * of the data and reads the shared column arrays through it, so the dataset is never copied.
+     * Results are cached by model version and a fingerprint of the samples and targets.
+     *
+     * @return Importance per feature name, in featureNames order
+     */
+    public Map<String, Double> calculateFeatureImportance(RandomForestModel forest, String[] featureNames,
+                                                          double[][] samples, double[] targets,
+                                                          int repeats, ForkJoinPool pool) {
+        ImportanceKey key = importanceKey(forest, samples, targets, repeats);
+        Map<String, Double> cached = getCachedImportance(key);
+        if (cached != null) {
+            return cached;
+        }
+        return computeFeatureImportance(key, forest, featureNames, samples, targets, repeats, pool);
+    }
+
+    /**
+     * Compute and cache the permutation importance under a key the caller already computed.
+     */
+    private Map<String, Double> computeFeatureImportance(ImportanceKey key, RandomForestModel forest,
+                                                         String[] featureNames, double[][] samples,
+                                                         double[] targets, int repeats, ForkJoinPool pool) {
+        int n = samples.length;
+        int featureCount = forest.featureCount();
+        double[][] columns = new double[featureCount][n];
+        for (int i = 0; i < n; i++) {
+            for (int f = 0; f < featureCount; f++) {
+                columns[f][i] = samples[i][f];
             }
-            mean /= features.length;
-            
-            // Calculate variance
-            for (double[] sample : features) {
-                variance += Math.pow(sample[i] - mean, 2);
+        }
+        double baseline = permutedError(forest, columns, targets, -1, null);
+
+        List<Callable<Double>> tasks = new ArrayList<>(featureCount * repeats);
+        for (int f = 0; f < featureCount; f++) {
+            for (int r = 0; r < repeats; r++) {
+                int feature = f;
+                long seed = forest.version() * 31 + (long) f * repeats + r;
+                tasks.add(() -> {
+                    int[] permutation = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        permutation[i] = i;
+                    }
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (int i = n - 1; i > 0; i--) {
+                        int j = random.nextInt(i + 1);
+                        int swap = permutation[i];
+                        permutation[i] = permutation[j];
+                        permutation[j] = swap;
+                    }
+                    return permutedError(forest, columns, targets, feature, permutation);
+                });
             }
-            variance /= features.length;
-            
-            importance.put(featureNames[i], variance);
         }
-        
+
+        double[] increase = new double[featureCount];
+        try {
+            List<Future<Double>> results = pool.invokeAll(tasks);
+            for (int t = 0; t < results.size(); t++) {
+                increase[t / repeats] += (results.get(t).get() - baseline) / repeats;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Feature importance was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Feature importance failed", e.getCause());
+        }
+
+        Map<String, Double> importance = new LinkedHashMap<>();
+        for (int f = 0; f < featureCount; f++) {
+            importance.put(f < featureNames.length ? featureNames[f] : "feature" + f, increase[f]);
+        }
+        importance = Collections.unmodifiableMap(importance);
+        synchronized (importanceCache) {
+            importanceCache.put(key, importance);
+        }
         return importance;
     }
+
+    private static ImportanceKey importanceKey(RandomForestModel forest, double[][] samples, double[] targets,
+                                               int repeats) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(8 * 512);
+            for (int i = 0; i < samples.length; i++) {
+                for (double value : samples[i]) {
+                    buffer = flushIfFull(digest, buffer).putDouble(value);
+                }
+                buffer = flushIfFull(digest, buffer).putDouble(i < targets.length ? targets[i] : Double.NaN);
+            }
+            buffer.flip();
+            digest.update(buffer);
+            return new ImportanceKey(forest.version(), samples.length,
+                    HexFormat.of().formatHex(digest.digest()), repeats);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static ByteBuffer flushIfFull(MessageDigest digest, ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    private Map<String, Double> getCachedImportance(ImportanceKey key) {
+        synchronized (importanceCache) {
+            return importanceCache.get(key);
+        }
+    }
+
+    /**
+     * Mean squared error of the forest with column permutedFeature read through permutation
+     * (no permutation when permutedFeature is -1).
+     */
+    private static double permutedError(RandomForestModel forest, double[][] columns, double[] targets,
+                                        int permutedFeature, int[] permutation) {
+        double[] row = new double[columns.length];
+        double error = 0;
+        for (int i = 0; i < targets.length; i++) {
+            for (int f = 0; f < columns.length; f++) {
+                row[f] = columns[f][f == permutedFeature ? permutation[i] : i];
+            }
+            double diff = forest.predict(row) - targets[i];
+            error += diff * diff;
+        }
+        return error / targets.length;
+    }
     
     /**
      * Identify at-risk students based on multiple indicators
@@ -155,12 +563,14 @@ public class RandomForestAnalyticsAlgorithm {
             recentAvg /= recent;
             
             int olderCount = Math.min(3, examScores.length - recent);
-            for (int i = 0; i < olderCount; i++) {
-                olderAvg += examScores[i];
+            if (olderCount > 0) {
+                for (int i = 0; i < olderCount; i++) {
+                    olderAvg += examScores[i];
+                }
+                olderAvg /= olderCount;
+
+                trend = recentAvg - olderAvg;
             }
-            olderAvg /= olderCount;
-            
-            trend = recentAvg - olderAvg;
         }
         
         // Calculate consistency (standard deviation)
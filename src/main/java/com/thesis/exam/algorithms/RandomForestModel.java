@@ -0,0 +1,70 @@
+package com.thesis.exam.algorithms;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable trained random forest (regression trees, predictions averaged over the trees).
+ *
+ * All trees are stored in one set of parallel primitive arrays in pre-order, so prediction
+ * is an index walk without objects or boxing. For node n:
+ * - feature[n] is the split feature, or -1 for a leaf
+ * - threshold[n] is the split value (go left when x[feature] <= threshold), or the prediction of a leaf
+ * - the left child is node n + 1 (pre-order), the right child is node rightChild[n]
+ * Tree t starts at node roots[t]. The arrays are never modified after construction.
+ * Every model gets a new version number, so results derived from a model can be cached by version.
+ */
+public final class RandomForestModel {
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final long version;
+
+    private final int featureCount;
+    private final int[] roots;
+    private final int[] feature;
+    private final double[] threshold;
+    private final int[] rightChild;
+
+    RandomForestModel(int featureCount, int[] roots, int[] feature, double[] threshold, int[] rightChild) {
+        this.version = VERSIONS.incrementAndGet();
+        this.featureCount = featureCount;
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.rightChild = rightChild;
+    }
+
+    /**
+     * Average prediction of all trees. Allocation-free.
+     *
+     * @param x Feature vector of length featureCount()
+     */
+    public double predict(double[] x) {
+        double sum = 0;
+        for (int root : roots) {
+            int node = root;
+            int f;
+            while ((f = feature[node]) >= 0) {
+                node = x[f] <= threshold[node] ? node + 1 : rightChild[node];
+            }
+            sum += threshold[node];
+        }
+        return sum / roots.length;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int featureCount() {
+        return featureCount;
+    }
+
+    public int treeCount() {
+        return roots.length;
+    }
+
+    public int nodeCount() {
+        return feature.length;
+    }
+}
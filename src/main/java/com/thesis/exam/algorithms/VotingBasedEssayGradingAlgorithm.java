@@ -13,6 +13,13 @@ import java.util.*;
 @Component
 public class VotingBasedEssayGradingAlgorithm {
     
+    // Voting weights
+    private static final double KEYWORD_WEIGHT = 0.30;     // Keyword presence (most important)
+    private static final double LENGTH_WEIGHT = 0.15;      // Length appropriateness
+    private static final double VOCABULARY_WEIGHT = 0.15;  // Vocabulary richness
+    private static final double COHERENCE_WEIGHT = 0.20;   // Coherence
+    private static final double SIMILARITY_WEIGHT = 0.20;  // Similarity to reference
+    
     /**
      * Grade an essay based on multiple criteria using voting mechanism
      * 
@@ -26,57 +33,67 @@ public class VotingBasedEssayGradingAlgorithm {
         if (essayText == null || essayText.trim().isEmpty()) {
             return 0.0;
         }
-        
-        // Multiple grading criteria (voters)
-        double keywordScore = evaluateKeywordPresence(essayText, keywords);
-        double lengthScore = evaluateLength(essayText, referenceAnswer);
-        double vocabularyScore = evaluateVocabulary(essayText);
-        double coherenceScore = evaluateCoherence(essayText);
-        double similarityScore = evaluateSimilarity(essayText, referenceAnswer);
-        
-        // Voting weights
-        double w1 = 0.30;  // Keyword presence (most important)
-        double w2 = 0.15;  // Length appropriateness
-        double w3 = 0.15;  // Vocabulary richness
-        double w4 = 0.20;  // Coherence
-        double w5 = 0.20;  // Similarity to reference
-        
-        // Weighted voting
-        double finalScore = (keywordScore * w1) + 
-                          (lengthScore * w2) + 
-                          (vocabularyScore * w3) + 
-                          (coherenceScore * w4) + 
-                          (similarityScore * w5);
+        return gradeEssay(EssayFeatures.extract(essayText), EssayReferenceProfile.build(referenceAnswer, keywords));
+    }
+    
+    /**
+     * Grade an essay against a prepared reference profile, so the reference answer and
+     * keywords are analysed once per question instead of once per essay
+     */
+    public double gradeEssay(String essayText, EssayReferenceProfile profile) {
+        if (essayText == null || essayText.trim().isEmpty()) {
+            return 0.0;
+        }
+        return gradeEssay(EssayFeatures.extract(essayText), profile);
+    }
+    
+    /**
+     * Same as gradeEssay(String, EssayReferenceProfile) on already extracted essay features
+     */
+    public double gradeEssay(EssayFeatures essay, EssayReferenceProfile profile) {
+        if (essay.wordCount() == 0) {
+            return 0.0;
+        }
+        EssayFeatures reference = profile.reference();
+        return vote(evaluateKeywordPresence(essay, profile),
+                evaluateLength(essay, reference),
+                evaluateVocabulary(essay),
+                evaluateCoherence(essay),
+                evaluateSimilarity(essay, reference));
+    }
+    
+    /**
+     * Weighted voting over the individual criteria (voters)
+     */
+    private double vote(double keywordScore, double lengthScore, double vocabularyScore,
+                        double coherenceScore, double similarityScore) {
+        double finalScore = (keywordScore * KEYWORD_WEIGHT) + 
+                          (lengthScore * LENGTH_WEIGHT) + 
+                          (vocabularyScore * VOCABULARY_WEIGHT) + 
+                          (coherenceScore * COHERENCE_WEIGHT) + 
+                          (similarityScore * SIMILARITY_WEIGHT);
         
         return Math.max(0.0, Math.min(1.0, finalScore));
     }
     
     /**
-     * Evaluate presence of important keywords
+     * Evaluate presence of important keywords (whole words, one pass over the essay)
      */
-    private double evaluateKeywordPresence(String essay, List<String> keywords) {
-        if (keywords == null || keywords.isEmpty()) {
+    private double evaluateKeywordPresence(EssayFeatures essay, EssayReferenceProfile profile) {
+        KeywordMatcher keywords = profile.keywords();
+        if (keywords.size() == 0) {
             return 1.0;
         }
         
-        String essayLower = essay.toLowerCase();
-        int foundCount = 0;
-        
-        for (String keyword : keywords) {
-            if (essayLower.contains(keyword.toLowerCase())) {
-                foundCount++;
-            }
-        }
-        
-        return (double) foundCount / keywords.size();
+        return (double) keywords.countIn(essay.lowerText()) / keywords.size();
     }
     
     /**
      * Evaluate if essay length is appropriate
      */
-    private double evaluateLength(String essay, String reference) {
-        int essayWords = countWords(essay);
-        int refWords = countWords(reference);
+    private double evaluateLength(EssayFeatures essay, EssayFeatures reference) {
+        int essayWords = essay.wordCount();
+        int refWords = reference.wordCount();
         
         if (refWords == 0) return 1.0;
         
@@ -97,13 +114,10 @@ public class VotingBasedEssayGradingAlgorithm {
     /**
      * Evaluate vocabulary richness (unique words ratio)
      */
-    private double evaluateVocabulary(String essay) {
-        String[] words = essay.toLowerCase().split("\\s+");
-        Set<String> uniqueWords = new HashSet<>(Arrays.asList(words));
-        
-        if (words.length == 0) return 0.0;
+    private double evaluateVocabulary(EssayFeatures essay) {
+        if (essay.wordCount() == 0) return 0.0;
         
-        double uniqueRatio = (double) uniqueWords.size() / words.length;
+        double uniqueRatio = (double) essay.uniqueWordCount() / essay.wordCount();
         
         // Normalize: typically 0.4-0.8 for good essays
         return Math.min(1.0, uniqueRatio / 0.7);
@@ -112,96 +126,76 @@ public class VotingBasedEssayGradingAlgorithm {
     /**
      * Evaluate coherence based on sentence structure
      */
-    private double evaluateCoherence(String essay) {
-        String[] sentences = essay.split("[.!?]+");
+    private double evaluateCoherence(EssayFeatures essay) {
+        int sentences = essay.sentenceCount();
         
-        if (sentences.length < 2) {
+        if (sentences < 2) {
             return 0.5;  // Too short to evaluate
         }
         
-        // Check for transition words
-        String[] transitions = {"however", "therefore", "moreover", "furthermore",
-                              "additionally", "consequently", "thus", "hence",
-                              "first", "second", "finally", "in conclusion"};
-        
-        int transitionCount = 0;
-        String essayLower = essay.toLowerCase();
-        
-        for (String transition : transitions) {
-            if (essayLower.contains(transition)) {
-                transitionCount++;
-            }
-        }
-        
         // Good coherence: at least 1 transition per 3 sentences
-        double expectedTransitions = sentences.length / 3.0;
-        double coherenceRatio = Math.min(1.0, transitionCount / expectedTransitions);
+        double expectedTransitions = sentences / 3.0;
+        double coherenceRatio = Math.min(1.0, essay.transitionCount() / expectedTransitions);
         
         return coherenceRatio;
     }
     
     /**
-     * Evaluate similarity to reference answer using Jaccard similarity
+     * Evaluate similarity to reference answer using Jaccard similarity (stop words removed)
      */
-    private double evaluateSimilarity(String essay, String reference) {
-        Set<String> essayWords = new HashSet<>(
-            Arrays.asList(essay.toLowerCase().split("\\s+"))
-        );
-        Set<String> refWords = new HashSet<>(
-            Arrays.asList(reference.toLowerCase().split("\\s+"))
-        );
-        
-        // Remove common stop words
-        Set<String> stopWords = new HashSet<>(Arrays.asList(
-            "the", "a", "an", "and", "or", "but", "is", "are", "was", "were",
-            "in", "on", "at", "to", "for", "of", "with", "by"
-        ));
-        
-        essayWords.removeAll(stopWords);
-        refWords.removeAll(stopWords);
-        
-        // Jaccard similarity
-        Set<String> intersection = new HashSet<>(essayWords);
-        intersection.retainAll(refWords);
-        
-        Set<String> union = new HashSet<>(essayWords);
-        union.addAll(refWords);
+    private double evaluateSimilarity(EssayFeatures essay, EssayFeatures reference) {
+        Set<String> essayTerms = essay.terms();
+        Set<String> refTerms = reference.terms();
+        
+        // Iterate the smaller set; |union| = |A| + |B| - |A ∩ B|
+        Set<String> smaller = essayTerms.size() <= refTerms.size() ? essayTerms : refTerms;
+        Set<String> larger = smaller == essayTerms ? refTerms : essayTerms;
+        int intersection = 0;
+        for (String term : smaller) {
+            if (larger.contains(term)) {
+                intersection++;
+            }
+        }
+        int union = essayTerms.size() + refTerms.size() - intersection;
         
-        if (union.isEmpty()) return 0.0;
+        if (union == 0) return 0.0;
         
-        return (double) intersection.size() / union.size();
+        return (double) intersection / union;
     }
     
     /**
-     * Count words in text
+     * Provide detailed feedback for essay
      */
-    private int countWords(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return 0;
-        }
-        return text.trim().split("\\s+").length;
+    public Map<String, Object> generateFeedback(String essay, String reference,
+                                               List<String> keywords) {
+        return generateFeedback(essay, EssayReferenceProfile.build(reference, keywords));
     }
     
     /**
-     * Provide detailed feedback for essay
+     * Same as generateFeedback(String, String, List) against a prepared reference profile
      */
-    public Map<String, Object> generateFeedback(String essay, String reference,
-                                               List<String> keywords) {
+    public Map<String, Object> generateFeedback(String essay, EssayReferenceProfile profile) {
         Map<String, Object> feedback = new HashMap<>();
+        EssayFeatures essayFeatures = EssayFeatures.extract(essay);
+        EssayFeatures referenceFeatures = profile.reference();
+        
+        double keywordScore = evaluateKeywordPresence(essayFeatures, profile);
+        double lengthScore = evaluateLength(essayFeatures, referenceFeatures);
+        double vocabularyScore = evaluateVocabulary(essayFeatures);
+        double coherenceScore = evaluateCoherence(essayFeatures);
+        double similarityScore = evaluateSimilarity(essayFeatures, referenceFeatures);
         
-        double keywordScore = evaluateKeywordPresence(essay, keywords);
-        double lengthScore = evaluateLength(essay, reference);
-        double vocabularyScore = evaluateVocabulary(essay);
-        double coherenceScore = evaluateCoherence(essay);
-        double similarityScore = evaluateSimilarity(essay, reference);
+        // Reuse the voter scores instead of grading the essay a second time
+        double overallScore = essayFeatures.wordCount() == 0 ? 0.0
+                : vote(keywordScore, lengthScore, vocabularyScore, coherenceScore, similarityScore);
         
-        feedback.put("overallScore", gradeEssay(essay, reference, keywords));
+        feedback.put("overallScore", overallScore);
         feedback.put("keywordCoverage", keywordScore);
         feedback.put("lengthAppropriate", lengthScore);
         feedback.put("vocabularyRichness", vocabularyScore);
         feedback.put("coherence", coherenceScore);
         feedback.put("contentSimilarity", similarityScore);
-        feedback.put("wordCount", countWords(essay));
+        feedback.put("wordCount", essayFeatures.wordCount());
         
         // Generate suggestions
         List<String> suggestions = new ArrayList<>();
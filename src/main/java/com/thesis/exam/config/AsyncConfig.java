@@ -1,14 +1,62 @@
 package com.thesis.exam.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Configuration class to enable asynchronous method execution
- * This allows email sending to run in background threads
+ * This allows email sending and the startup jobs (log replays, rebuilds) to run in background threads
  */
 @Configuration
 @EnableAsync
-public class AsyncConfig {
-    // Spring will automatically configure a task executor for @Async methods
+public class AsyncConfig implements AsyncConfigurer {
+
+    // Enough threads for every startup job at once, so emails never queue behind a log replay
+    private static final int ASYNC_POOL_SIZE = 8;
+
+    /**
+     * Executor of all @Async methods. Declared explicitly: the ExecutorService beans below stop
+     * Spring Boot from auto-configuring one, and @Async would otherwise fall back to the
+     * scheduler's threads, where the periodic flushes run.
+     */
+    @Bean(name = "taskExecutor")
+    public ThreadPoolTaskExecutor taskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ASYNC_POOL_SIZE);
+        executor.setMaxPoolSize(ASYNC_POOL_SIZE);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("async-");
+        return executor;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return taskExecutor();
+    }
+
+    /**
+     * Bounded pool for CPU-bound exam generation work (batch generation).
+     * Sized to the available cores so large cohorts cannot starve web request threads.
+     */
+    @Bean(name = "examGenerationExecutor", destroyMethod = "shutdown")
+    public ExecutorService examGenerationExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Pool for background CSV question imports (QuestionImportJobService). Imports are mostly
+     * waiting on the database, so half the cores (at least two) lets several teachers import at
+     * once while further jobs queue instead of competing with request threads.
+     */
+    @Bean(name = "questionImportExecutor", destroyMethod = "shutdown")
+    public ExecutorService questionImportExecutor() {
+        return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    }
 }
@@ -0,0 +1,13 @@
+package com.thesis.exam.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration class to enable @Scheduled background jobs
+ * Used for periodic flushing of in-memory counters to the database
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
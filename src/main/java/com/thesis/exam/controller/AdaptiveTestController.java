@@ -0,0 +1,140 @@
+package com.thesis.exam.controller;
+
+import com.thesis.exam.algorithms.AdaptiveTestSession;
+import com.thesis.exam.model.*;
+import com.thesis.exam.repository.QuestionRepository;
+import com.thesis.exam.service.AdaptiveTestingService;
+import com.thesis.exam.service.StudentService;
+import com.thesis.exam.service.SubjectService;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+/**
+ * Computerized Adaptive Testing (CAT) pages.
+ * The running session lives in the student's HTTP session and is asked one question at a time.
+ */
+@Controller
+@RequestMapping("/cat")
+public class AdaptiveTestController {
+
+    private static final String SESSION_KEY = "catSession";
+    private static final String SUBJECT_KEY = "catSubjectId";
+
+    // {questionId, time it was first shown} for the response time of the pending question
+    private static final String SHOWN_AT_KEY = "catQuestionShownAt";
+
+    @Autowired
+    private AdaptiveTestingService adaptiveTestingService;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private SubjectService subjectService;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @GetMapping
+    public String showAdaptiveTest(HttpSession session, Model model) {
+        if (resolveStudentId(session) == null) {
+            return "redirect:/login";
+        }
+
+        model.addAttribute("userName", session.getAttribute("userName"));
+        AdaptiveTestSession catSession = (AdaptiveTestSession) session.getAttribute(SESSION_KEY);
+        if (catSession == null) {
+            model.addAttribute("subjects", subjectService.getAllSubjects());
+            return "adaptive-exam";
+        }
+
+        Question question = adaptiveTestingService.nextQuestion(catSession);
+        if (question == null) {
+            return finish(session);
+        }
+
+        long[] shownAt = (long[]) session.getAttribute(SHOWN_AT_KEY);
+        if (shownAt == null || shownAt[0] != question.getId()) {
+            session.setAttribute(SHOWN_AT_KEY, new long[]{question.getId(), System.currentTimeMillis()});
+        }
+
+        model.addAttribute("subject", subjectService.getSubject((Long) session.getAttribute(SUBJECT_KEY)));
+        model.addAttribute("question", question);
+        model.addAttribute("questionNumber", catSession.getAdministeredCount() + 1);
+        model.addAttribute("maxQuestions", catSession.getMaxItems());
+        return "adaptive-exam";
+    }
+
+    @PostMapping("/start")
+    public String startAdaptiveTest(@RequestParam Long subjectId, HttpSession session,
+                                    RedirectAttributes redirectAttributes) {
+        if (resolveStudentId(session) == null) {
+            return "redirect:/login";
+        }
+        if (subjectService.getSubject(subjectId) == null) {
+            redirectAttributes.addFlashAttribute("error", "Please choose a subject.");
+            return "redirect:/cat";
+        }
+
+        session.setAttribute(SESSION_KEY, adaptiveTestingService.startSession(subjectId));
+        session.setAttribute(SUBJECT_KEY, subjectId);
+        return "redirect:/cat";
+    }
+
+    @PostMapping("/answer")
+    public String submitAnswer(@RequestParam Long questionId,
+                               @RequestParam(required = false) String answer,
+                               HttpSession session) {
+        if (resolveStudentId(session) == null) {
+            return "redirect:/login";
+        }
+
+        AdaptiveTestSession catSession = (AdaptiveTestSession) session.getAttribute(SESSION_KEY);
+        if (catSession == null) {
+            return "redirect:/cat";
+        }
+
+        // Ignore stale or repeated submissions (e.g. browser back + resubmit)
+        Question question = questionRepository.findById(questionId).orElse(null);
+        if (question != null && questionId == catSession.pendingQuestionId()) {
+            long[] shownAt = (long[]) session.getAttribute(SHOWN_AT_KEY);
+            int responseTimeMillis = shownAt != null && shownAt[0] == questionId
+                    ? (int) Math.min(Integer.MAX_VALUE, System.currentTimeMillis() - shownAt[1])
+                    : -1;
+            adaptiveTestingService.submitAnswer(catSession, question, answer, responseTimeMillis);
+        }
+
+        if (catSession.isFinished()) {
+            return finish(session);
+        }
+        return "redirect:/cat";
+    }
+
+    private String finish(HttpSession session) {
+        AdaptiveTestSession catSession = (AdaptiveTestSession) session.getAttribute(SESSION_KEY);
+        Long subjectId = (Long) session.getAttribute(SUBJECT_KEY);
+        session.removeAttribute(SESSION_KEY);
+        session.removeAttribute(SUBJECT_KEY);
+        session.removeAttribute(SHOWN_AT_KEY);
+
+        Student student = studentService.getStudent(resolveStudentId(session));
+        Subject subject = subjectService.getSubject(subjectId);
+        if (catSession != null && student != null && subject != null && catSession.getAdministeredCount() > 0) {
+            adaptiveTestingService.completeSession(catSession, student, subject);
+        }
+        return "redirect:/student/results";
+    }
+
+    private Long resolveStudentId(HttpSession session) {
+        Object id = session.getAttribute("userId");
+        Object role = session.getAttribute("userRole");
+        if (id instanceof Long && role == UserRole.STUDENT) {
+            return (Long) id;
+        }
+        return null;
+    }
+}
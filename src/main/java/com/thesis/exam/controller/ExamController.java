@@ -1,18 +1,29 @@
 package com.thesis.exam.controller;
 
 import com.thesis.exam.model.*;
+import com.thesis.exam.repository.StudentRepository;
 import com.thesis.exam.repository.TeacherRepository;
+import com.thesis.exam.service.BackgroundJob;
+import com.thesis.exam.service.BatchExamGenerationService;
+import com.thesis.exam.service.BulkEssayGradingService;
+import com.thesis.exam.service.DifficultyModelTrainingService;
 import com.thesis.exam.service.ExamGenerationService;
+import com.thesis.exam.service.ExamGradingService;
+import com.thesis.exam.service.IRTCalibrationService;
+import com.thesis.exam.service.PlagiarismDetectionService;
 import com.thesis.exam.service.StudentService;
 import com.thesis.exam.service.SubjectService;
 import com.thesis.exam.repository.ExamAssignmentRepository;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -29,6 +40,24 @@ public class ExamController {
     @Autowired
     private SubjectService subjectService;
 
+    @Autowired
+    private BatchExamGenerationService batchExamGenerationService;
+
+    @Autowired
+    private ExamGradingService examGradingService;
+
+    @Autowired
+    private IRTCalibrationService irtCalibrationService;
+
+    @Autowired
+    private BulkEssayGradingService bulkEssayGradingService;
+
+    @Autowired
+    private DifficultyModelTrainingService difficultyModelTrainingService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
     @Autowired
     private ExamAssignmentRepository examAssignmentRepository;
 
@@ -65,6 +94,122 @@ public class ExamController {
         return "exam-result";
     }
 
+    /**
+     * Generates one exam per student for a whole cohort.
+     * If no studentIds are given, every student is included.
+     */
+    @PostMapping("/generate-batch")
+    @ResponseBody
+    public ResponseEntity<BatchExamGenerationService.BatchGenerationReport> generateBatch(
+                              @RequestParam Long subjectId,
+                              @RequestParam(required = false) List<Long> studentIds,
+                              @RequestParam(defaultValue = "20") int totalQuestions,
+                              @RequestParam(defaultValue = "false") boolean isFixedExam,
+                              HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (subjectService.getSubject(subjectId) == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Long> cohort = (studentIds == null || studentIds.isEmpty())
+                ? studentRepository.findAllIds()
+                : studentIds;
+
+        return ResponseEntity.ok(batchExamGenerationService.generateForCohort(subjectId, cohort, totalQuestions, isFixedExam));
+    }
+
+    /**
+     * Starts the IRT calibration job in the background instead of waiting for the nightly schedule.
+     * Returns 409 if a calibration is already running.
+     */
+    @PostMapping("/calibrate-irt")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<IRTCalibrationService.CalibrationReport>> calibrateIrt(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BackgroundJob.JobStatus<IRTCalibrationService.CalibrationReport> status = irtCalibrationService.start();
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(status);
+    }
+
+    /**
+     * State of the running or last IRT calibration, with the last run's metrics.
+     */
+    @GetMapping("/calibrate-irt")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<IRTCalibrationService.CalibrationReport>> calibrationStatus(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(irtCalibrationService.getStatus());
+    }
+
+    /**
+     * Starts retraining the difficulty regression in the background instead of waiting for the
+     * nightly schedule. Returns 409 if a retraining is already running.
+     */
+    @PostMapping("/train-difficulty-model")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<DifficultyModelTrainingService.TrainingReport>> trainDifficultyModel(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BackgroundJob.JobStatus<DifficultyModelTrainingService.TrainingReport> status = difficultyModelTrainingService.start();
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(status);
+    }
+
+    /**
+     * State of the running or last difficulty model retraining, with the last run's metrics.
+     */
+    @GetMapping("/train-difficulty-model")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<DifficultyModelTrainingService.TrainingReport>> difficultyTrainingStatus(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(difficultyModelTrainingService.getStatus());
+    }
+
+    /**
+     * Starts grading every essay answer of an exam in the background.
+     * Returns 409 if a bulk grading job is already running.
+     */
+    @PostMapping("/{examId}/grade-essays")
+    @ResponseBody
+    public ResponseEntity<BulkEssayGradingService.BulkGradingProgress> gradeEssays(@PathVariable Long examId,
+                                                                                  HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BulkEssayGradingService.BulkGradingProgress progress = bulkEssayGradingService.start(examId);
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(progress);
+    }
+
+    /**
+     * Progress and throughput of the running or last bulk grading job for an exam.
+     */
+    @GetMapping("/{examId}/grade-essays")
+    @ResponseBody
+    public ResponseEntity<BulkEssayGradingService.BulkGradingProgress> essayGradingProgress(@PathVariable Long examId,
+                                                                                           HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BulkEssayGradingService.BulkGradingProgress progress = bulkEssayGradingService.getProgress(examId);
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.notFound().build();
+    }
+
     @PostMapping("/assign")
     public String assignExam(@RequestParam Long examId,
                             @RequestParam Long studentId,
@@ -150,7 +295,6 @@ public class ExamController {
 
     @PostMapping("/submit/{assignmentId}")
     public String submitStudentExam(@PathVariable Long assignmentId,
-                                  @RequestParam(required = false) java.util.List<Long> correctQuestionIds,
                                   @RequestParam Map<String, String> allParams,
                                   HttpSession session,
                                   Model model) {
@@ -166,7 +310,9 @@ public class ExamController {
         
         // Extract student answers from form parameters
         // Parameters come as answer_{questionId}=student's text answer
+        // and time_{questionId}=milliseconds spent on the question (exam-timing.js)
         java.util.Map<Long, String> studentAnswers = new java.util.HashMap<>();
+        java.util.Map<Long, Integer> responseTimes = new java.util.HashMap<>();
         for (java.util.Map.Entry<String, String> entry : allParams.entrySet()) {
             if (entry.getKey().startsWith("answer_")) {
                 try {
@@ -175,28 +321,42 @@ public class ExamController {
                 } catch (NumberFormatException e) {
                     // Skip invalid question IDs
                 }
+            } else if (entry.getKey().startsWith("time_")) {
+                try {
+                    Long questionId = Long.parseLong(entry.getKey().substring(5));
+                    long millis = Long.parseLong(entry.getValue());
+                    // Questions never visited report 0 and are logged without a time
+                    if (millis > 0) {
+                        responseTimes.put(questionId, (int) Math.min(Integer.MAX_VALUE, millis));
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip malformed timings
+                }
             }
         }
         
-        // Calculate score
-        if (correctQuestionIds == null) {
-            correctQuestionIds = java.util.Collections.emptyList();
-        }
-        
-        int totalQuestions = assignment.getExam().getQuestions().size();
-        double score = totalQuestions > 0 ? (correctQuestionIds.size() * 100.0) / totalQuestions : 0;
+        // Grade on the server from the submitted answers and the cached answer keys
+        List<Long> questionIds = assignment.getExam().getQuestions().stream().map(Question::getId).toList();
+        ExamGradingService.GradingResult result = examGradingService.grade(questionIds, studentAnswers,
+                studentId, assignment.getExam().getId());
+        double score = result.score() * 100;
         
         // Update assignment
         assignment.setStatus(ExamStatus.COMPLETED);
         assignment.setScore(score);
         assignment.setCompletedAt(java.time.LocalDateTime.now());
+        // Similar essays are kept with the submission for the teacher (the pairs are also on /teacher/similarity)
+        assignment.setReviewNote(result.similarityMatches().isEmpty() ? null
+                : PlagiarismDetectionService.describe(result.similarityMatches(), 1000));
+        if (!result.similarityMatches().isEmpty()) {
+            System.out.println("Assignment " + assignmentId + ": " + result.similarityMatches().size()
+                    + " essay(s) closely match other students' essays (see /teacher/similarity)");
+        }
         examAssignmentRepository.save(assignment);
         
-        // Process results with algorithm
-        examGenerationService.processExamResult(assignment.getExam(), correctQuestionIds);
-        
-        // Log student answers for teacher review (you can save these to database if needed)
-        System.out.println("Student answers submitted: " + studentAnswers.size() + " answers");
+        // Process results with algorithm (answers and response times are kept in the response event log)
+        examGenerationService.processExamResult(assignment.getExam(), assignment,
+                result.correctQuestionIds(), result.score(), studentAnswers, responseTimes);
         
         model.addAttribute("message", "Exam submitted successfully! Score: " + String.format("%.1f", score) + "%");
         return "redirect:/student/results";
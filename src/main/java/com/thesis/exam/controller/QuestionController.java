@@ -1,10 +1,14 @@
 package com.thesis.exam.controller;
 
+import com.thesis.exam.service.QuestionCsvImporter;
+import com.thesis.exam.service.QuestionImportJobService;
 import com.thesis.exam.service.QuestionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -13,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 @Controller
 @RequestMapping("/question")
@@ -21,21 +26,28 @@ public class QuestionController {
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private QuestionImportJobService questionImportJobService;
+
     @GetMapping("/upload")
     public String showUploadForm(Model model) {
         return "upload-question";
     }
 
     @PostMapping("/upload-file")
-    public String uploadQuestionFile(@RequestParam("file") MultipartFile file, Model model) {
+    public String uploadQuestionFile(@RequestParam("file") MultipartFile file,
+                                     @RequestParam(value = "updateExisting", defaultValue = "false") boolean updateExisting,
+                                     Model model) {
         if (file.isEmpty()) {
             model.addAttribute("error", "Please select a file to upload.");
         } else if (!isCsvFile(file)) {
             model.addAttribute("error", "Only .csv files exported as UTF-8 text are supported. Please re-export the file as CSV.");
         } else {
             try {
-                questionService.saveQuestionsFromCsv(file);
-                model.addAttribute("message", "Questions uploaded successfully from file!");
+                String jobId = questionImportJobService.submit(file, updateExisting
+                        ? QuestionCsvImporter.DuplicatePolicy.UPDATE : QuestionCsvImporter.DuplicatePolicy.SKIP);
+                model.addAttribute("importJobId", jobId);
+                model.addAttribute("message", "Upload received. Importing questions from " + file.getOriginalFilename() + "...");
             } catch (Exception e) {
                 model.addAttribute("error", "Error uploading file: " + e.getMessage());
             }
@@ -44,6 +56,36 @@ public class QuestionController {
         return "upload-question";
     }
 
+    /**
+     * Progress of a background import started by upload-file.
+     */
+    @GetMapping("/import/{jobId}")
+    @ResponseBody
+    public ResponseEntity<QuestionImportJobService.ImportStatus> getImportStatus(@PathVariable String jobId) {
+        QuestionImportJobService.ImportStatus status = questionImportJobService.getStatus(jobId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Rows of a finished import that were not imported, with the reason for each.
+     */
+    @GetMapping("/import/{jobId}/rejected.csv")
+    public ResponseEntity<Resource> downloadRejectedRows(@PathVariable String jobId) {
+        Path file = questionImportJobService.getRejectedRowsFile(jobId);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        FileSystemResource resource = new FileSystemResource(file);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=rejected-rows-" + jobId + ".csv")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .body(resource);
+    }
+
     @GetMapping("/download-sample")
     public ResponseEntity<Resource> downloadSampleQuestions() {
         ByteArrayResource resource = new ByteArrayResource(SAMPLE_CSV.getBytes(StandardCharsets.UTF_8));
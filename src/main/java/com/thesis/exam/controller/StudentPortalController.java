@@ -1,10 +1,10 @@
 package com.thesis.exam.controller;
 
 import com.thesis.exam.model.*;
-import com.thesis.exam.repository.ExamRepository;
 import com.thesis.exam.repository.StudentRepository;
 import com.thesis.exam.repository.StudentSubjectMasteryRepository;
 import com.thesis.exam.repository.ExamAssignmentRepository;
+import com.thesis.exam.service.ScoreRollupService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -14,15 +14,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.OptionalDouble;
 
 @Controller
 @RequestMapping("/student")
 public class StudentPortalController {
 
-    @Autowired
-    private ExamRepository examRepository;
-
     @Autowired
     private StudentRepository studentRepository;
 
@@ -32,6 +28,9 @@ public class StudentPortalController {
     @Autowired
     private ExamAssignmentRepository examAssignmentRepository;
 
+    @Autowired
+    private ScoreRollupService scoreRollupService;
+
     @GetMapping("/dashboard")
     public String viewDashboard(HttpSession session, Model model) {
         Long studentId = resolveStudentId(session);
@@ -84,10 +83,11 @@ public class StudentPortalController {
         addCommonAttributes(session, model);
         Student student = studentRepository.findById(studentId).orElse(null);
         if (student != null) {
-            // Get only completed exams with scores
+            // Get only completed (or since graded) exams with scores
             List<ExamAssignment> completedAssignments = examAssignmentRepository.findByStudentOrderByAssignedAtDesc(student)
                     .stream()
-                    .filter(a -> a.getStatus() == ExamStatus.COMPLETED && a.getScore() != null)
+                    .filter(a -> (a.getStatus() == ExamStatus.COMPLETED || a.getStatus() == ExamStatus.GRADED)
+                            && a.getScore() != null)
                     .filter(a -> a.getExam() != null && a.getExam().getSubject() != null)
                     .toList();
             model.addAttribute("completedAssignments", completedAssignments);
@@ -105,23 +105,19 @@ public class StudentPortalController {
         }
 
         addCommonAttributes(session, model);
-        List<Exam> exams = examRepository.findByStudentIdOrderByCreatedAtDesc(studentId);
-        model.addAttribute("exams", exams);
-
-        OptionalDouble averageScore = exams.stream()
-                .filter(exam -> exam.getScore() != null)
-                .mapToDouble(Exam::getScore)
-                .average();
-
-        double bestScore = exams.stream()
-                .filter(exam -> exam.getScore() != null)
-                .mapToDouble(Exam::getScore)
-                .max()
-                .orElse(0);
+        // Totals over the student's per-subject score rollups
+        long completedExams = 0;
+        double scoreSum = 0.0;
+        double bestScore = 0.0;
+        for (ScoreRollup rollup : scoreRollupService.getStudentRollups(studentId)) {
+            completedExams += rollup.getExamCount();
+            scoreSum += rollup.getScoreSum();
+            bestScore = Math.max(bestScore, rollup.getMaxScore());
+        }
 
-        model.addAttribute("averageScore", averageScore.orElse(0));
+        model.addAttribute("averageScore", completedExams > 0 ? scoreSum / completedExams : 0);
         model.addAttribute("bestScore", bestScore);
-        model.addAttribute("completedExams", exams.stream().filter(exam -> exam.getScore() != null).count());
+        model.addAttribute("completedExams", completedExams);
 
         Student student = studentRepository.findById(studentId).orElse(null);
         List<StudentSubjectMastery> mastery = student == null
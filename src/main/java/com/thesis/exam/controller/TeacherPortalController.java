@@ -1,20 +1,34 @@
 package com.thesis.exam.controller;
 
-import com.thesis.exam.model.Exam;
+import com.thesis.exam.model.Question;
 import com.thesis.exam.model.Student;
+import com.thesis.exam.model.StudentRiskScore;
 import com.thesis.exam.model.UserRole;
-import com.thesis.exam.repository.ExamRepository;
+import com.thesis.exam.repository.QuestionRepository;
 import com.thesis.exam.repository.StudentRepository;
+import com.thesis.exam.service.BackgroundJob;
+import com.thesis.exam.service.PlagiarismDetectionService;
+import com.thesis.exam.service.QuestionDeduplicationService;
+import com.thesis.exam.service.ScoreRollupService;
+import com.thesis.exam.service.StudentRiskScoringService;
+import com.thesis.exam.service.StudentRosterService;
+import com.thesis.exam.service.TeacherAnalyticsService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
-import java.util.DoubleSummaryStatistics;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Controller
@@ -22,10 +36,28 @@ import java.util.stream.Collectors;
 public class TeacherPortalController {
 
     @Autowired
-    private ExamRepository examRepository;
+    private StudentRepository studentRepository;
 
     @Autowired
-    private StudentRepository studentRepository;
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private PlagiarismDetectionService plagiarismDetectionService;
+
+    @Autowired
+    private TeacherAnalyticsService teacherAnalyticsService;
+
+    @Autowired
+    private ScoreRollupService scoreRollupService;
+
+    @Autowired
+    private StudentRosterService studentRosterService;
+
+    @Autowired
+    private StudentRiskScoringService riskScoringService;
+
+    @Autowired
+    private QuestionDeduplicationService questionDeduplicationService;
 
     @GetMapping("/analytics")
     public String viewAnalytics(HttpSession session, Model model) {
@@ -34,39 +66,176 @@ public class TeacherPortalController {
         }
 
         addCommonAttributes(session, model);
-        List<Exam> exams = examRepository.findAll();
-        model.addAttribute("totalExams", exams.size());
-        model.addAttribute("averageScore", exams.stream()
-                .filter(exam -> exam.getScore() != null)
-                .mapToDouble(Exam::getScore)
-                .average()
-                .orElse(0));
-
-        Map<String, DoubleSummaryStatistics> subjectStats = exams.stream()
-                .filter(exam -> exam.getSubject() != null && exam.getScore() != null)
-                .collect(Collectors.groupingBy(exam -> exam.getSubject().getName(),
-                        Collectors.summarizingDouble(Exam::getScore)));
-        model.addAttribute("subjectStats", subjectStats);
-        model.addAttribute("totalStudents", studentRepository.count());
+        TeacherAnalyticsService.AnalyticsSummary summary = teacherAnalyticsService.getSummary();
+        model.addAttribute("totalExams", summary.totalExams());
+        model.addAttribute("averageScore", summary.averageScore());
+        model.addAttribute("subjectStats", summary.subjectStats());
+        model.addAttribute("totalStudents", summary.totalStudents());
+        model.addAttribute("recentDays", summary.recentDays());
+
+        // At-risk students as written by the last nightly scoring run
+        List<StudentRiskScore> atRisk = riskScoringService.getAtRiskStudents();
+        model.addAttribute("atRiskStudents", atRisk);
+        model.addAttribute("atRiskCount", riskScoringService.countAtRiskStudents());
+        model.addAttribute("atRiskNames", studentRepository.findAllById(
+                atRisk.stream().map(StudentRiskScore::getStudentId).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Student::getId, TeacherPortalController::displayName)));
         return "teacher-analytics";
     }
 
+    /**
+     * Student roster, one keyset page at a time, sorted and filtered in the database.
+     */
     @GetMapping("/students")
-    public String manageStudents(HttpSession session, Model model) {
+    public String manageStudents(@RequestParam(required = false) String search,
+                                 @RequestParam(required = false) Integer minExams,
+                                 @RequestParam(required = false) Integer maxExams,
+                                 @RequestParam(defaultValue = "NAME") StudentRosterService.RosterSort sort,
+                                 @RequestParam(defaultValue = "false") boolean desc,
+                                 @RequestParam(required = false) String afterValue,
+                                 @RequestParam(required = false) Long afterId,
+                                 @RequestParam(defaultValue = "" + StudentRosterService.DEFAULT_PAGE_SIZE) int size,
+                                 HttpSession session, Model model) {
         if (!isTeacher(session)) {
             return "redirect:/login";
         }
 
         addCommonAttributes(session, model);
-        List<Student> students = studentRepository.findAll();
-        Map<Long, Long> examsPerStudent = examRepository.findAll().stream()
-                .filter(exam -> exam.getStudent() != null)
-                .collect(Collectors.groupingBy(exam -> exam.getStudent().getId(), Collectors.counting()));
-        model.addAttribute("students", students);
-        model.addAttribute("examsPerStudent", examsPerStudent);
+        StudentRosterService.RosterPage page = studentRosterService.findPage(new StudentRosterService.RosterQuery(
+                search, minExams, maxExams, sort, desc, afterValue, afterId, size));
+        model.addAttribute("students", page.rows());
+        model.addAttribute("page", page);
+        model.addAttribute("search", search);
+        model.addAttribute("minExams", minExams);
+        model.addAttribute("maxExams", maxExams);
+        model.addAttribute("sort", sort);
+        model.addAttribute("desc", desc);
+        model.addAttribute("size", size);
+        model.addAttribute("firstPage", afterId == null);
         return "teacher-students";
     }
 
+    /**
+     * Starts recomputing all score rollups from the exam history in the background (e.g. after a
+     * backfill). Returns 409 if a rebuild is already running.
+     */
+    @PostMapping("/rollups/rebuild")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<ScoreRollupService.RebuildReport>> rebuildRollups(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BackgroundJob.JobStatus<ScoreRollupService.RebuildReport> status = scoreRollupService.rebuild();
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(status);
+    }
+
+    /**
+     * State of the running or last score rollup rebuild, with the last run's summary.
+     */
+    @GetMapping("/rollups/rebuild")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<ScoreRollupService.RebuildReport>> rollupRebuildStatus(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(scoreRollupService.getRebuildStatus());
+    }
+
+    /**
+     * Starts the at-risk scoring batch in the background instead of waiting for the nightly run.
+     * Returns 409 if a scoring run is already running.
+     */
+    @PostMapping("/risk-scores/run")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<StudentRiskScoringService.ScoringReport>> runRiskScoring(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BackgroundJob.JobStatus<StudentRiskScoringService.ScoringReport> status = riskScoringService.start();
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(status);
+    }
+
+    /**
+     * State of the running or last at-risk scoring run, with the last run's metrics.
+     */
+    @GetMapping("/risk-scores/run")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<StudentRiskScoringService.ScoringReport>> riskScoringStatus(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(riskScoringService.getStatus());
+    }
+
+    /**
+     * Starts merging duplicate questions of the existing bank in the background (normally done
+     * once at startup). Returns 409 if a deduplication is already running.
+     */
+    @PostMapping("/questions/deduplicate")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<QuestionDeduplicationService.DeduplicationReport>> deduplicateQuestions(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        BackgroundJob.JobStatus<QuestionDeduplicationService.DeduplicationReport> status = questionDeduplicationService.start();
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(status);
+    }
+
+    /**
+     * State of the running or last question deduplication, with the last run's summary.
+     */
+    @GetMapping("/questions/deduplicate")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob.JobStatus<QuestionDeduplicationService.DeduplicationReport>> deduplicationStatus(HttpSession session) {
+        if (!isTeacher(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(questionDeduplicationService.getStatus());
+    }
+
+    /**
+     * Report of essays that closely match another student's essay for the same question.
+     */
+    @GetMapping("/similarity")
+    public String viewSimilarityReport(HttpSession session, Model model) {
+        if (!isTeacher(session)) {
+            return "redirect:/login";
+        }
+
+        addCommonAttributes(session, model);
+        List<PlagiarismDetectionService.SimilarityMatch> matches = plagiarismDetectionService.getRecentMatches();
+        Set<Long> studentIds = new HashSet<>();
+        Set<Long> questionIds = new HashSet<>();
+        for (PlagiarismDetectionService.SimilarityMatch match : matches) {
+            studentIds.add(match.studentId());
+            studentIds.add(match.matchedStudentId());
+            questionIds.add(match.questionId());
+        }
+        model.addAttribute("matches", matches);
+        model.addAttribute("studentNames", studentRepository.findAllById(studentIds).stream()
+                .collect(Collectors.toMap(Student::getId, TeacherPortalController::displayName)));
+        model.addAttribute("questions", questionRepository.findAllById(questionIds).stream()
+                .collect(Collectors.toMap(Question::getId, Function.identity())));
+        model.addAttribute("threshold", PlagiarismDetectionService.SIMILARITY_THRESHOLD);
+        return "teacher-similarity";
+    }
+
+    /**
+     * Name for display; Collectors.toMap rejects null values.
+     */
+    private static String displayName(Student student) {
+        return student.getName() != null ? student.getName() : "";
+    }
+
     private boolean isTeacher(HttpSession session) {
         Object role = session.getAttribute("userRole");
         return role == UserRole.TEACHER;
@@ -0,0 +1,37 @@
+package com.thesis.exam.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Grade and feedback of one student's essay answer in an exam (written by BulkEssayGradingService).
+ */
+@Entity
+@Data
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"exam_id", "student_id", "question_id"}))
+public class EssayGrade {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "exam_id")
+    private Exam exam;
+
+    @ManyToOne
+    @JoinColumn(name = "student_id")
+    private Student student;
+
+    @ManyToOne
+    @JoinColumn(name = "question_id")
+    private Question question;
+
+    private Double score;
+
+    @Column(length = 1000)
+    private String feedback;
+
+    private LocalDateTime gradedAt;
+}
@@ -34,4 +34,8 @@ public class ExamAssignment {
     private LocalDateTime completedAt;
 
     private Double score;
+
+    // Notes for the teacher, e.g. essays that closely match another student's essay
+    @Column(length = 1000)
+    private String reviewNote;
 }
\ No newline at end of file
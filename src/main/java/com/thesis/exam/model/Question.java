@@ -1,10 +1,13 @@
 package com.thesis.exam.model;
 
+import com.thesis.exam.util.ContentHash;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
 @Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_question_content_hash_subject",
+        columnNames = {"content_hash", "subject_id"}))
 public class Question {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -13,6 +16,11 @@ public class Question {
     @Column(length = 1000)
     private String content;
 
+    // ContentHash of the content; unique per subject. Null only for rows created before the column
+    // existed, until QuestionDeduplicationService has run.
+    @Column(length = ContentHash.LENGTH)
+    private String contentHash;
+
     @Enumerated(EnumType.STRING)
     private Difficulty difficulty; // Teacher assigned difficulty
 
@@ -50,6 +58,9 @@ public class Question {
     private int usageCount = 0;
     private int correctCount = 0;
     
+    // Times the question was handed out in a generated exam (flushed by ItemExposureControl)
+    private int exposureCount = 0;
+    
     // For Discrimination Index (DI)
     // DI = (Correct by High Mastery) - (Correct by Low Mastery)
     private int usageByHighMastery = 0;
@@ -59,4 +70,17 @@ public class Question {
     private int correctByLowMastery = 0;
 
     private Double discriminationIndex = 0.0;
+
+    @PrePersist
+    void hashContentOnInsert() {
+        contentHash = ContentHash.of(content);
+    }
+
+    @PreUpdate
+    void hashContentOnUpdate() {
+        // Unhashed legacy rows are hashed by the dedup job, which merges their duplicates first
+        if (contentHash != null) {
+            contentHash = ContentHash.of(content);
+        }
+    }
 }
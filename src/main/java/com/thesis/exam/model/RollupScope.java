@@ -0,0 +1,7 @@
+package com.thesis.exam.model;
+
+public enum RollupScope {
+    SUBJECT,         // All exams of one subject
+    STUDENT_SUBJECT, // One student's exams in one subject
+    DAY              // All exams finished on one day
+}
@@ -0,0 +1,68 @@
+package com.thesis.exam.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Running score summary of a group of exams (see RollupScope), kept up to date by ScoreRollupService.
+ *
+ * Stores sums instead of averages so rows can be updated incrementally and merged:
+ * mean = scoreSum / examCount, variance = scoreSumSquares / examCount - mean^2.
+ * hist0..hist9 count scores in the ten buckets [0, 0.1), [0.1, 0.2), ... [0.9, 1.0].
+ */
+@Entity
+@Data
+public class ScoreRollup {
+    // "S:<subjectId>", "SS:<subjectId>:<studentId>" or "D:<yyyy-mm-dd>"
+    @Id
+    @Column(length = 64)
+    private String rollupKey;
+
+    @Enumerated(EnumType.STRING)
+    private RollupScope scope;
+
+    private Long subjectId;
+
+    private Long studentId;
+
+    private LocalDate day;
+
+    private long examCount;
+
+    private double scoreSum;
+
+    private double scoreSumSquares;
+
+    private double minScore;
+
+    private double maxScore;
+
+    private long hist0;
+    private long hist1;
+    private long hist2;
+    private long hist3;
+    private long hist4;
+    private long hist5;
+    private long hist6;
+    private long hist7;
+    private long hist8;
+    private long hist9;
+
+    public double getAverage() {
+        return examCount > 0 ? scoreSum / examCount : 0.0;
+    }
+
+    public double getStdDev() {
+        if (examCount == 0) {
+            return 0.0;
+        }
+        double mean = scoreSum / examCount;
+        return Math.sqrt(Math.max(0.0, scoreSumSquares / examCount - mean * mean));
+    }
+
+    public long[] getHistogram() {
+        return new long[]{hist0, hist1, hist2, hist3, hist4, hist5, hist6, hist7, hist8, hist9};
+    }
+}
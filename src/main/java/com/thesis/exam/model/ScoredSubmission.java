@@ -0,0 +1,34 @@
+package com.thesis.exam.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * One exam submission counted in the score rollups, as ScoreRollupService recorded it.
+ *
+ * The unique submission key makes each submission count once, and a rollup rebuild aggregates
+ * these rows, so it groups every submission by the same subject, student and day as the live update.
+ */
+@Entity
+@Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_scored_submission_key", columnNames = "submission_key"))
+public class ScoredSubmission {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // "A:<assignmentId>" for an assigned exam, "E:<examId>" for an exam submitted without an assignment
+    @Column(length = 32, nullable = false)
+    private String submissionKey;
+
+    private Long subjectId;
+
+    private Long studentId;
+
+    private LocalDate day;
+
+    // 0 to 1
+    private double score;
+}
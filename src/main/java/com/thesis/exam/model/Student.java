@@ -5,6 +5,10 @@ import lombok.Data;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_student_name_sort", columnList = "name_sort, id"),
+        @Index(name = "idx_student_email_sort", columnList = "email_sort, id"),
+        @Index(name = "idx_student_exam_count", columnList = "exam_count, id")})
 public class Student {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,4 +27,15 @@ public class Student {
     private Boolean emailVerified = false;
     private String verificationToken;
     private java.time.LocalDateTime tokenExpiryDate;
+
+    // Non-null name and email generated by the database, the indexed sort keys of the roster
+    @Column(insertable = false, updatable = false, columnDefinition = "VARCHAR(255) AS (COALESCE(name, '')) STORED")
+    private String nameSort;
+
+    @Column(insertable = false, updatable = false, columnDefinition = "VARCHAR(255) AS (COALESCE(email, '')) STORED")
+    private String emailSort;
+
+    // Exams generated for the student, maintained by StudentRosterService
+    @Column(insertable = false, updatable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long examCount;
 }
@@ -0,0 +1,33 @@
+package com.thesis.exam.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted recent-answer window of one student in one subject (written behind by StudentFeatureStore).
+ */
+@Entity
+@Data
+public class StudentFeature {
+    // "<studentId>:<subjectId>"
+    @Id
+    @Column(length = 64)
+    private String featureKey;
+
+    private Long studentId;
+
+    private Long subjectId;
+
+    // Correctness of the last answers, newest in bit 0
+    private long recentCorrectBits;
+
+    private int recentAnswers;
+
+    // Last response times in seconds, oldest first, comma separated
+    @Column(length = 200)
+    private String recentResponseTimes;
+
+    private LocalDateTime updatedAt;
+}
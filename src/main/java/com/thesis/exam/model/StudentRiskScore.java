@@ -0,0 +1,46 @@
+package com.thesis.exam.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Latest at-risk score and analytics of one student, written by the nightly StudentRiskScoringService run.
+ */
+@Entity
+@Data
+@Table(indexes = @Index(columnList = "risk_score"))
+public class StudentRiskScore {
+    @Id
+    private Long studentId;
+
+    // Average mastery level over the student's subjects
+    private double masteryLevel;
+
+    private double averageScore;
+
+    private int examCount;
+
+    // Share of assignments completed (1.0 without assignments)
+    private double attendance;
+
+    // Assignments still not started a week after they were assigned
+    private int missedDeadlines;
+
+    // "improving", "declining" or "stable"
+    @Column(length = 16)
+    private String trend;
+
+    private double consistency;
+
+    private double predictedNextScore;
+
+    // Pass probability from the trained random forest, or null if no forest was trained
+    private Double predictedPass;
+
+    // 0-1, higher = more at risk
+    private double riskScore;
+
+    private LocalDateTime scoredAt;
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 @Entity
 @Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_subject_name", columnNames = "name"))
 public class Subject {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface QuestionRepository extends JpaRepository<Question, Long> {
@@ -20,4 +21,13 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
     // Helper to get random questions (naive implementation for prototype)
     @Query(value = "SELECT * FROM question q WHERE q.subject_id = :subjectId AND q.difficulty = :difficulty ORDER BY RAND() LIMIT :limit", nativeQuery = true)
     List<Question> findRandomQuestions(@Param("subjectId") Long subjectId, @Param("difficulty") String difficulty, @Param("limit") int limit);
+
+    // Lightweight rows (id, difficulty, bloomLevel, irtDifficulty, irtDiscrimination, irtGuessing)
+    // used to build the in-memory question pool index
+    @Query("SELECT q.id, q.difficulty, q.bloomLevel, q.irtDifficulty, q.irtDiscrimination, q.irtGuessing FROM Question q WHERE q.subject.id = :subjectId")
+    List<Object[]> findPoolEntriesBySubjectId(@Param("subjectId") Long subjectId);
+
+    // Answer key rows (id, questionType, correctAnswer, optionA..optionD) used by the grading cache
+    @Query("SELECT q.id, q.questionType, q.correctAnswer, q.optionA, q.optionB, q.optionC, q.optionD FROM Question q WHERE q.id IN :ids")
+    List<Object[]> findAnswerKeysByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,16 @@
+package com.thesis.exam.repository;
+
+import com.thesis.exam.model.RollupScope;
+import com.thesis.exam.model.ScoreRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ScoreRollupRepository extends JpaRepository<ScoreRollup, String> {
+    List<ScoreRollup> findByScope(RollupScope scope);
+
+    List<ScoreRollup> findByScopeAndStudentId(RollupScope scope, Long studentId);
+
+    List<ScoreRollup> findByScopeAndDayGreaterThanEqualOrderByDayDesc(RollupScope scope, LocalDate day);
+}
@@ -2,8 +2,14 @@ package com.thesis.exam.repository;
 
 import com.thesis.exam.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface StudentRepository extends JpaRepository<Student, Long> {
     Optional<Student> findByEmail(String email);
+
+    @Query("SELECT s.id FROM Student s ORDER BY s.id")
+    List<Long> findAllIds();
 }
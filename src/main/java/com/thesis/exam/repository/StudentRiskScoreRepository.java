@@ -0,0 +1,12 @@
+package com.thesis.exam.repository;
+
+import com.thesis.exam.model.StudentRiskScore;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface StudentRiskScoreRepository extends JpaRepository<StudentRiskScore, Long> {
+    List<StudentRiskScore> findTop50ByRiskScoreGreaterThanEqualOrderByRiskScoreDesc(double minRiskScore);
+
+    long countByRiskScoreGreaterThanEqual(double minRiskScore);
+}
@@ -4,6 +4,8 @@ import com.thesis.exam.model.Student;
 import com.thesis.exam.model.Subject;
 import com.thesis.exam.model.StudentSubjectMastery;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -11,4 +13,8 @@ import java.util.Optional;
 public interface StudentSubjectMasteryRepository extends JpaRepository<StudentSubjectMastery, Long> {
     Optional<StudentSubjectMastery> findByStudentAndSubject(Student student, Subject subject);
     List<StudentSubjectMastery> findByStudent(Student student);
+
+    // (studentId, masteryLevel) for every student in a subject, used by batch exam generation
+    @Query("SELECT m.student.id, m.masteryLevel FROM StudentSubjectMastery m WHERE m.subject.id = :subjectId")
+    List<Object[]> findMasteryLevelsBySubjectId(@Param("subjectId") Long subjectId);
 }
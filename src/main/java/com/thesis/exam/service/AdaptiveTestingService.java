@@ -0,0 +1,142 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.AdaptiveTestSession;
+import com.thesis.exam.algorithms.IRTBloomTaxonomyAlgorithm;
+import com.thesis.exam.algorithms.ItemParameterBank;
+import com.thesis.exam.model.*;
+import com.thesis.exam.repository.ExamAssignmentRepository;
+import com.thesis.exam.repository.ExamRepository;
+import com.thesis.exam.repository.QuestionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computerized Adaptive Testing (CAT) mode.
+ *
+ * Sessions pick items by maximum information from the subject's in-memory item bank
+ * and stop once the ability estimate is precise enough. When a session finishes it is
+ * stored as a regular Exam so mastery and question statistics are updated as usual.
+ */
+@Service
+public class AdaptiveTestingService {
+
+    // Stopping rule
+    public static final int MIN_ITEMS = 5;
+    public static final int MAX_ITEMS = 30;
+    public static final double TARGET_STANDARD_ERROR = 0.3;
+
+    // Randomesque exposure control: choose among the 5 most informative items
+    public static final int RANDOMESQUE_SIZE = 5;
+
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    @Autowired
+    private IRTBloomTaxonomyAlgorithm irtAlgorithm;
+
+    @Autowired
+    private ItemExposureControl exposureControl;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private ExamRepository examRepository;
+
+    @Autowired
+    private ExamAssignmentRepository examAssignmentRepository;
+
+    @Autowired
+    private ExamGenerationService examGenerationService;
+
+    @Autowired
+    private ExamGradingService examGradingService;
+
+    @Autowired
+    private StudentRosterService studentRosterService;
+
+    /**
+     * Start a new CAT session over the subject's question bank.
+     */
+    public AdaptiveTestSession startSession(Long subjectId) {
+        ItemParameterBank bank = questionPoolIndex.itemBank(subjectId);
+        return new AdaptiveTestSession(irtAlgorithm, bank, MIN_ITEMS, MAX_ITEMS, TARGET_STANDARD_ERROR, RANDOMESQUE_SIZE);
+    }
+
+    /**
+     * The question the student should answer next, or null if the session is finished.
+     */
+    public Question nextQuestion(AdaptiveTestSession session) {
+        while (session.nextItem() >= 0) {
+            Question question = questionRepository.findById(session.pendingQuestionId()).orElse(null);
+            if (question != null) {
+                return question;
+            }
+            // Question was deleted since the bank snapshot was taken; skip it without scoring it
+            session.skipPending();
+        }
+        return null;
+    }
+
+    /**
+     * Check the student's answer to the pending question and update the ability estimate.
+     *
+     * @param responseTimeMillis Time the student took to answer, or -1 if unknown
+     * @return true if the answer was correct
+     */
+    public boolean submitAnswer(AdaptiveTestSession session, Question question, String answer, int responseTimeMillis) {
+        if (question.getId() != session.pendingQuestionId()) {
+            throw new IllegalStateException("Question " + question.getId() + " is not awaiting an answer");
+        }
+        boolean isCorrect = examGradingService.isCorrect(question.getId(), answer);
+        session.recordResponse(session.nextItem(), isCorrect, answer, responseTimeMillis);
+        return isCorrect;
+    }
+
+    /**
+     * Persist a finished session as a completed Exam and feed it through the usual result processing.
+     * The score is the final ability estimate mapped from -3..+3 onto 0..1.
+     */
+    public Exam completeSession(AdaptiveTestSession session, Student student, Subject subject) {
+        List<Long> administeredIds = session.getAdministeredQuestionIds();
+        exposureControl.recordExposures(subject.getId(), administeredIds);
+        Map<Long, Question> byId = new HashMap<>();
+        for (Question question : questionRepository.findAllById(administeredIds)) {
+            byId.put(question.getId(), question);
+        }
+        List<Question> questions = new ArrayList<>();
+        for (Long id : administeredIds) {
+            Question question = byId.get(id);
+            if (question != null) {
+                questions.add(question);
+            }
+        }
+
+        Exam exam = new Exam();
+        exam.setStudent(student);
+        exam.setSubject(subject);
+        exam.setQuestions(questions);
+        exam = examRepository.save(exam);
+        studentRosterService.recordExam(student.getId());
+
+        double score = Math.max(0.0, Math.min(1.0, (session.getTheta() + 3) / 6));
+        ExamAssignment assignment = new ExamAssignment();
+        assignment.setExam(exam);
+        assignment.setStudent(student);
+        assignment.setStatus(ExamStatus.COMPLETED);
+        assignment.setScore(score * 100);
+        assignment.setCompletedAt(LocalDateTime.now());
+        assignment = examAssignmentRepository.save(assignment);
+
+        examGenerationService.processExamResult(exam, assignment, session.getCorrectQuestionIds(), score,
+                session.getAnswers(), session.getResponseTimes());
+
+        return exam;
+    }
+}
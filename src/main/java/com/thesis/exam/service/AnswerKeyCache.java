@@ -0,0 +1,167 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.model.QuestionType;
+import com.thesis.exam.repository.QuestionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory answer keys by question ID, so grading a submission needs no per-question query.
+ *
+ * Keys are loaded on demand, all misses of one lookup in a single query, and hold
+ * the answer already normalized for comparison. QuestionService invalidates a key
+ * when its question is saved.
+ */
+@Service
+public class AnswerKeyCache {
+
+    // Reference answers longer than this are graded as essays when the question has no type
+    private static final int ESSAY_MIN_WORDS = 8;
+
+    private static final String[] OPTION_LETTERS = {"a", "b", "c", "d"};
+
+    // Essay keywords are the reference answer's words of at least this length, minus stop words
+    private static final int KEYWORD_MIN_LENGTH = 4;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "that", "this", "with", "from", "have", "there", "their", "which", "when", "where",
+            "what", "they", "them", "then", "than", "into", "also", "because", "some", "such");
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    private final Map<Long, AnswerKey> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Answer key of one question.
+     *
+     * @param type Question type (inferred when the question has none)
+     * @param reference The stored correct answer as written by the teacher
+     * @param accepted Normalized answers that count as an exact match
+     * @param keywords Keywords the essay grader looks for (essays only, otherwise empty)
+     */
+    public record AnswerKey(long questionId, QuestionType type, String reference, Set<String> accepted,
+                            List<String> keywords) {}
+
+    /**
+     * Answer keys for the given questions. Unknown question IDs are left out of the result.
+     */
+    public Map<Long, AnswerKey> getKeys(Collection<Long> questionIds) {
+        Map<Long, AnswerKey> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : questionIds) {
+            AnswerKey key = keys.get(id);
+            if (key != null) {
+                result.put(id, key);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Object[] row : questionRepository.findAnswerKeysByIdIn(missing)) {
+                AnswerKey key = build(row);
+                keys.put(key.questionId(), key);
+                result.put(key.questionId(), key);
+            }
+        }
+        return result;
+    }
+
+    public AnswerKey getKey(Long questionId) {
+        return getKeys(List.of(questionId)).get(questionId);
+    }
+
+    public void invalidate(Long questionId) {
+        keys.remove(questionId);
+    }
+
+    /**
+     * Lowercase, trim, collapse whitespace and drop a trailing period.
+     */
+    public static String normalize(String answer) {
+        if (answer == null) {
+            return "";
+        }
+        String normalized = answer.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1).trim();
+        }
+        return normalized;
+    }
+
+    /**
+     * Map the usual spellings of true/false onto "true" and "false".
+     */
+    public static String normalizeBoolean(String normalized) {
+        return switch (normalized) {
+            case "t", "true", "yes", "y", "1" -> "true";
+            case "f", "false", "no", "n", "0" -> "false";
+            default -> normalized;
+        };
+    }
+
+    private AnswerKey build(Object[] row) {
+        long id = ((Number) row[0]).longValue();
+        QuestionType type = (QuestionType) row[1];
+        String reference = (String) row[2];
+        String[] options = {(String) row[3], (String) row[4], (String) row[5], (String) row[6]};
+
+        if (type == null) {
+            type = inferType(reference, options[0] != null);
+        }
+
+        Set<String> accepted = new HashSet<>();
+        String normalized = normalize(reference);
+        accepted.add(type == QuestionType.TRUE_FALSE ? normalizeBoolean(normalized) : normalized);
+
+        // Multiple choice keys may be stored as the option text or as its letter; accept both
+        if (type == QuestionType.MULTIPLE_CHOICE) {
+            for (int i = 0; i < options.length; i++) {
+                if (options[i] == null) {
+                    continue;
+                }
+                String option = normalize(options[i]);
+                if (normalized.equals(OPTION_LETTERS[i])) {
+                    accepted.add(option);
+                } else if (normalized.equals(option)) {
+                    accepted.add(OPTION_LETTERS[i]);
+                }
+            }
+        }
+        List<String> keywords = type == QuestionType.ESSAY ? extractKeywords(normalized) : List.of();
+        return new AnswerKey(id, type, reference, Set.copyOf(accepted), keywords);
+    }
+
+    private static List<String> extractKeywords(String normalizedReference) {
+        Set<String> keywords = new LinkedHashSet<>();
+        for (String word : normalizedReference.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() >= KEYWORD_MIN_LENGTH && !STOP_WORDS.contains(word)) {
+                keywords.add(word);
+            }
+        }
+        return List.copyOf(keywords);
+    }
+
+    /**
+     * Many questions are stored without a type: options mean multiple choice,
+     * a long reference answer means essay, anything else is a short answer.
+     */
+    private static QuestionType inferType(String reference, boolean hasOptions) {
+        if (hasOptions) {
+            return QuestionType.MULTIPLE_CHOICE;
+        }
+        String trimmed = reference != null ? reference.trim() : "";
+        int words = trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
+        return words >= ESSAY_MIN_WORDS ? QuestionType.ESSAY : QuestionType.SHORT_ANSWER;
+    }
+}
@@ -0,0 +1,116 @@
+package com.thesis.exam.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * A long-running job of which at most one run is in progress, e.g. a nightly recomputation.
+ *
+ * start() hands a run to the job's own thread and returns at once, so scheduler and request
+ * threads are never held by the work; run() executes on the caller's thread (for callers that
+ * are already in the background, such as startup listeners). Either way a second run while one
+ * is in progress is refused. The status of the running or most recent run can be polled.
+ *
+ * @param <R> The report a successful run returns
+ */
+public class BackgroundJob<R> {
+
+    private final String name;
+    private final Supplier<R> task;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner;
+
+    private volatile R lastReport;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile String lastError;
+
+    /**
+     * State of the running or most recent run.
+     *
+     * @param elapsedMillis Time since the run started, or the duration of the finished run
+     * @param lastReport Report of the last successful run, or null
+     * @param error Failure message of the most recent run, or null
+     */
+    public record JobStatus<R>(boolean running, long elapsedMillis, R lastReport, String error) {}
+
+    public BackgroundJob(String name, Supplier<R> task) {
+        this.name = name;
+        this.task = task;
+        this.runner = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a run in the background.
+     *
+     * @return The status of the started run, or null if a run is already in progress
+     */
+    public JobStatus<R> start() {
+        if (!begin()) {
+            return null;
+        }
+        runner.execute(() -> {
+            try {
+                execute();
+            } catch (RuntimeException e) {
+                System.err.println(name + " failed: " + lastError);
+            }
+        });
+        return getStatus();
+    }
+
+    /**
+     * Run on the calling thread.
+     *
+     * @return The run's report, or null if a run is already in progress
+     */
+    public R run() {
+        return begin() ? execute() : null;
+    }
+
+    public JobStatus<R> getStatus() {
+        boolean isRunning = running.get();
+        long started = startedNanos;
+        long end = isRunning || finishedNanos == 0 ? System.nanoTime() : finishedNanos;
+        long elapsedMillis = started == 0 ? 0 : (end - started) / 1_000_000;
+        return new JobStatus<>(isRunning, elapsedMillis, lastReport, lastError);
+    }
+
+    public R getLastReport() {
+        return lastReport;
+    }
+
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private boolean begin() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        startedNanos = System.nanoTime();
+        finishedNanos = 0;
+        lastError = null;
+        return true;
+    }
+
+    private R execute() {
+        try {
+            R report = task.get();
+            lastReport = report;
+            return report;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            finishedNanos = System.nanoTime();
+            running.set(false);
+        }
+    }
+}
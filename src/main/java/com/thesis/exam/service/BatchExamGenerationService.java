@@ -0,0 +1,227 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.FisherYatesShuffleAlgorithm;
+import com.thesis.exam.repository.StudentSubjectMasteryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Generates exams for a whole cohort in one request.
+ *
+ * The subject's question pool and every student's mastery level are loaded once,
+ * question selection runs in parallel on a bounded executor, and the Exam rows
+ * plus their exam_questions join rows are written with JDBC batch statements,
+ * one transaction per batch of students.
+ */
+@Service
+public class BatchExamGenerationService {
+
+    // Students per persisted batch (one transaction and one throughput sample each)
+    private static final int BATCH_SIZE = 250;
+
+    private static final String INSERT_EXAM_SQL =
+            "INSERT INTO exam (student_id, subject_id, created_at) VALUES (?, ?, ?)";
+    private static final String INSERT_EXAM_QUESTION_SQL =
+            "INSERT INTO exam_questions (exam_id, questions_id) VALUES (?, ?)";
+
+    @Autowired
+    private ExamGenerationService examGenerationService;
+
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    @Autowired
+    private StudentSubjectMasteryRepository masteryRepository;
+
+    @Autowired
+    private ItemExposureControl exposureControl;
+
+    @Autowired
+    private FisherYatesShuffleAlgorithm fisherYatesShuffleAlgorithm;
+
+    @Autowired
+    private StudentRosterService studentRosterService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("examGenerationExecutor")
+    private ExecutorService executor;
+
+    /**
+     * Throughput of one persisted batch.
+     */
+    public record BatchStats(int batchNumber, int exams, int questionLinks,
+                             long elapsedMillis, double examsPerSecond) {}
+
+    /**
+     * Summary of a cohort generation run.
+     */
+    public record BatchGenerationReport(Long subjectId, int totalExams, long elapsedMillis,
+                                        double examsPerSecond, List<BatchStats> batches) {}
+
+    private record ExamPlan(Long studentId, List<Long> questionIds) {}
+
+    /**
+     * Generate one exam per student for the given subject.
+     *
+     * @param subjectId Subject to generate for
+     * @param studentIds Students in the cohort
+     * @param totalQuestions Questions per exam
+     * @param isFixedExam If true, every student gets the same question set (in their own order)
+     * @return Per-batch throughput report
+     */
+    public BatchGenerationReport generateForCohort(Long subjectId, List<Long> studentIds,
+                                                   int totalQuestions, boolean isFixedExam) {
+        long start = System.nanoTime();
+
+        // 1. Load the question pool and all mastery rows for the subject in one pass
+        questionPoolIndex.size(subjectId);
+        Map<Long, Double> masteryByStudent = new HashMap<>();
+        for (Object[] row : masteryRepository.findMasteryLevelsBySubjectId(subjectId)) {
+            if (row[1] != null) {
+                masteryByStudent.put((Long) row[0], (Double) row[1]);
+            }
+        }
+
+        List<Long> fixedQuestionIds = isFixedExam
+                ? questionPoolIndex.sampleAny(subjectId, totalQuestions, Set.of())
+                : null;
+
+        // 2. Plan and persist batch by batch
+        List<BatchStats> batches = new ArrayList<>();
+        int totalExams = 0;
+        for (int from = 0; from < studentIds.size(); from += BATCH_SIZE) {
+            long batchStart = System.nanoTime();
+            List<Long> batchStudents = studentIds.subList(from, Math.min(from + BATCH_SIZE, studentIds.size()));
+
+            List<ExamPlan> plans = planExams(subjectId, batchStudents, masteryByStudent, totalQuestions, fixedQuestionIds);
+            int links = persist(subjectId, plans);
+
+            long elapsedMillis = (System.nanoTime() - batchStart) / 1_000_000;
+            BatchStats stats = new BatchStats(batches.size() + 1, plans.size(), links,
+                    elapsedMillis, perSecond(plans.size(), elapsedMillis));
+            batches.add(stats);
+            totalExams += plans.size();
+
+            System.out.println("Batch exam generation: batch " + stats.batchNumber() + " - " + stats.exams()
+                    + " exams in " + elapsedMillis + " ms (" + String.format("%.1f", stats.examsPerSecond()) + " exams/sec)");
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new BatchGenerationReport(subjectId, totalExams, elapsedMillis,
+                perSecond(totalExams, elapsedMillis), batches);
+    }
+
+    /**
+     * Select question IDs for each student in parallel. Selection is pure in-memory work.
+     */
+    private List<ExamPlan> planExams(Long subjectId, List<Long> studentIds, Map<Long, Double> masteryByStudent,
+                                     int totalQuestions, List<Long> fixedQuestionIds) {
+        List<Callable<ExamPlan>> tasks = new ArrayList<>(studentIds.size());
+        for (Long studentId : studentIds) {
+            tasks.add(() -> {
+                List<Long> questionIds;
+                if (fixedQuestionIds != null) {
+                    questionIds = fixedQuestionIds;
+                    exposureControl.recordExposures(subjectId, questionIds);
+                } else {
+                    questionIds = examGenerationService.selectAdaptiveQuestionIds(subjectId, studentId,
+                            masteryByStudent.getOrDefault(studentId, 0.0), totalQuestions);
+                }
+                return new ExamPlan(studentId, fisherYatesShuffleAlgorithm.shuffle(questionIds));
+            });
+        }
+
+        List<ExamPlan> plans = new ArrayList<>(tasks.size());
+        try {
+            for (Future<ExamPlan> future : executor.invokeAll(tasks)) {
+                plans.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch exam generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch exam generation failed", e.getCause());
+        }
+        return plans;
+    }
+
+    /**
+     * Insert Exam rows and their join rows with JDBC batching in a single transaction, which also
+     * counts the exams in the students' exam_count.
+     *
+     * @return Number of exam_questions rows written
+     */
+    private int persist(Long subjectId, List<ExamPlan> plans) {
+        Integer links = transactionTemplate.execute(status -> {
+            List<Long> examIds = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(INSERT_EXAM_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    for (ExamPlan plan : plans) {
+                        ps.setLong(1, plan.studentId());
+                        ps.setLong(2, subjectId);
+                        ps.setTimestamp(3, now);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    List<Long> ids = new ArrayList<>(plans.size());
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            ids.add(keys.getLong(1));
+                        }
+                    }
+                    return ids;
+                }
+            });
+
+            List<long[]> examQuestions = new ArrayList<>();
+            for (int i = 0; i < plans.size(); i++) {
+                long examId = examIds.get(i);
+                for (Long questionId : plans.get(i).questionIds()) {
+                    examQuestions.add(new long[]{examId, questionId});
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_EXAM_QUESTION_SQL, examQuestions, 1000, (ps, link) -> {
+                ps.setLong(1, link[0]);
+                ps.setLong(2, link[1]);
+            });
+
+            List<Long> studentIds = new ArrayList<>(plans.size());
+            for (ExamPlan plan : plans) {
+                studentIds.add(plan.studentId());
+            }
+            studentRosterService.recordExams(studentIds);
+            return examQuestions.size();
+        });
+        return links != null ? links : 0;
+    }
+
+    private static double perSecond(int count, long elapsedMillis) {
+        return elapsedMillis > 0 ? count * 1000.0 / elapsedMillis : count;
+    }
+}
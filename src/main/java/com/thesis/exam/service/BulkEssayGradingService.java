@@ -0,0 +1,310 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.EssayReferenceProfile;
+import com.thesis.exam.algorithms.VotingBasedEssayGradingAlgorithm;
+import com.thesis.exam.model.QuestionType;
+import com.thesis.exam.repository.ExamRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Grades every essay answer of an exam in the background, e.g. after a large cohort has submitted.
+ *
+ * The exam's essay answers are streamed from the ResponseEventLog and handled in chunks: each
+ * chunk is graded in parallel on a bounded fork/join pool (one worker per core) and its scores
+ * and feedback are written to essay_grade with one JDBC batch. A first pass over the log counts
+ * each student's answers per question, so only the last one (a resubmission's) is graded. Answers
+ * that already have a grade are skipped, so a job can be re-run after new submissions. At the end
+ * the COMPLETED assignments of the students whose submission the job read move to GRADED; ones
+ * completed after the job started wait for the next run. One job runs at a time; its progress can
+ * be polled while it runs.
+ */
+@Service
+public class BulkEssayGradingService {
+
+    // Essays per graded and persisted chunk
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String SELECT_QUESTIONS_SQL =
+            "SELECT questions_id FROM exam_questions WHERE exam_id = ?";
+
+    private static final String SELECT_GRADED_SQL =
+            "SELECT student_id, question_id FROM essay_grade WHERE exam_id = ?";
+
+    private static final String UPSERT_GRADE_SQL =
+            "INSERT INTO essay_grade (exam_id, student_id, question_id, score, feedback, graded_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE score = VALUES(score), feedback = VALUES(feedback), graded_at = VALUES(graded_at)";
+
+    private static final String MARK_GRADED_SQL = "UPDATE exam_assignment SET status = 'GRADED' "
+            + "WHERE exam_id = ? AND status = 'COMPLETED' AND completed_at <= ? AND student_id IN (%s)";
+
+    @Autowired
+    private ExamRepository examRepository;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private EssayProfileCache essayProfileCache;
+
+    @Autowired
+    private VotingBasedEssayGradingAlgorithm essayGradingAlgorithm;
+
+    @Autowired
+    private ResponseEventLog responseEventLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Runs the job coordinator; grading itself happens on a per-job fork/join pool
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor();
+
+    private final AtomicReference<Job> currentJob = new AtomicReference<>();
+
+    private final Map<Long, Job> lastJobByExam = new ConcurrentHashMap<>();
+
+    /**
+     * Snapshot of a job's progress.
+     *
+     * @param essaysRead Ungraded essay answers read from the log so far
+     * @param essaysGraded Essays graded and written so far
+     * @param assignmentsGraded Assignments moved to GRADED (set when the job finishes)
+     * @param essaysPerSecond Essays graded per second since the job started
+     * @param error Failure message, or null
+     */
+    public record BulkGradingProgress(Long examId, boolean running, int essaysRead, int essaysGraded,
+                                      int assignmentsGraded, long elapsedMillis, double essaysPerSecond,
+                                      String error) {}
+
+    private record EssayAnswer(long studentId, long questionId, String answer) {}
+
+    private record GradedEssay(long studentId, long questionId, double score, String feedback) {}
+
+    private record AnswerRef(long studentId, long questionId) {}
+
+    private static class Job {
+        final Long examId;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long startNanos = System.nanoTime();
+        final AtomicInteger essaysRead = new AtomicInteger();
+        final AtomicInteger essaysGraded = new AtomicInteger();
+        volatile int assignmentsGraded;
+        volatile long finishedNanos;
+        volatile String error;
+
+        Job(Long examId) {
+            this.examId = examId;
+        }
+
+        BulkGradingProgress snapshot() {
+            boolean running = finishedNanos == 0;
+            long elapsedMillis = ((running ? System.nanoTime() : finishedNanos) - startNanos) / 1_000_000;
+            int graded = essaysGraded.get();
+            double perSecond = elapsedMillis > 0 ? graded * 1000.0 / elapsedMillis : graded;
+            return new BulkGradingProgress(examId, running, essaysRead.get(), graded, assignmentsGraded,
+                    elapsedMillis, perSecond, error);
+        }
+    }
+
+    /**
+     * Start grading the essays of an exam in the background.
+     *
+     * @return The new job's progress, or null if a job is already running
+     */
+    public BulkGradingProgress start(Long examId) {
+        Job job = new Job(examId);
+        if (!currentJob.compareAndSet(null, job)) {
+            return null;
+        }
+        lastJobByExam.put(examId, job);
+        jobRunner.execute(() -> {
+            try {
+                run(job);
+            } catch (RuntimeException e) {
+                job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                System.err.println("Bulk essay grading of exam " + examId + " failed: " + job.error);
+            } finally {
+                job.finishedNanos = System.nanoTime();
+                currentJob.set(null);
+            }
+        });
+        return job.snapshot();
+    }
+
+    /**
+     * Progress of the running or most recent job for an exam, or null if none was started.
+     */
+    public BulkGradingProgress getProgress(Long examId) {
+        Job job = lastJobByExam.get(examId);
+        return job != null ? job.snapshot() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobRunner.shutdownNow();
+    }
+
+    private void run(Job job) {
+        if (!examRepository.existsById(job.examId)) {
+            throw new IllegalArgumentException("Exam " + job.examId + " not found");
+        }
+
+        // 1. The exam's essay questions, their prepared profiles, and the answers graded before
+        List<Long> questionIds = jdbcTemplate.queryForList(SELECT_QUESTIONS_SQL, Long.class, job.examId);
+        Map<Long, EssayReferenceProfile> profiles = new HashMap<>();
+        for (AnswerKeyCache.AnswerKey key : answerKeyCache.getKeys(questionIds).values()) {
+            if (key.type() == QuestionType.ESSAY && key.reference() != null && !key.reference().isBlank()) {
+                profiles.put(key.questionId(), essayProfileCache.getProfile(key));
+            }
+        }
+        Set<AnswerRef> graded = new HashSet<>();
+        jdbcTemplate.query(SELECT_GRADED_SQL, rs -> {
+            graded.add(new AnswerRef(rs.getLong("student_id"), rs.getLong("question_id")));
+        }, job.examId);
+
+        // 2. Students who submitted the exam, and the number of logged answers per essay, so the
+        //    grading pass can tell each student's last answer (events logged later are ignored)
+        Set<Long> students = new HashSet<>();
+        Map<AnswerRef, Integer> answerCounts = new HashMap<>();
+        try (ResponseEventLog.Cursor cursor = responseEventLog.openCursor()) {
+            while (cursor.next()) {
+                if (cursor.examId() != job.examId) {
+                    continue;
+                }
+                students.add(cursor.studentId());
+                AnswerRef ref = new AnswerRef(cursor.studentId(), cursor.questionId());
+                if (profiles.containsKey(ref.questionId()) && !graded.contains(ref)) {
+                    answerCounts.merge(ref, 1, Integer::sum);
+                }
+            }
+        }
+
+        // 3. Stream the exam's ungraded essay answers and grade each one's last answer chunk by chunk
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try (ResponseEventLog.Cursor cursor = responseEventLog.openCursor()) {
+            Map<AnswerRef, Integer> seen = new HashMap<>();
+            List<EssayAnswer> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (cursor.next()) {
+                if (cursor.examId() != job.examId) {
+                    continue;
+                }
+                AnswerRef ref = new AnswerRef(cursor.studentId(), cursor.questionId());
+                Integer count = answerCounts.get(ref);
+                if (count == null || seen.merge(ref, 1, Integer::sum).intValue() != count) {
+                    continue;
+                }
+                String answer = cursor.answer();
+                if (answer == null) {
+                    continue;
+                }
+                chunk.add(new EssayAnswer(cursor.studentId(), cursor.questionId(), answer));
+                job.essaysRead.incrementAndGet();
+                if (chunk.size() == CHUNK_SIZE) {
+                    gradeAndWrite(job, chunk, profiles, pool);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                gradeAndWrite(job, chunk, profiles, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 4. Every essay these students submitted now has a grade
+        job.assignmentsGraded = markGraded(job, new ArrayList<>(students));
+
+        BulkGradingProgress progress = job.snapshot();
+        System.out.println("Bulk essay grading of exam " + job.examId + ": " + progress.essaysGraded()
+                + " essays in " + progress.elapsedMillis() + " ms (" + String.format("%.1f", progress.essaysPerSecond())
+                + " essays/sec), " + job.assignmentsGraded + " assignments graded");
+    }
+
+    /**
+     * Move the students' COMPLETED assignments of the exam to GRADED, unless they were completed
+     * after the job started (their answers may not have been read).
+     *
+     * @return Assignments moved to GRADED
+     */
+    private int markGraded(Job job, List<Long> studentIds) {
+        Timestamp startedAt = Timestamp.valueOf(job.startedAt);
+        int marked = 0;
+        for (int from = 0; from < studentIds.size(); from += CHUNK_SIZE) {
+            List<Long> batch = studentIds.subList(from, Math.min(studentIds.size(), from + CHUNK_SIZE));
+            StringBuilder placeholders = new StringBuilder();
+            List<Object> args = new ArrayList<>(batch.size() + 2);
+            args.add(job.examId);
+            args.add(startedAt);
+            for (int i = 0; i < batch.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ", ?");
+                args.add(batch.get(i));
+            }
+            marked += jdbcTemplate.update(String.format(MARK_GRADED_SQL, placeholders), args.toArray());
+        }
+        return marked;
+    }
+
+    private void gradeAndWrite(Job job, List<EssayAnswer> chunk, Map<Long, EssayReferenceProfile> profiles,
+                               ForkJoinPool pool) {
+        List<Callable<GradedEssay>> tasks = new ArrayList<>(chunk.size());
+        for (EssayAnswer essay : chunk) {
+            tasks.add(() -> {
+                Map<String, Object> feedback = essayGradingAlgorithm.generateFeedback(
+                        essay.answer(), profiles.get(essay.questionId()));
+                @SuppressWarnings("unchecked")
+                List<String> suggestions = (List<String>) feedback.get("suggestions");
+                return new GradedEssay(essay.studentId(), essay.questionId(),
+                        (Double) feedback.get("overallScore"), String.join("; ", suggestions));
+            });
+        }
+
+        List<GradedEssay> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<GradedEssay> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk essay grading was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bulk essay grading failed", e.getCause());
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(UPSERT_GRADE_SQL, results, CHUNK_SIZE, (ps, essay) -> {
+                    ps.setLong(1, job.examId);
+                    ps.setLong(2, essay.studentId());
+                    ps.setLong(3, essay.questionId());
+                    ps.setDouble(4, essay.score());
+                    ps.setString(5, essay.feedback());
+                    ps.setTimestamp(6, now);
+                }));
+        job.essaysGraded.addAndGet(results.size());
+    }
+}
@@ -0,0 +1,262 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.DifficultyModel;
+import com.thesis.exam.algorithms.LinearRegressionDifficultyAlgorithm;
+import com.thesis.exam.algorithms.LinearRegressionDifficultyAlgorithm.NormalEquations;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Background retraining of the difficulty regression (LinearRegressionDifficultyAlgorithm).
+ *
+ * The response history is replayed from the ResponseEventLog. Each response becomes one sample
+ * whose features are the student's state in that subject just before answering: share of correct
+ * answers so far (mastery), and average response time and accuracy over its ResponseWindow, the
+ * same features StudentFeatureStore serves to exam generation.
+ * The target is the question's difficulty, moved up by TARGET_OFFSET after a correct answer and down
+ * after a wrong one, so the fit tracks the hardest level a student can handle.
+ *
+ * Samples are accumulated into normal-equation sums in parallel chunks and solved in closed form.
+ * One student in HOLDOUT_MODULUS is held out; the new model replaces the current one only if its
+ * R-squared on the holdout is higher. Predictions never wait: the swap is one atomic publish.
+ * Nightly and on-demand runs (start) execute on the job's own thread.
+ */
+@Service
+public class DifficultyModelTrainingService {
+
+    private static final int CHUNK_SIZE = 10_000;
+
+    private static final int HOLDOUT_MODULUS = 10;
+
+    // Holdout answers needed before a new model may replace the current one
+    private static final int MIN_HOLDOUT_SAMPLES = 200;
+
+    private static final double TARGET_OFFSET = 0.15;
+
+    private static final String SELECT_DIFFICULTIES_SQL = "SELECT id, difficulty FROM question WHERE difficulty IS NOT NULL";
+
+    @Autowired
+    private LinearRegressionDifficultyAlgorithm regressionAlgorithm;
+
+    @Autowired
+    private ResponseEventLog responseEventLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final BackgroundJob<TrainingReport> job = new BackgroundJob<>("Difficulty model retraining", this::runTraining);
+
+    /**
+     * Metrics of one training run.
+     *
+     * @param candidate Coefficients fitted on the training students
+     * @param swapped Whether the candidate replaced the current model
+     */
+    public record TrainingReport(long samples, long holdoutSamples, DifficultyModel candidate,
+                                 double candidateRSquared, double currentRSquared, boolean swapped,
+                                 long elapsedMillis) {}
+
+    private record PersonKey(long subjectId, long studentId) {}
+
+    /**
+     * One student's answers so far in one subject.
+     */
+    private static final class LearnerState {
+        long answers;
+        long correct;
+        final ResponseWindow recent = new ResponseWindow();
+
+        void record(boolean wasCorrect, int responseTimeMillis) {
+            answers++;
+            if (wasCorrect) {
+                correct++;
+            }
+            recent.record(wasCorrect, responseTimeMillis);
+        }
+    }
+
+    /**
+     * Samples read from the log, laid out as parallel primitive arrays.
+     */
+    private static final class Chunk {
+        final double[] mastery = new double[CHUNK_SIZE];
+        final double[] responseTime = new double[CHUNK_SIZE];
+        final double[] accuracy = new double[CHUNK_SIZE];
+        final double[] target = new double[CHUNK_SIZE];
+        final boolean[] holdout = new boolean[CHUNK_SIZE];
+        int size;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void trainOnStartup() {
+        retrain();
+    }
+
+    @Scheduled(cron = "0 0 3 * * *")
+    public void nightlyRetraining() {
+        start();
+    }
+
+    /**
+     * Fit a new model on the response history and publish it if it beats the current one.
+     * Runs on the calling thread.
+     *
+     * @return The run's metrics, or null if a run is already in progress
+     */
+    public TrainingReport retrain() {
+        return job.run();
+    }
+
+    /**
+     * Start a retraining run in the background.
+     *
+     * @return The status of the started run, or null if a run is already in progress
+     */
+    public BackgroundJob.JobStatus<TrainingReport> start() {
+        return job.start();
+    }
+
+    public BackgroundJob.JobStatus<TrainingReport> getStatus() {
+        return job.getStatus();
+    }
+
+    public TrainingReport getLastReport() {
+        return job.getLastReport();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+
+    private TrainingReport runTraining() {
+        long start = System.nanoTime();
+        Map<Long, Double> difficulties = new HashMap<>();
+        jdbcTemplate.query(SELECT_DIFFICULTIES_SQL, rs -> {
+            difficulties.put(rs.getLong("id"), difficultyValue(rs.getString("difficulty")));
+        });
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        Deque<Future<NormalEquations[]>> pending = new ArrayDeque<>();
+        NormalEquations training = new NormalEquations();
+        NormalEquations holdout = new NormalEquations();
+        Map<PersonKey, LearnerState> learners = new HashMap<>();
+
+        try (ResponseEventLog.Cursor cursor = responseEventLog.openCursor()) {
+            Chunk chunk = new Chunk();
+            while (cursor.next()) {
+                Double difficulty = difficulties.get(cursor.questionId());
+                LearnerState learner = learners.computeIfAbsent(
+                        new PersonKey(cursor.subjectId(), cursor.studentId()), key -> new LearnerState());
+                boolean correct = cursor.correct();
+                if (difficulty != null && learner.answers > 0) {
+                    // Features describe the learner before this answer
+                    int i = chunk.size++;
+                    chunk.mastery[i] = (double) learner.correct / learner.answers;
+                    double responseTime = learner.recent.averageResponseTime();
+                    chunk.responseTime[i] = Double.isNaN(responseTime) ? StudentFeatureStore.DEFAULT_RESPONSE_TIME : responseTime;
+                    chunk.accuracy[i] = learner.recent.recentAccuracy();
+                    chunk.target[i] = Math.max(0.0, Math.min(1.0,
+                            difficulty + (correct ? TARGET_OFFSET : -TARGET_OFFSET)));
+                    chunk.holdout[i] = Math.floorMod(Long.hashCode(cursor.studentId() * 0x9E3779B97F4A7C15L),
+                            HOLDOUT_MODULUS) == 0;
+                    if (chunk.size == CHUNK_SIZE) {
+                        submit(chunk, pool, pending, cores, training, holdout);
+                        chunk = new Chunk();
+                    }
+                }
+                learner.record(correct, cursor.responseTimeMillis());
+            }
+            if (chunk.size > 0) {
+                submit(chunk, pool, pending, 0, training, holdout);
+            }
+            while (!pending.isEmpty()) {
+                merge(pending.poll(), training, holdout);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        DifficultyModel current = regressionAlgorithm.getModel();
+        long elapsedMillis;
+        if (training.count() < 4 || holdout.count() < MIN_HOLDOUT_SAMPLES) {
+            elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Difficulty model retraining: not enough history (" + training.count()
+                    + " training, " + holdout.count() + " holdout samples), keeping the current model");
+            return new TrainingReport(training.count(), holdout.count(), null, Double.NaN, Double.NaN, false, elapsedMillis);
+        }
+
+        DifficultyModel candidate = training.solve();
+        double candidateRSquared = regressionAlgorithm.calculateRSquared(candidate, holdout);
+        double currentRSquared = regressionAlgorithm.calculateRSquared(current, holdout);
+        // A model published concurrently (e.g. by trainModel) is kept
+        boolean swapped = candidateRSquared > currentRSquared && regressionAlgorithm.publishModel(current, candidate);
+        elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("Difficulty model retraining: " + training.count() + " samples, holdout R2 "
+                + String.format("%.4f", candidateRSquared) + " vs current " + String.format("%.4f", currentRSquared)
+                + (swapped ? ", new model published " + candidate : ", current model kept")
+                + " (" + elapsedMillis + " ms)");
+        return new TrainingReport(training.count(), holdout.count(), candidate, candidateRSquared,
+                currentRSquared, swapped, elapsedMillis);
+    }
+
+    /**
+     * Accumulate a chunk on the pool. At most two chunks per core are queued.
+     */
+    private static void submit(Chunk chunk, ForkJoinPool pool, Deque<Future<NormalEquations[]>> pending,
+                               int cores, NormalEquations training, NormalEquations holdout) {
+        pending.add(pool.submit(() -> {
+            NormalEquations[] partial = {new NormalEquations(), new NormalEquations()};
+            for (int i = 0; i < chunk.size; i++) {
+                partial[chunk.holdout[i] ? 1 : 0].add(chunk.mastery[i], chunk.responseTime[i],
+                        chunk.accuracy[i], chunk.target[i]);
+            }
+            return partial;
+        }));
+        while (cores > 0 && pending.size() > cores * 2) {
+            merge(pending.poll(), training, holdout);
+        }
+    }
+
+    private static void merge(Future<NormalEquations[]> future, NormalEquations training, NormalEquations holdout) {
+        try {
+            NormalEquations[] partial = future.get();
+            training.merge(partial[0]);
+            holdout.merge(partial[1]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Difficulty model retraining was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Difficulty model retraining failed", e.getCause());
+        }
+    }
+
+    /**
+     * Teacher-assigned difficulty on the 0-1 scale of predictDifficulty.
+     */
+    private static Double difficultyValue(String difficulty) {
+        return switch (difficulty) {
+            case "EASY" -> 0.15;
+            case "MEDIUM" -> 0.5;
+            case "HARD" -> 0.85;
+            default -> null;
+        };
+    }
+}
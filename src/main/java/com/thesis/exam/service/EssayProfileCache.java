@@ -0,0 +1,57 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.EssayReferenceProfile;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepared essay reference profiles by question, so the reference answer and keywords of an
+ * essay question are analysed once rather than for every submitted essay.
+ *
+ * Entries are keyed by question ID together with the full reference answer and keywords, so an
+ * edited question never reuses a stale profile even before QuestionService invalidates it.
+ * The least recently used profiles are dropped once MAX_PROFILES is reached.
+ */
+@Service
+public class EssayProfileCache {
+
+    private static final int MAX_PROFILES = 2000;
+
+    private record ProfileKey(long questionId, String reference, List<String> keywords) {}
+
+    private final Map<ProfileKey, EssayReferenceProfile> profiles =
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ProfileKey, EssayReferenceProfile> eldest) {
+                    return size() > MAX_PROFILES;
+                }
+            };
+
+    /**
+     * The profile for an essay question's answer key, built on first use.
+     */
+    public EssayReferenceProfile getProfile(AnswerKeyCache.AnswerKey key) {
+        ProfileKey profileKey = new ProfileKey(key.questionId(), key.reference(), key.keywords());
+        synchronized (profiles) {
+            EssayReferenceProfile profile = profiles.get(profileKey);
+            if (profile != null) {
+                return profile;
+            }
+        }
+        // Built outside the lock; a concurrent miss for the same key builds an identical profile
+        EssayReferenceProfile profile = EssayReferenceProfile.build(key.reference(), key.keywords());
+        synchronized (profiles) {
+            profiles.putIfAbsent(profileKey, profile);
+        }
+        return profile;
+    }
+
+    public void invalidate(Long questionId) {
+        synchronized (profiles) {
+            profiles.keySet().removeIf(key -> key.questionId() == questionId);
+        }
+    }
+}
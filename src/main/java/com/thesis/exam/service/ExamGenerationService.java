@@ -5,9 +5,14 @@ import com.thesis.exam.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class ExamGenerationService {
@@ -21,6 +26,15 @@ public class ExamGenerationService {
     @Autowired
     private ExamRepository examRepository;
 
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    @Autowired
+    private ItemExposureControl exposureControl;
+
+    @Autowired
+    private QuestionStatsAggregator statsAggregator;
+
     @Autowired
     private com.thesis.exam.algorithms.LinearRegressionDifficultyAlgorithm linearRegressionAlgorithm;
 
@@ -28,7 +42,16 @@ public class ExamGenerationService {
     private com.thesis.exam.algorithms.FisherYatesShuffleAlgorithm fisherYatesShuffleAlgorithm;
 
     @Autowired
-    private com.thesis.exam.algorithms.IRTBloomTaxonomyAlgorithm irtAlgorithm;
+    private ResponseEventLog responseEventLog;
+
+    @Autowired
+    private ScoreRollupService scoreRollupService;
+
+    @Autowired
+    private StudentFeatureStore featureStore;
+
+    @Autowired
+    private StudentRosterService studentRosterService;
 
     /**
      * Generates an exam for a student in a specific subject.
@@ -55,62 +78,11 @@ public class ExamGenerationService {
             if (examQuestions.size() > totalQuestions) {
                 examQuestions = examQuestions.subList(0, totalQuestions);
             }
+            exposureControl.recordExposures(subject.getId(), examQuestions.stream().map(Question::getId).toList());
         } else {
             // ADAPTIVE MODE: Use Linear Regression & IRT Logic
-            
-            // 2. Determine Difficulty Distribution using Linear Regression Logic (or Rule-based fallback)
-            // Ideally, Linear Regression predicts the *next* optimal difficulty (0.0 to 1.0)
-            // We can map that single value to a distribution.
-            
-            // Use Linear Regression to predict optimal difficulty
-            // We use dummy values for response time/accuracy since we don't have them in this context yet
-            // In a real scenario, you'd fetch the student's recent performance stats
-            double predictedDifficulty = linearRegressionAlgorithm.predictDifficulty(masteryScore, 60.0, masteryScore);
-            
-            // Use the predicted difficulty to adjust the distribution
-            // If predicted is high (>0.7), skew towards Hard
-            // If predicted is low (<0.3), skew towards Easy
-            
-            int easyCount, mediumCount, hardCount;
-
-            if (predictedDifficulty < 0.3) {
-                // Beginner: Mostly Easy, some Medium to test growth
-                easyCount = (int) (totalQuestions * 0.7);
-                mediumCount = (int) (totalQuestions * 0.2);
-                hardCount = totalQuestions - easyCount - mediumCount;
-            } else if (predictedDifficulty < 0.7) {
-                // Intermediate: Balanced mix
-                easyCount = (int) (totalQuestions * 0.3);
-                mediumCount = (int) (totalQuestions * 0.5);
-                hardCount = totalQuestions - easyCount - mediumCount;
-            } else {
-                // Advanced: Mostly Hard and Medium
-                easyCount = (int) (totalQuestions * 0.1);
-                mediumCount = (int) (totalQuestions * 0.3);
-                hardCount = totalQuestions - easyCount - mediumCount;
-            }
-
-            // 3. Fetch Questions
-            // Note: In a real app, use the random query. For H2 in-mem, we might need a simpler approach if RAND() isn't supported perfectly, 
-            // but assuming the repository method works or we fetch all and shuffle.
-            // Here we use the repository method defined earlier.
-            
-            List<Question> easyQuestions = questionRepository.findRandomQuestions(subject.getId(), Difficulty.EASY.name(), easyCount);
-            List<Question> mediumQuestions = questionRepository.findRandomQuestions(subject.getId(), Difficulty.MEDIUM.name(), mediumCount);
-            List<Question> hardQuestions = questionRepository.findRandomQuestions(subject.getId(), Difficulty.HARD.name(), hardCount);
-            
-            // Handle "Unlabeled" or missing difficulties (Cold Start for Questions)
-            // If we didn't find enough questions, fill with random ones (which might be unlabeled)
-            int currentSize = easyQuestions.size() + mediumQuestions.size() + hardQuestions.size();
-            if (currentSize < totalQuestions) {
-                // Fetch random questions regardless of difficulty to fill the gap
-                // In a real implementation, you'd have a specific method for this
-                // For now, we assume the repository handles it or we accept a smaller exam
-            }
-
-            examQuestions.addAll(easyQuestions);
-            examQuestions.addAll(mediumQuestions);
-            examQuestions.addAll(hardQuestions);
+            List<Long> questionIds = selectAdaptiveQuestionIds(subject.getId(), student.getId(), masteryScore, totalQuestions);
+            examQuestions.addAll(questionRepository.findAllById(questionIds));
             
             // Shuffle the final list using Fisher-Yates
             examQuestions = fisherYatesShuffleAlgorithm.shuffle(examQuestions);
@@ -139,7 +111,102 @@ public class ExamGenerationService {
         //    }
         // }
         
-        return examRepository.save(exam);
+        exam = examRepository.save(exam);
+        studentRosterService.recordExam(student != null ? student.getId() : null);
+        return exam;
+    }
+    
+    /**
+     * Picks question IDs for an adaptive exam from the in-memory pool index.
+     * Performs no database access, so it is safe to call in parallel (see BatchExamGenerationService).
+     * Over-exposed questions are filtered by ItemExposureControl and the chosen set is recorded as exposed.
+     */
+    public List<Long> selectAdaptiveQuestionIds(Long subjectId, Long studentId, double masteryScore, int totalQuestions) {
+        // 2. Determine Difficulty Distribution using Linear Regression Logic (or Rule-based fallback)
+        // Ideally, Linear Regression predicts the *next* optimal difficulty (0.0 to 1.0)
+        // We can map that single value to a distribution.
+        
+        // Use Linear Regression to predict optimal difficulty from the student's recent answers
+        // in this subject (StudentFeatureStore, in memory). Students without answers yet fall back
+        // to a typical response time and their mastery as accuracy.
+        StudentFeatureStore.StudentFeatures features = studentId != null
+                ? featureStore.getFeatures(studentId, subjectId) : null;
+        double avgResponseTime = features != null && !Double.isNaN(features.averageResponseTime())
+                ? features.averageResponseTime() : StudentFeatureStore.DEFAULT_RESPONSE_TIME;
+        double recentAccuracy = features != null && !Double.isNaN(features.recentAccuracy())
+                ? features.recentAccuracy() : masteryScore;
+        double predictedDifficulty = linearRegressionAlgorithm.predictDifficulty(masteryScore, avgResponseTime, recentAccuracy);
+        
+        // Use the predicted difficulty to adjust the distribution
+        // If predicted is high (>0.7), skew towards Hard
+        // If predicted is low (<0.3), skew towards Easy
+        
+        int easyCount, mediumCount, hardCount;
+
+        if (predictedDifficulty < 0.3) {
+            // Beginner: Mostly Easy, some Medium to test growth
+            easyCount = (int) (totalQuestions * 0.7);
+            mediumCount = (int) (totalQuestions * 0.2);
+            hardCount = totalQuestions - easyCount - mediumCount;
+        } else if (predictedDifficulty < 0.7) {
+            // Intermediate: Balanced mix
+            easyCount = (int) (totalQuestions * 0.3);
+            mediumCount = (int) (totalQuestions * 0.5);
+            hardCount = totalQuestions - easyCount - mediumCount;
+        } else {
+            // Advanced: Mostly Hard and Medium
+            easyCount = (int) (totalQuestions * 0.1);
+            mediumCount = (int) (totalQuestions * 0.3);
+            hardCount = totalQuestions - easyCount - mediumCount;
+        }
+
+        // 3. Pick Questions
+        // Sample IDs from the in-memory pool index instead of running an ORDER BY RAND() scan per difficulty.
+        // Callers bulk-fetch only the chosen rows.
+        // Twice as many candidates are drawn so the exposure filter has room to reject popular items
+        List<Long> questionIds = new ArrayList<>();
+        questionIds.addAll(applyExposureControl(subjectId,
+                questionPoolIndex.sample(subjectId, Difficulty.EASY, easyCount * 2), easyCount));
+        questionIds.addAll(applyExposureControl(subjectId,
+                questionPoolIndex.sample(subjectId, Difficulty.MEDIUM, mediumCount * 2), mediumCount));
+        questionIds.addAll(applyExposureControl(subjectId,
+                questionPoolIndex.sample(subjectId, Difficulty.HARD, hardCount * 2), hardCount));
+        
+        // Handle "Unlabeled" or missing difficulties (Cold Start for Questions)
+        // If we didn't find enough questions, fill with random ones from the rest of the pool
+        if (questionIds.size() < totalQuestions) {
+            questionIds.addAll(questionPoolIndex.sampleAny(subjectId,
+                    totalQuestions - questionIds.size(), new HashSet<>(questionIds)));
+        }
+
+        exposureControl.recordExposures(subjectId, questionIds);
+        return questionIds;
+    }
+
+    /**
+     * Keep up to count candidates that pass the Sympson-Hetter exposure test.
+     * Rejected candidates are used as a fallback so exams never shrink because of exposure control.
+     */
+    private List<Long> applyExposureControl(Long subjectId, List<Long> candidates, int count) {
+        List<Long> accepted = new ArrayList<>(count);
+        List<Long> rejected = new ArrayList<>();
+        for (Long id : candidates) {
+            if (accepted.size() >= count) {
+                break;
+            }
+            if (exposureControl.accept(subjectId, id)) {
+                accepted.add(id);
+            } else {
+                rejected.add(id);
+            }
+        }
+        for (Long id : rejected) {
+            if (accepted.size() >= count) {
+                break;
+            }
+            accepted.add(id);
+        }
+        return accepted;
     }
     
     /**
@@ -147,14 +214,43 @@ public class ExamGenerationService {
      * This is the full implementation of the feedback loop.
      */
     public void processExamResult(Exam exam, List<Long> correctQuestionIds) {
-        Student student = exam.getStudent();
-        Subject subject = exam.getSubject();
-        
         // 1. Calculate Score
         int totalQuestions = exam.getQuestions().size();
         int correctCount = correctQuestionIds.size();
         double score = (totalQuestions > 0) ? (double) correctCount / totalQuestions : 0.0;
         
+        processExamResult(exam, correctQuestionIds, score);
+    }
+
+    /**
+     * Same as processExamResult(exam, correctQuestionIds) with an externally computed score (0 to 1),
+     * e.g. the ability estimate of an adaptive testing session.
+     */
+    public void processExamResult(Exam exam, List<Long> correctQuestionIds, double score) {
+        processExamResult(exam, null, correctQuestionIds, score, Map.of(), Map.of());
+    }
+
+    /**
+     * Full form: also records each response's answer text and response time (milliseconds)
+     * in the ResponseEventLog. Questions missing from the maps are logged without them.
+     *
+     * @param assignment The completed assignment the exam was taken for (its student took the exam
+     *                   on its completedAt day), or null for an exam submitted for exam.getStudent()
+     */
+    public void processExamResult(Exam exam, ExamAssignment assignment, List<Long> correctQuestionIds, double score,
+                                  Map<Long, String> answers, Map<Long, Integer> responseTimes) {
+        Subject subject = exam.getSubject();
+        Student student = assignment != null ? assignment.getStudent() : exam.getStudent();
+
+        // Subject, student and daily score summaries for the analytics pages, keyed on the
+        // submission so every student of a shared exam counts once and a resubmission is not added
+        if (assignment != null) {
+            LocalDate day = assignment.getCompletedAt() != null ? assignment.getCompletedAt().toLocalDate() : LocalDate.now();
+            scoreRollupService.record("A:" + assignment.getId(), subject.getId(), student.getId(), day, score);
+        } else {
+            scoreRollupService.record("E:" + exam.getId(), subject.getId(), student.getId(), LocalDate.now(), score);
+        }
+
         exam.setScore(score);
         examRepository.save(exam);
 
@@ -171,20 +267,24 @@ public class ExamGenerationService {
         Optional<StudentSubjectMastery> masteryOpt = masteryRepository.findByStudentAndSubject(student, subject);
         double studentMastery = masteryOpt.map(StudentSubjectMastery::getMasteryLevel).orElse(0.0);
         
-        // Use IRT Algorithm to update question parameters if needed
-        // For now, we stick to the Discrimination Index logic, but we could enhance it with IRT
-        
+        // Stats are aggregated in memory and flushed in batches by QuestionStatsAggregator,
+        // so a submission no longer issues one UPDATE per question
+        Set<Long> correctIds = new HashSet<>(correctQuestionIds);
+        List<ResponseEventLog.ResponseEvent> events = new ArrayList<>(exam.getQuestions().size());
         for (Question question : exam.getQuestions()) {
-            boolean isCorrect = correctQuestionIds.contains(question.getId());
-            updateQuestionStats(question, isCorrect, studentMastery);
-            
-            // IRT Calibration (Simplified)
-            // If we wanted to update IRT parameters (a, b, c) dynamically:
-            double theta = studentMastery * 6 - 3; // Map 0..1 to -3..+3
-            double probability = irtAlgorithm.calculateProbability(theta, question.getIrtDiscrimination(), question.getIrtDifficulty(), question.getIrtGuessing());
-            // Then adjust b (difficulty) based on (isCorrect - probability)
-            // This is a placeholder for the full IRT update logic
-            // In a full system, you'd run an optimization loop here
+            boolean isCorrect = correctIds.contains(question.getId());
+            int responseTime = responseTimes.getOrDefault(question.getId(), -1);
+            statsAggregator.record(question.getId(), isCorrect, studentMastery);
+            featureStore.record(student.getId(), subject.getId(), isCorrect, responseTime);
+            events.add(new ResponseEventLog.ResponseEvent(student.getId(), exam.getId(), subject.getId(),
+                    question.getId(), answers.get(question.getId()), isCorrect, responseTime));
+        }
+
+        // 4. Keep the response history (replayed by IRTCalibrationService and other batch jobs)
+        try {
+            responseEventLog.append(events);
+        } catch (UncheckedIOException e) {
+            System.err.println("Failed to log responses for exam " + exam.getId() + ": " + e.getMessage());
         }
     }
 
@@ -211,65 +311,4 @@ public class ExamGenerationService {
         mastery.setMasteryLevel(newMastery);
         masteryRepository.save(mastery);
     }
-
-    /**
-     * Updates question statistics and reclassifies difficulty based on performance.
-     * This implements the "Dynamic Difficulty Reclassification" and "Discrimination Index" 
-     * algorithms from the thesis.
-     * 
-     * @param question The question to update
-     * @param isCorrect Whether the student answered correctly
-     * @param studentMastery The student's mastery level BEFORE taking this exam
-     */
-    public void updateQuestionStats(Question question, boolean isCorrect, double studentMastery) {
-        // 1. Update Basic Stats
-        question.setUsageCount(question.getUsageCount() + 1);
-        if (isCorrect) {
-            question.setCorrectCount(question.getCorrectCount() + 1);
-        }
-
-        // 2. Update Stats for Discrimination Index (High vs Low performers)
-        if (studentMastery >= 0.7) {
-            question.setUsageByHighMastery(question.getUsageByHighMastery() + 1);
-            if (isCorrect) {
-                question.setCorrectByHighMastery(question.getCorrectByHighMastery() + 1);
-            }
-        } else if (studentMastery <= 0.3) {
-            question.setUsageByLowMastery(question.getUsageByLowMastery() + 1);
-            if (isCorrect) {
-                question.setCorrectByLowMastery(question.getCorrectByLowMastery() + 1);
-            }
-        }
-
-        // 3. Calculate Discrimination Index (DI)
-        // DI = P(High) - P(Low)
-        double pHigh = (question.getUsageByHighMastery() > 0) ? 
-            (double) question.getCorrectByHighMastery() / question.getUsageByHighMastery() : 0.0;
-            
-        double pLow = (question.getUsageByLowMastery() > 0) ? 
-            (double) question.getCorrectByLowMastery() / question.getUsageByLowMastery() : 0.0;
-            
-        question.setDiscriminationIndex(pHigh - pLow);
-
-        // 4. Dynamic Difficulty Reclassification
-        // Only reclassify if we have enough data (e.g., 10 attempts)
-        if (question.getUsageCount() >= 10) {
-            double successRate = (double) question.getCorrectCount() / question.getUsageCount();
-
-            // If too many people get it wrong (< 30%), it's HARD
-            if (successRate < 0.3 && question.getDifficulty() != Difficulty.HARD) {
-                question.setDifficulty(Difficulty.HARD);
-            } 
-            // If too many people get it right (> 80%), it's EASY
-            else if (successRate > 0.8 && question.getDifficulty() != Difficulty.EASY) {
-                question.setDifficulty(Difficulty.EASY);
-            }
-            // Otherwise, it's MEDIUM
-            else if (successRate >= 0.3 && successRate <= 0.8 && question.getDifficulty() != Difficulty.MEDIUM) {
-                question.setDifficulty(Difficulty.MEDIUM);
-            }
-        }
-
-        questionRepository.save(question);
-    }
 }
@@ -0,0 +1,178 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.VotingBasedEssayGradingAlgorithm;
+import com.thesis.exam.model.QuestionType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side grading of submitted answers.
+ *
+ * Answer keys come from AnswerKeyCache (one query for all cache misses of a submission),
+ * and each answer is graded by question type:
+ * - MULTIPLE_CHOICE, TRUE_FALSE, MATCHING: exact match after normalization
+ * - FILL_IN_BLANK, SHORT_ANSWER: fuzzy match (edit distance) after normalization
+ * - ESSAY: partial credit from the Voting-Based essay grader, with the reference answer's
+ *   content words as keywords (reference side prepared once per question by EssayProfileCache);
+ *   essays of a known student are also checked for copying
+ */
+@Service
+public class ExamGradingService {
+
+    // Credit from which an answer counts as correct (for mastery and question statistics)
+    public static final double PASSING_CREDIT = 0.5;
+
+    // Minimum similarity (1 - edit distance / length) for a fuzzy match
+    public static final double FUZZY_MATCH_SIMILARITY = 0.85;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private EssayProfileCache essayProfileCache;
+
+    @Autowired
+    private VotingBasedEssayGradingAlgorithm essayGradingAlgorithm;
+
+    @Autowired
+    private PlagiarismDetectionService plagiarismDetectionService;
+
+    /**
+     * Outcome of grading one submission.
+     *
+     * @param credit Credit per question ID (0 to 1)
+     * @param score Total credit divided by the number of questions (0 to 1)
+     * @param similarityMatches Essays that closely match another student's essay (possible copying)
+     */
+    public record GradingResult(List<Long> correctQuestionIds, Map<Long, Double> credit, double score,
+                                List<PlagiarismDetectionService.SimilarityMatch> similarityMatches) {}
+
+    /**
+     * Grade a submission in one pass over the exam's questions.
+     *
+     * @param questionIds Questions of the exam (unanswered ones get no credit)
+     * @param answers Submitted answer text by question ID
+     */
+    public GradingResult grade(List<Long> questionIds, Map<Long, String> answers) {
+        return grade(questionIds, answers, null, null);
+    }
+
+    /**
+     * Same as grade(questionIds, answers) for a known student and exam: essays are also
+     * checked for near-duplicates of other students' essays by PlagiarismDetectionService.
+     */
+    public GradingResult grade(List<Long> questionIds, Map<Long, String> answers, Long studentId, Long examId) {
+        Map<Long, AnswerKeyCache.AnswerKey> keys = answerKeyCache.getKeys(questionIds);
+        List<Long> correctIds = new ArrayList<>();
+        Map<Long, Double> credit = new HashMap<>();
+        List<PlagiarismDetectionService.SimilarityMatch> similarityMatches = new ArrayList<>();
+        double total = 0.0;
+
+        for (Long questionId : questionIds) {
+            AnswerKeyCache.AnswerKey key = keys.get(questionId);
+            String answer = answers.get(questionId);
+            double questionCredit = key != null ? gradeAnswer(key, answer) : 0.0;
+            credit.put(questionId, questionCredit);
+            total += questionCredit;
+            if (questionCredit >= PASSING_CREDIT) {
+                correctIds.add(questionId);
+            }
+            if (studentId != null && key != null && key.type() == QuestionType.ESSAY && answer != null) {
+                similarityMatches.addAll(plagiarismDetectionService.check(questionId, studentId, examId, answer));
+            }
+        }
+
+        double score = questionIds.isEmpty() ? 0.0 : total / questionIds.size();
+        return new GradingResult(correctIds, credit, score, similarityMatches);
+    }
+
+    /**
+     * Whether a single answer is correct (used by adaptive testing, one question at a time).
+     */
+    public boolean isCorrect(Long questionId, String answer) {
+        AnswerKeyCache.AnswerKey key = answerKeyCache.getKey(questionId);
+        return key != null && gradeAnswer(key, answer) >= PASSING_CREDIT;
+    }
+
+    /**
+     * Credit (0 to 1) for one answer.
+     */
+    public double gradeAnswer(AnswerKeyCache.AnswerKey key, String answer) {
+        if (answer == null || answer.isBlank()) {
+            return 0.0;
+        }
+        String normalized = AnswerKeyCache.normalize(answer);
+        QuestionType type = key.type();
+
+        if (type == QuestionType.ESSAY) {
+            if (key.reference() == null || key.reference().isBlank()) {
+                return 0.0;
+            }
+            return essayGradingAlgorithm.gradeEssay(answer, essayProfileCache.getProfile(key));
+        }
+        if (type == QuestionType.TRUE_FALSE) {
+            normalized = AnswerKeyCache.normalizeBoolean(normalized);
+        }
+        if (key.accepted().contains(normalized)) {
+            return 1.0;
+        }
+        if (type == QuestionType.FILL_IN_BLANK || type == QuestionType.SHORT_ANSWER) {
+            for (String accepted : key.accepted()) {
+                if (fuzzyMatch(normalized, accepted)) {
+                    return 1.0;
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Similarity test on the answers with whitespace removed, so "F=ma" matches "F = ma".
+     * The edit distance is computed with a cutoff, so clearly different answers are rejected early.
+     */
+    private static boolean fuzzyMatch(String answer, String reference) {
+        String a = answer.replace(" ", "");
+        String b = reference.replace(" ", "");
+        int longest = Math.max(a.length(), b.length());
+        if (longest == 0) {
+            return false;
+        }
+        int maxDistance = (int) Math.floor(longest * (1 - FUZZY_MATCH_SIMILARITY));
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return false;
+        }
+        return boundedEditDistance(a, b, maxDistance) <= maxDistance;
+    }
+
+    /**
+     * Levenshtein distance, or maxDistance + 1 as soon as it is known to exceed maxDistance.
+     */
+    private static int boundedEditDistance(String a, String b, int maxDistance) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
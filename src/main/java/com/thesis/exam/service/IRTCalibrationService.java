@@ -0,0 +1,210 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.IRTCalibrationAlgorithm;
+import com.thesis.exam.algorithms.ItemResponseMatrix;
+import com.thesis.exam.model.QuestionType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Nightly IRT calibration job.
+ *
+ * Replays the response history from the ResponseEventLog, estimates a/b/c for every question with
+ * IRTCalibrationAlgorithm (MML/EM) and writes the new parameters back in JDBC batches.
+ * A person is one student within one subject, since ability is subject specific.
+ * After a run the question pool index is rebuilt so adaptive sessions use the new parameters.
+ * Nightly and on-demand runs (start) execute in the background on the job's own thread, so the
+ * scheduler thread is never held by EM; their status can be polled.
+ */
+@Service
+public class IRTCalibrationService {
+
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private static final String SELECT_ITEMS_SQL =
+            "SELECT id, question_type, irt_discrimination, irt_difficulty, irt_guessing FROM question";
+
+    private static final String UPDATE_PARAMETERS_SQL =
+            "UPDATE question SET irt_discrimination = ?, irt_difficulty = ?, irt_guessing = ? WHERE id = ?";
+
+    @Autowired
+    private IRTCalibrationAlgorithm calibrationAlgorithm;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    @Autowired
+    private ResponseEventLog responseEventLog;
+
+    private final BackgroundJob<CalibrationReport> job = new BackgroundJob<>("IRT calibration", this::runCalibration);
+
+    /**
+     * Metrics of one calibration run.
+     */
+    public record CalibrationReport(int items, int calibratedItems, int persons, long responses,
+                                    int iterations, boolean converged, double maxChange, double logLikelihood,
+                                    long loadMillis, long emMillis, long writeMillis) {}
+
+    private record PersonKey(long subjectId, long studentId) {}
+
+    @Scheduled(cron = "0 0 2 * * *")
+    public void nightlyCalibration() {
+        start();
+    }
+
+    /**
+     * Run a full calibration on the calling thread.
+     *
+     * @return The run's metrics, or null if a calibration is already in progress
+     */
+    public CalibrationReport calibrate() {
+        return job.run();
+    }
+
+    /**
+     * Start a calibration in the background.
+     *
+     * @return The status of the started run, or null if a calibration is already in progress
+     */
+    public BackgroundJob.JobStatus<CalibrationReport> start() {
+        return job.start();
+    }
+
+    public BackgroundJob.JobStatus<CalibrationReport> getStatus() {
+        return job.getStatus();
+    }
+
+    public CalibrationReport getLastReport() {
+        return job.getLastReport();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+
+    private CalibrationReport runCalibration() {
+        // 1. Load current item parameters and the response history
+        long start = System.nanoTime();
+        List<Long> questionIds = new ArrayList<>();
+        Map<Long, Integer> itemIndex = new HashMap<>();
+        double[][] startParams = new double[4][16];
+
+        jdbcTemplate.query(SELECT_ITEMS_SQL, rs -> {
+            int j = questionIds.size();
+            if (j == startParams[0].length) {
+                for (int x = 0; x < startParams.length; x++) {
+                    startParams[x] = Arrays.copyOf(startParams[x], j * 2);
+                }
+            }
+            long id = rs.getLong("id");
+            questionIds.add(id);
+            itemIndex.put(id, j);
+
+            String type = rs.getString("question_type");
+            double guessingPrior = guessingPrior(type != null ? QuestionType.valueOf(type) : null);
+            double c = rs.getObject("irt_guessing") != null ? rs.getDouble("irt_guessing") : 0.0;
+            startParams[0][j] = rs.getObject("irt_discrimination") != null ? rs.getDouble("irt_discrimination") : 1.0;
+            startParams[1][j] = rs.getObject("irt_difficulty") != null ? rs.getDouble("irt_difficulty") : 0.0;
+            startParams[2][j] = c == 0.0 ? guessingPrior : c;
+            startParams[3][j] = guessingPrior;
+        });
+
+        int items = questionIds.size();
+        ItemResponseMatrix.Builder builder = new ItemResponseMatrix.Builder(items);
+        Map<PersonKey, Integer> personIndex = new HashMap<>();
+
+        // Replay the response history sequentially from the event log
+        try (ResponseEventLog.Cursor cursor = responseEventLog.openCursor()) {
+            while (cursor.next()) {
+                Integer j = itemIndex.get(cursor.questionId());
+                if (j == null) {
+                    continue; // Question was deleted
+                }
+                PersonKey person = new PersonKey(cursor.subjectId(), cursor.studentId());
+                int p = personIndex.computeIfAbsent(person, key -> personIndex.size());
+                builder.add(p, j, cursor.correct());
+            }
+        }
+        ItemResponseMatrix data = builder.build();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("IRT calibration: loaded " + data.responseCount() + " responses from "
+                + data.personCount() + " students for " + items + " questions in " + loadMillis + " ms");
+
+        // 2. EM
+        long emStart = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        IRTCalibrationAlgorithm.CalibrationResult result;
+        try {
+            result = calibrationAlgorithm.calibrate(data,
+                    Arrays.copyOf(startParams[0], items), Arrays.copyOf(startParams[1], items),
+                    Arrays.copyOf(startParams[2], items), Arrays.copyOf(startParams[3], items), pool);
+        } finally {
+            pool.shutdown();
+        }
+        long emMillis = (System.nanoTime() - emStart) / 1_000_000;
+
+        double[] history = result.logLikelihoodHistory();
+        for (int i = 0; i < history.length; i++) {
+            System.out.println("IRT calibration: iteration " + (i + 1) + ", log-likelihood " + String.format("%.2f", history[i]));
+        }
+
+        // 3. Write back the calibrated items
+        long writeStart = System.nanoTime();
+        List<Integer> calibrated = new ArrayList<>();
+        for (int j = 0; j < items; j++) {
+            if (result.calibrated()[j]) {
+                calibrated.add(j);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(UPDATE_PARAMETERS_SQL, calibrated, WRITE_BATCH_SIZE, (ps, j) -> {
+                    ps.setDouble(1, result.a()[j]);
+                    ps.setDouble(2, result.b()[j]);
+                    ps.setDouble(3, result.c()[j]);
+                    ps.setLong(4, questionIds.get(j));
+                }));
+        questionPoolIndex.rebuildAll();
+        long writeMillis = (System.nanoTime() - writeStart) / 1_000_000;
+
+        CalibrationReport report = new CalibrationReport(items, calibrated.size(), data.personCount(),
+                data.responseCount(), result.iterations(), result.converged(), result.maxChange(),
+                result.logLikelihood(), loadMillis, emMillis, writeMillis);
+        System.out.println("IRT calibration: " + (report.converged() ? "converged" : "stopped without converging")
+                + " after " + report.iterations() + " iterations (max change " + String.format("%.5f", report.maxChange())
+                + "), " + report.calibratedItems() + "/" + report.items() + " questions updated; load "
+                + loadMillis + " ms, EM " + emMillis + " ms, write " + writeMillis + " ms");
+        return report;
+    }
+
+    /**
+     * Prior mean of the guessing parameter by question type; 0 means c is not estimated.
+     */
+    private static double guessingPrior(QuestionType type) {
+        if (type == QuestionType.MULTIPLE_CHOICE) {
+            return 0.25; // Four options (A-D)
+        }
+        if (type == QuestionType.TRUE_FALSE) {
+            return 0.5;
+        }
+        return 0.0;
+    }
+}
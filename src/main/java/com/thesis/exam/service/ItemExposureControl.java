@@ -0,0 +1,116 @@
+package com.thesis.exam.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Item exposure control (Sympson-Hetter style).
+ *
+ * Counts how often each question is handed out, per subject, in striped LongAdder counters.
+ * Once a subject has enough exams, a question whose exposure rate (share of exams it appeared in)
+ * is above MAX_EXPOSURE_RATE is only accepted with probability MAX_EXPOSURE_RATE / rate.
+ *
+ * Counters live in memory and are flushed to question.exposure_count periodically in one JDBC batch,
+ * so exposure control adds no database round trip or row lock to exam generation.
+ */
+@Service
+public class ItemExposureControl {
+
+    // Target ceiling on the share of exams a single question appears in
+    public static final double MAX_EXPOSURE_RATE = 0.25;
+
+    // Exams per subject before exposure rates are trusted
+    public static final int WARM_UP_EXAMS = 20;
+
+    private static final String FLUSH_SQL = "UPDATE question SET exposure_count = exposure_count + ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Exposures since application start (used for the rates)
+    private final Map<Long, LongAdder> exposures = new ConcurrentHashMap<>();
+
+    // Exposures not yet written to the database
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // Exams handed out per subject since application start
+    private final Map<Long, LongAdder> examsBySubject = new ConcurrentHashMap<>();
+
+    /**
+     * Sympson-Hetter acceptance test for one candidate question.
+     */
+    public boolean accept(Long subjectId, long questionId) {
+        double rate = exposureRate(subjectId, questionId);
+        if (rate <= MAX_EXPOSURE_RATE) {
+            return true;
+        }
+        return ThreadLocalRandom.current().nextDouble() < MAX_EXPOSURE_RATE / rate;
+    }
+
+    /**
+     * Share of the subject's exams that contained the question, or 0 during warm-up.
+     */
+    public double exposureRate(Long subjectId, long questionId) {
+        LongAdder exams = examsBySubject.get(subjectId);
+        long examCount = exams != null ? exams.sum() : 0;
+        if (examCount < WARM_UP_EXAMS) {
+            return 0.0;
+        }
+        LongAdder count = exposures.get(questionId);
+        return count != null ? (double) count.sum() / examCount : 0.0;
+    }
+
+    /**
+     * Record that one exam in the subject contained the given questions.
+     */
+    public void recordExposures(Long subjectId, Collection<Long> questionIds) {
+        examsBySubject.computeIfAbsent(subjectId, id -> new LongAdder()).increment();
+        for (Long questionId : questionIds) {
+            exposures.computeIfAbsent(questionId, id -> new LongAdder()).increment();
+            pending.computeIfAbsent(questionId, id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Write pending exposure deltas to the question table in one batch.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void flush() {
+        List<Object[]> deltas = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                deltas.add(new Object[]{delta, entry.getKey()});
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, deltas);
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            for (Object[] delta : deltas) {
+                pending.computeIfAbsent((Long) delta[1], id -> new LongAdder()).add((Long) delta[0]);
+            }
+            System.err.println("Failed to flush item exposure counters: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
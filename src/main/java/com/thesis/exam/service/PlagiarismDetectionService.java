@@ -0,0 +1,236 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.EssayMinHash;
+import com.thesis.exam.algorithms.LshIndex;
+import com.thesis.exam.model.QuestionType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Flags near-duplicate essays (possible copying) among the submissions for each essay question.
+ *
+ * Every graded essay gets a MinHash signature, is checked against the earlier essays for the same
+ * question through an LSH index (only the candidates sharing a bucket are compared, instead of
+ * every pair) and is then added to the index. Pairs of different students with an estimated
+ * similarity of at least SIMILARITY_THRESHOLD are reported to the grader (and stored in the
+ * submission's assignment note) and kept for the teacher report. The indexes live in memory and are rebuilt from the ResponseEventLog after startup.
+ *
+ * Memory is bounded on both axes. A question keeps its most recent essays in two generations of
+ * MAX_ESSAYS_PER_QUESTION / 2 each; when the current one is full the older one is dropped, so an
+ * essay is compared with at least the last MAX_ESSAYS_PER_QUESTION / 2 submissions. At most
+ * MAX_QUESTIONS questions are indexed; the least recently checked question is dropped beyond
+ * that, and its later essays are only compared with each other.
+ */
+@Service
+public class PlagiarismDetectionService {
+
+    // Estimated Jaccard similarity of word 3-shingles from which a pair is flagged
+    public static final double SIMILARITY_THRESHOLD = 0.8;
+
+    // Most recent matches kept for the teacher report
+    private static final int MAX_REPORTED_MATCHES = 5000;
+
+    // Indexed essays per question, across both generations
+    private static final int MAX_ESSAYS_PER_QUESTION = 1000;
+
+    // Questions with an index, least recently checked dropped first
+    private static final int MAX_QUESTIONS = 200;
+
+    @Autowired
+    private EssayMinHash minHash;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private ResponseEventLog responseEventLog;
+
+    private final Map<Long, QuestionIndex> indexes = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, QuestionIndex> eldest) {
+            return size() > MAX_QUESTIONS;
+        }
+    };
+
+    private final Deque<SimilarityMatch> recentMatches = new ArrayDeque<>();
+
+    /**
+     * Two students' essays for the same question that are likely copied.
+     *
+     * @param studentId The student whose essay was checked
+     * @param matchedStudentId The student who submitted the earlier, similar essay
+     * @param similarity Estimated similarity (0 to 1)
+     */
+    public record SimilarityMatch(long questionId, long studentId, long examId,
+                                  long matchedStudentId, long matchedExamId,
+                                  double similarity, LocalDateTime detectedAt) {}
+
+    private record Submission(long studentId, long examId) {}
+
+    /**
+     * Essays indexed for one question since the generation was started.
+     */
+    private static class Generation {
+        final LshIndex index = new LshIndex();
+        final List<Submission> submissions = new ArrayList<>();
+        final Set<Submission> seen = new HashSet<>();
+    }
+
+    private static class QuestionIndex {
+        Generation current = new Generation();
+        Generation previous;
+
+        boolean contains(Submission submission) {
+            return current.seen.contains(submission) || (previous != null && previous.seen.contains(submission));
+        }
+
+        void add(Submission submission, int[] signature) {
+            if (current.submissions.size() >= MAX_ESSAYS_PER_QUESTION / 2) {
+                previous = current;
+                current = new Generation();
+            }
+            current.index.add(current.submissions.size(), signature);
+            current.submissions.add(submission);
+            current.seen.add(submission);
+        }
+    }
+
+    /**
+     * Check an essay against the earlier essays for the same question and add it to the index.
+     *
+     * @return Matches with other students' essays (empty if the essay is too short to judge)
+     */
+    public List<SimilarityMatch> check(long questionId, long studentId, long examId, String essay) {
+        return check(questionId, studentId, examId, essay, LocalDateTime.now());
+    }
+
+    private List<SimilarityMatch> check(long questionId, long studentId, long examId, String essay,
+                                        LocalDateTime submittedAt) {
+        int[] signature = minHash.signature(essay);
+        if (signature == null) {
+            return List.of();
+        }
+        Submission submission = new Submission(studentId, examId);
+        QuestionIndex questionIndex;
+        synchronized (indexes) {
+            questionIndex = indexes.computeIfAbsent(questionId, id -> new QuestionIndex());
+        }
+        List<SimilarityMatch> matches = new ArrayList<>();
+
+        synchronized (questionIndex) {
+            // The same submission can arrive live and again from the log replay
+            if (questionIndex.contains(submission)) {
+                return List.of();
+            }
+            for (Generation generation : new Generation[]{questionIndex.previous, questionIndex.current}) {
+                if (generation == null) {
+                    continue;
+                }
+                for (LshIndex.Entry candidate : generation.index.candidates(signature)) {
+                    Submission other = generation.submissions.get((int) candidate.id());
+                    if (other.studentId() == studentId) {
+                        continue;
+                    }
+                    double similarity = minHash.similarity(signature, candidate.signature());
+                    if (similarity >= SIMILARITY_THRESHOLD) {
+                        matches.add(new SimilarityMatch(questionId, studentId, examId,
+                                other.studentId(), other.examId(), similarity, submittedAt));
+                    }
+                }
+            }
+            questionIndex.add(submission, signature);
+        }
+
+        if (!matches.isEmpty()) {
+            synchronized (recentMatches) {
+                for (SimilarityMatch match : matches) {
+                    recentMatches.addFirst(match);
+                    if (recentMatches.size() > MAX_REPORTED_MATCHES) {
+                        recentMatches.removeLast();
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Description of matches for a stored note, e.g. "Question 12: 87% similar to student 5's essay
+     * (exam 9)", cut to maxLength characters.
+     */
+    public static String describe(List<SimilarityMatch> matches, int maxLength) {
+        StringBuilder note = new StringBuilder();
+        for (SimilarityMatch match : matches) {
+            if (note.length() > 0) {
+                note.append("; ");
+            }
+            note.append("Question ").append(match.questionId()).append(": ")
+                    .append(Math.round(match.similarity() * 100)).append("% similar to student ")
+                    .append(match.matchedStudentId()).append("'s essay (exam ").append(match.matchedExamId()).append(')');
+        }
+        return note.length() > maxLength ? note.substring(0, maxLength - 3) + "..." : note.toString();
+    }
+
+    /**
+     * Flagged pairs, most recent first.
+     */
+    public List<SimilarityMatch> getRecentMatches() {
+        synchronized (recentMatches) {
+            return new ArrayList<>(recentMatches);
+        }
+    }
+
+    /**
+     * Index the essays already in the response history, in submission order, so matches
+     * against essays submitted before a restart are still found.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromLog() {
+        long start = System.nanoTime();
+        Map<Long, Boolean> essayQuestions = new HashMap<>();
+        int essays = 0;
+
+        try (ResponseEventLog.Cursor cursor = responseEventLog.openCursor()) {
+            while (cursor.next()) {
+                long questionId = cursor.questionId();
+                boolean isEssay = essayQuestions.computeIfAbsent(questionId, id -> {
+                    AnswerKeyCache.AnswerKey key = answerKeyCache.getKey(id);
+                    return key != null && key.type() == QuestionType.ESSAY;
+                });
+                String answer = isEssay ? cursor.answer() : null;
+                if (answer == null) {
+                    continue;
+                }
+                LocalDateTime submittedAt = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(cursor.timestamp()), ZoneId.systemDefault());
+                check(questionId, cursor.studentId(), cursor.examId(), answer, submittedAt);
+                essays++;
+            }
+        }
+
+        int questions;
+        synchronized (indexes) {
+            questions = indexes.size();
+        }
+        System.out.println("Plagiarism index: " + essays + " essays replayed, " + questions
+                + " questions indexed in " + (System.nanoTime() - start) / 1_000_000 + " ms, "
+                + getRecentMatches().size() + " similar pairs");
+    }
+}
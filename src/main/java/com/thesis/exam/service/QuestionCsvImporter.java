@@ -0,0 +1,303 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.model.Difficulty;
+import com.thesis.exam.util.ContentHash;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming CSV import of questions (content, difficulty, subject, answer).
+ *
+ * The file is parsed in one forward pass and rows are written in chunks of CHUNK_SIZE with one
+ * JDBC batch INSERT and one transaction per chunk, so memory stays constant however large the
+ * file is and no transaction spans the whole import. Subject names are resolved through a
+ * name-to-ID map loaded once; unknown subjects are created on first sight (a subject created
+ * meanwhile by a concurrent import is reused through the unique name). Malformed rows are
+ * reported to the ImportListener with a reason instead of being imported.
+ *
+ * Each row's ContentHash is checked per chunk: duplicates within the chunk are dropped through an
+ * in-memory set, and the remaining hashes are looked up with one IN query against the unique
+ * (content_hash, subject_id) index. Questions that already exist are skipped or, with
+ * DuplicatePolicy.UPDATE, get the difficulty and answer from the file.
+ */
+@Service
+public class QuestionCsvImporter {
+
+    // Rows per JDBC batch and transaction
+    public static final int CHUNK_SIZE = 1000;
+
+    // Column sizes of the question table
+    private static final int MAX_CONTENT_LENGTH = 1000;
+    private static final int MAX_ANSWER_LENGTH = 255;
+
+    private static final String SELECT_SUBJECTS_SQL = "SELECT id, name FROM subject";
+
+    // No-op if the name exists already, e.g. created by a concurrent import
+    private static final String INSERT_SUBJECT_SQL = "INSERT INTO subject (name) VALUES (?) ON DUPLICATE KEY UPDATE name = name";
+
+    private static final String SELECT_SUBJECT_ID_SQL = "SELECT id FROM subject WHERE name = ?";
+
+    // Same defaults as a new Question entity. A row inserted concurrently by another import between
+    // the hash lookup and this insert is left as it is.
+    private static final String INSERT_QUESTION_SQL = "INSERT INTO question (content, content_hash, difficulty, "
+            + "subject_id, correct_answer, irt_difficulty, irt_discrimination, irt_guessing, usage_count, "
+            + "correct_count, exposure_count, usage_by_high_mastery, correct_by_high_mastery, usage_by_low_mastery, "
+            + "correct_by_low_mastery, discrimination_index) "
+            + "VALUES (?, ?, ?, ?, ?, 0.0, 1.0, 0.0, 0, 0, 0, 0, 0, 0, 0, 0.0) ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String UPDATE_QUESTION_SQL = "UPDATE question SET difficulty = ?, correct_answer = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private EssayProfileCache essayProfileCache;
+
+    /**
+     * What to do with a row whose question already exists in its subject.
+     */
+    public enum DuplicatePolicy {
+        SKIP,
+        // Overwrite the existing question's difficulty and correct answer
+        UPDATE
+    }
+
+    /**
+     * @param rows Data rows read (header and empty lines excluded)
+     * @param updated Existing questions updated from the file (DuplicatePolicy.UPDATE)
+     * @param duplicates Rows skipped because the question already exists
+     * @param rejected Malformed rows that were not imported
+     */
+    public record ImportSummary(long rows, long imported, long updated, long duplicates, long rejected,
+                                int subjectsCreated, long elapsedMillis) {}
+
+    /**
+     * Callbacks of a running import (see QuestionImportJobService).
+     */
+    public interface ImportListener {
+        /**
+         * A row was not imported.
+         */
+        default void onRejected(CSVRecord record, String reason) {}
+
+        /**
+         * A chunk was committed; counts are totals so far.
+         */
+        default void onProgress(long rows, long imported, long updated, long duplicates, long rejected) {}
+    }
+
+    private record QuestionRow(String content, String contentHash, Difficulty difficulty, long subjectId, String answer) {}
+
+    private record QuestionKey(String contentHash, long subjectId) {}
+
+    /**
+     * Outcome of one chunk.
+     */
+    private record ChunkResult(int imported, List<Long> updatedIds, int duplicates) {}
+
+    /**
+     * Import every well-formed row of a CSV file.
+     */
+    public ImportSummary importCsv(Reader reader, DuplicatePolicy policy, ImportListener listener) throws IOException {
+        long start = System.nanoTime();
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setTrim(true)
+                .setIgnoreSurroundingSpaces(true)
+                .setIgnoreEmptyLines(true)
+                .build();
+
+        Map<String, Long> subjectIds = new HashMap<>();
+        jdbcTemplate.query(SELECT_SUBJECTS_SQL, rs -> {
+            subjectIds.putIfAbsent(rs.getString("name"), rs.getLong("id"));
+        });
+        int subjectsBefore = subjectIds.size();
+
+        long rows = 0;
+        long imported = 0;
+        long updated = 0;
+        long duplicates = 0;
+        long rejected = 0;
+        Set<Long> importedSubjectIds = new HashSet<>();
+        List<QuestionRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (CSVParser parser = format.parse(reader)) {
+            for (CSVRecord record : parser) {
+                if (record.size() == 0 || (record.getRecordNumber() == 1 && looksLikeHeader(record))) {
+                    continue;
+                }
+                rows++;
+                String reason = rejectionReason(record);
+                if (reason != null) {
+                    rejected++;
+                    listener.onRejected(record, reason);
+                    continue;
+                }
+
+                Difficulty difficulty;
+                try {
+                    difficulty = Difficulty.valueOf(record.get(1).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    difficulty = Difficulty.MEDIUM;
+                }
+                long subjectId = subjectIds.computeIfAbsent(record.get(2), this::insertSubject);
+                importedSubjectIds.add(subjectId);
+                chunk.add(new QuestionRow(record.get(0), ContentHash.of(record.get(0)), difficulty, subjectId,
+                        record.get(3)));
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    ChunkResult result = writeChunk(chunk, policy);
+                    imported += result.imported();
+                    updated += result.updatedIds().size();
+                    duplicates += result.duplicates();
+                    chunk.clear();
+                    listener.onProgress(rows, imported, updated, duplicates, rejected);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            ChunkResult result = writeChunk(chunk, policy);
+            imported += result.imported();
+            updated += result.updatedIds().size();
+            duplicates += result.duplicates();
+        }
+        listener.onProgress(rows, imported, updated, duplicates, rejected);
+
+        // Rebuild each affected subject once instead of patching the index per row
+        importedSubjectIds.forEach(questionPoolIndex::rebuild);
+
+        ImportSummary summary = new ImportSummary(rows, imported, updated, duplicates, rejected,
+                subjectIds.size() - subjectsBefore, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Question CSV import: " + summary.imported() + " of " + summary.rows() + " rows imported ("
+                + summary.updated() + " updated, " + summary.duplicates() + " duplicates, " + summary.rejected()
+                + " rejected, " + summary.subjectsCreated() + " new subjects) in " + summary.elapsedMillis() + " ms");
+        return summary;
+    }
+
+    /**
+     * Why a row cannot be imported, or null if it can.
+     */
+    private static String rejectionReason(CSVRecord record) {
+        if (record.size() < 4) {
+            return "Expected 4 columns (content, difficulty, subject, answer) but found " + record.size();
+        }
+        if (record.get(0).isEmpty()) {
+            return "Content is empty";
+        }
+        if (record.get(2).isEmpty()) {
+            return "Subject is empty";
+        }
+        if (record.get(0).length() > MAX_CONTENT_LENGTH) {
+            return "Content is longer than " + MAX_CONTENT_LENGTH + " characters";
+        }
+        if (record.get(3).length() > MAX_ANSWER_LENGTH) {
+            return "Answer is longer than " + MAX_ANSWER_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    /**
+     * Insert the chunk's new questions and skip or update the existing ones, in one transaction.
+     */
+    private ChunkResult writeChunk(List<QuestionRow> chunk, DuplicatePolicy policy) {
+        // Last row wins within the chunk, as it would if the rows were imported one by one
+        Map<QuestionKey, QuestionRow> unique = new HashMap<>();
+        for (QuestionRow row : chunk) {
+            unique.put(new QuestionKey(row.contentHash(), row.subjectId()), row);
+        }
+        int duplicatesInChunk = chunk.size() - unique.size();
+
+        ChunkResult result = transactionTemplate.execute(status -> {
+            Map<QuestionKey, Long> existing = findExisting(unique.keySet());
+            List<QuestionRow> inserts = new ArrayList<>(unique.size());
+            List<Object[]> updates = new ArrayList<>();
+            List<Long> updatedIds = new ArrayList<>();
+            for (Map.Entry<QuestionKey, QuestionRow> entry : unique.entrySet()) {
+                Long id = existing.get(entry.getKey());
+                QuestionRow row = entry.getValue();
+                if (id == null) {
+                    inserts.add(row);
+                } else if (policy == DuplicatePolicy.UPDATE) {
+                    updates.add(new Object[]{row.difficulty().name(), row.answer(), id});
+                    updatedIds.add(id);
+                }
+            }
+
+            jdbcTemplate.batchUpdate(INSERT_QUESTION_SQL, inserts, CHUNK_SIZE, (ps, row) -> {
+                ps.setString(1, row.content());
+                ps.setString(2, row.contentHash());
+                ps.setString(3, row.difficulty().name());
+                ps.setLong(4, row.subjectId());
+                ps.setString(5, row.answer());
+            });
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_QUESTION_SQL, updates);
+            }
+            return new ChunkResult(inserts.size(), updatedIds, existing.size() - updatedIds.size());
+        });
+
+        for (Long id : result.updatedIds()) {
+            answerKeyCache.invalidate(id);
+            essayProfileCache.invalidate(id);
+        }
+        return new ChunkResult(result.imported(), result.updatedIds(), result.duplicates() + duplicatesInChunk);
+    }
+
+    /**
+     * IDs of the questions that already exist for the given hashes, with one IN query.
+     */
+    private Map<QuestionKey, Long> findExisting(Set<QuestionKey> keys) {
+        Map<QuestionKey, Long> existing = new HashMap<>();
+        if (keys.isEmpty()) {
+            return existing;
+        }
+        List<String> hashes = keys.stream().map(QuestionKey::contentHash).distinct().toList();
+        String placeholders = hashes.stream().map(hash -> "?").collect(Collectors.joining(","));
+        jdbcTemplate.query("SELECT id, subject_id, content_hash FROM question WHERE content_hash IN (" + placeholders + ")",
+                rs -> {
+                    QuestionKey key = new QuestionKey(rs.getString("content_hash"), rs.getLong("subject_id"));
+                    if (keys.contains(key)) {
+                        existing.put(key, rs.getLong("id"));
+                    }
+                }, hashes.toArray());
+        return existing;
+    }
+
+    private long insertSubject(String name) {
+        jdbcTemplate.update(INSERT_SUBJECT_SQL, name);
+        return jdbcTemplate.queryForObject(SELECT_SUBJECT_ID_SQL, Long.class, name);
+    }
+
+    private boolean looksLikeHeader(CSVRecord record) {
+        if (record.size() < 4) {
+            return false;
+        }
+
+        return record.get(0).equalsIgnoreCase("content")
+                && record.get(1).toLowerCase().contains("difficulty")
+                && record.get(2).toLowerCase().contains("subject")
+                && record.get(3).toLowerCase().contains("answer");
+    }
+}
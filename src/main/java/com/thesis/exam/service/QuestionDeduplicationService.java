@@ -0,0 +1,269 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.util.ContentHash;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * One-time cleanup of duplicate questions in the existing bank, and backfill of content_hash.
+ *
+ * Questions created before the content_hash column existed have no hash, so repeated CSV imports
+ * left copies of the same question in a subject. Subjects are processed in parallel on the
+ * examGenerationExecutor: each task reads its questions, groups them by ContentHash and keeps one
+ * question per group (the one already hashed, else the oldest). In one transaction per subject,
+ * each copy's usage statistics are added to the survivor's in SQL (reading the copy's current
+ * counts, so statistics flushed concurrently by QuestionStatsAggregator are kept), exam and essay
+ * grade references are repointed to the survivor (an exam that already contains it just loses the
+ * copy), the copies are deleted and the survivors get their hash.
+ *
+ * The job runs at startup while unhashed questions remain; afterwards the unique
+ * (content_hash, subject_id) index keeps new duplicates out. Response log records keep the IDs
+ * of deleted copies and are simply no longer matched to a question. Runs requested by a teacher
+ * (start) execute on the job's own thread.
+ */
+@Service
+public class QuestionDeduplicationService {
+
+    private static final String COUNT_UNHASHED_SQL =
+            "SELECT COUNT(*) FROM question WHERE content_hash IS NULL AND subject_id IS NOT NULL";
+
+    private static final String SELECT_SUBJECTS_SQL =
+            "SELECT DISTINCT subject_id FROM question WHERE subject_id IS NOT NULL";
+
+    private static final String SELECT_QUESTIONS_SQL =
+            "SELECT id, content, content_hash FROM question WHERE subject_id = ? ORDER BY id";
+
+    // Adds the copy's (first parameter) counts to the survivor's as they are at this point
+    private static final String MERGE_STATISTICS_SQL = "UPDATE question s JOIN question c ON c.id = ? SET "
+            + "s.usage_count = s.usage_count + c.usage_count, s.correct_count = s.correct_count + c.correct_count, "
+            + "s.exposure_count = s.exposure_count + c.exposure_count, "
+            + "s.usage_by_high_mastery = s.usage_by_high_mastery + c.usage_by_high_mastery, "
+            + "s.correct_by_high_mastery = s.correct_by_high_mastery + c.correct_by_high_mastery, "
+            + "s.usage_by_low_mastery = s.usage_by_low_mastery + c.usage_by_low_mastery, "
+            + "s.correct_by_low_mastery = s.correct_by_low_mastery + c.correct_by_low_mastery WHERE s.id = ?";
+
+    // Same formula as QuestionStatsAggregator.discriminationIndex, on the merged counts
+    private static final String UPDATE_DISCRIMINATION_SQL = "UPDATE question SET discrimination_index = "
+            + "IF(usage_by_high_mastery > 0, correct_by_high_mastery / usage_by_high_mastery, 0) - "
+            + "IF(usage_by_low_mastery > 0, correct_by_low_mastery / usage_by_low_mastery, 0) WHERE id = ?";
+
+    // Only in exams that do not contain the survivor (first parameter) yet
+    private static final String REPOINT_EXAM_QUESTIONS_SQL = "UPDATE exam_questions c "
+            + "LEFT JOIN exam_questions s ON s.exam_id = c.exam_id AND s.questions_id = ? "
+            + "SET c.questions_id = ? WHERE c.questions_id = ? AND s.exam_id IS NULL";
+
+    // The copy's remaining rows are in exams that already contain the survivor
+    private static final String DELETE_EXAM_QUESTIONS_SQL = "DELETE FROM exam_questions WHERE questions_id = ?";
+
+    // A student's grade for the copy is dropped if one for the survivor already exists in that exam
+    private static final String REPOINT_ESSAY_GRADES_SQL =
+            "UPDATE IGNORE essay_grade SET question_id = ? WHERE question_id = ?";
+
+    private static final String DELETE_ESSAY_GRADES_SQL = "DELETE FROM essay_grade WHERE question_id = ?";
+
+    private static final String DELETE_QUESTION_SQL = "DELETE FROM question WHERE id = ?";
+
+    private static final String UPDATE_HASH_SQL = "UPDATE question SET content_hash = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("examGenerationExecutor")
+    private ExecutorService executor;
+
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private EssayProfileCache essayProfileCache;
+
+    private final BackgroundJob<DeduplicationReport> job = new BackgroundJob<>("Question deduplication", this::runDeduplication);
+
+    /**
+     * Summary of a deduplication run.
+     *
+     * @param hashed Questions whose content_hash was set or corrected
+     * @param duplicateGroups Questions that had at least one copy
+     * @param removed Copies deleted
+     */
+    public record DeduplicationReport(int subjects, long questions, long hashed, long duplicateGroups,
+                                      long removed, long elapsedMillis) {}
+
+    private record SubjectResult(long subjectId, int questions, int hashed, int duplicateGroups, List<Long> removedIds) {}
+
+    /**
+     * One question with its stored and computed content hash.
+     */
+    private record QuestionRow(long id, String storedHash, String hash) {}
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void deduplicateOnStartup() {
+        Long unhashed = jdbcTemplate.queryForObject(COUNT_UNHASHED_SQL, Long.class);
+        if (unhashed != null && unhashed > 0) {
+            System.out.println("Question deduplication: " + unhashed + " questions without a content hash");
+            deduplicate();
+        }
+    }
+
+    /**
+     * Merge duplicate questions of every subject and hash all questions, on the calling thread.
+     *
+     * @return The run's summary, or null if a run is already in progress
+     */
+    public DeduplicationReport deduplicate() {
+        return job.run();
+    }
+
+    /**
+     * Start a deduplication run in the background.
+     *
+     * @return The status of the started run, or null if a run is already in progress
+     */
+    public BackgroundJob.JobStatus<DeduplicationReport> start() {
+        return job.start();
+    }
+
+    public BackgroundJob.JobStatus<DeduplicationReport> getStatus() {
+        return job.getStatus();
+    }
+
+    public DeduplicationReport getLastReport() {
+        return job.getLastReport();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+
+    private DeduplicationReport runDeduplication() {
+        long start = System.nanoTime();
+        List<Long> subjectIds = jdbcTemplate.queryForList(SELECT_SUBJECTS_SQL, Long.class);
+        List<Callable<SubjectResult>> tasks = new ArrayList<>(subjectIds.size());
+        for (Long subjectId : subjectIds) {
+            tasks.add(() -> deduplicateSubject(subjectId));
+        }
+
+        long questions = 0;
+        long hashed = 0;
+        long duplicateGroups = 0;
+        long removed = 0;
+        try {
+            for (Future<SubjectResult> future : executor.invokeAll(tasks)) {
+                SubjectResult result = future.get();
+                questions += result.questions();
+                hashed += result.hashed();
+                duplicateGroups += result.duplicateGroups();
+                removed += result.removedIds().size();
+                if (!result.removedIds().isEmpty()) {
+                    questionPoolIndex.rebuild(result.subjectId());
+                    for (Long id : result.removedIds()) {
+                        answerKeyCache.invalidate(id);
+                        essayProfileCache.invalidate(id);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Question deduplication was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Question deduplication failed", e.getCause());
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        DeduplicationReport report = new DeduplicationReport(subjectIds.size(), questions, hashed,
+                duplicateGroups, removed, elapsedMillis);
+        System.out.println("Question deduplication: " + questions + " questions in " + subjectIds.size()
+                + " subjects, " + removed + " copies of " + duplicateGroups + " questions removed, "
+                + hashed + " hashed in " + elapsedMillis + " ms");
+        return report;
+    }
+
+    private SubjectResult deduplicateSubject(long subjectId) {
+        // Questions by hash, in ID order
+        Map<String, List<QuestionRow>> groups = new HashMap<>();
+        int[] questions = {0};
+        jdbcTemplate.query(SELECT_QUESTIONS_SQL, rs -> {
+            QuestionRow row = new QuestionRow(rs.getLong("id"), rs.getString("content_hash"),
+                    ContentHash.of(rs.getString("content")));
+            groups.computeIfAbsent(row.hash(), hash -> new ArrayList<>(1)).add(row);
+            questions[0]++;
+        }, subjectId);
+
+        List<Object[]> merges = new ArrayList<>();
+        List<Object[]> survivors = new ArrayList<>();
+        List<Object[]> examRepoints = new ArrayList<>();
+        List<Object[]> repoints = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> hashes = new ArrayList<>();
+        List<Long> removedIds = new ArrayList<>();
+        int duplicateGroups = 0;
+        for (List<QuestionRow> group : groups.values()) {
+            QuestionRow survivor = group.get(0);
+            for (QuestionRow row : group) {
+                if (row.hash().equals(row.storedHash())) {
+                    survivor = row;
+                    break;
+                }
+            }
+            if (group.size() > 1) {
+                duplicateGroups++;
+                for (QuestionRow copy : group) {
+                    if (copy != survivor) {
+                        merges.add(new Object[]{copy.id(), survivor.id()});
+                        examRepoints.add(new Object[]{survivor.id(), survivor.id(), copy.id()});
+                        repoints.add(new Object[]{survivor.id(), copy.id()});
+                        deletes.add(new Object[]{copy.id()});
+                        removedIds.add(copy.id());
+                    }
+                }
+                survivors.add(new Object[]{survivor.id()});
+            }
+            if (!survivor.hash().equals(survivor.storedHash())) {
+                hashes.add(new Object[]{survivor.hash(), survivor.id()});
+            }
+        }
+
+        if (!deletes.isEmpty() || !hashes.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deletes.isEmpty()) {
+                    jdbcTemplate.batchUpdate(MERGE_STATISTICS_SQL, merges);
+                    jdbcTemplate.batchUpdate(UPDATE_DISCRIMINATION_SQL, survivors);
+                    // In order, so of two copies in one exam only the first is repointed
+                    jdbcTemplate.batchUpdate(REPOINT_EXAM_QUESTIONS_SQL, examRepoints);
+                    jdbcTemplate.batchUpdate(DELETE_EXAM_QUESTIONS_SQL, deletes);
+                    jdbcTemplate.batchUpdate(REPOINT_ESSAY_GRADES_SQL, repoints);
+                    jdbcTemplate.batchUpdate(DELETE_ESSAY_GRADES_SQL, deletes);
+                    jdbcTemplate.batchUpdate(DELETE_QUESTION_SQL, deletes);
+                }
+                // After the deletes, so no copy still holds a survivor's hash
+                jdbcTemplate.batchUpdate(UPDATE_HASH_SQL, hashes);
+            });
+        }
+        return new SubjectResult(subjectId, questions[0], hashes.size(), duplicateGroups, removedIds);
+    }
+}
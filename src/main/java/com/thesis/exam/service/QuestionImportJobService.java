@@ -0,0 +1,286 @@
+package com.thesis.exam.service;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background CSV question imports.
+ *
+ * An upload is spooled to a file in the spool directory and the request returns a job ID at once;
+ * the import itself (QuestionCsvImporter) runs on the bounded questionImportExecutor, so large
+ * banks and several concurrent imports never hold web request threads. Progress is estimated from
+ * the bytes read against the file size. Rejected rows are written with their reason to a CSV file
+ * next to the upload that teachers can download. Jobs are kept in memory; the oldest finished jobs
+ * (and their files) are dropped beyond MAX_JOBS, and files left over from a previous run are
+ * deleted on startup.
+ */
+@Service
+public class QuestionImportJobService {
+
+    private static final int MAX_JOBS = 200;
+
+    @Value("${exam.import.spool-dir:data/import-spool}")
+    private String directory;
+
+    @Autowired
+    private QuestionCsvImporter questionCsvImporter;
+
+    @Autowired
+    @Qualifier("questionImportExecutor")
+    private ExecutorService executor;
+
+    private Path spoolDirectory;
+
+    // Insertion order, so the oldest jobs are evicted first
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+
+    public enum JobState { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * Snapshot of one job.
+     *
+     * @param percentComplete Share of the file read so far (0-100)
+     * @param etaSeconds Estimated seconds to completion, or null while unknown
+     * @param error Failure message of a FAILED job
+     */
+    public record ImportStatus(String jobId, String fileName, JobState state, long rowsProcessed, long imported,
+                               long updated, long duplicates, long rejected, double percentComplete,
+                               double rowsPerSecond, Long etaSeconds, long elapsedMillis, String error) {}
+
+    private static final class ImportJob {
+        final String id;
+        final String fileName;
+        final Path upload;
+        final Path rejectedRows;
+        final long fileSize;
+        final QuestionCsvImporter.DuplicatePolicy policy;
+        final AtomicLong bytesRead = new AtomicLong();
+        volatile JobState state = JobState.QUEUED;
+        volatile long rows;
+        volatile long imported;
+        volatile long updated;
+        volatile long duplicates;
+        volatile long rejected;
+        volatile long startNanos;
+        volatile long endNanos;
+        volatile String error;
+
+        ImportJob(String id, String fileName, Path upload, Path rejectedRows, long fileSize,
+                  QuestionCsvImporter.DuplicatePolicy policy) {
+            this.id = id;
+            this.fileName = fileName;
+            this.upload = upload;
+            this.rejectedRows = rejectedRows;
+            this.fileSize = fileSize;
+            this.policy = policy;
+        }
+
+        boolean finished() {
+            return state == JobState.DONE || state == JobState.FAILED;
+        }
+    }
+
+    /**
+     * Input stream that counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        spoolDirectory = Paths.get(directory);
+        Files.createDirectories(spoolDirectory);
+        // Jobs do not survive a restart, so neither do their files
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDirectory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Spool an uploaded CSV file and queue its import.
+     *
+     * @param policy What to do with questions that already exist
+     * @return The job ID
+     */
+    public String submit(MultipartFile file, QuestionCsvImporter.DuplicatePolicy policy) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path upload = spoolDirectory.resolve(id + ".csv");
+        file.transferTo(upload);
+        ImportJob job = new ImportJob(id, file.getOriginalFilename(), upload,
+                spoolDirectory.resolve(id + "-rejected.csv"), Files.size(upload), policy);
+        register(job);
+        executor.execute(() -> run(job));
+        return id;
+    }
+
+    /**
+     * @return The job's status, or null if the job is unknown
+     */
+    public ImportStatus getStatus(String jobId) {
+        ImportJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        return job != null ? status(job) : null;
+    }
+
+    /**
+     * @return The rejected-rows CSV of a finished job, or null if there is none
+     */
+    public Path getRejectedRowsFile(String jobId) {
+        ImportJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null || !job.finished() || !Files.exists(job.rejectedRows)) {
+            return null;
+        }
+        return job.rejectedRows;
+    }
+
+    private void register(ImportJob job) {
+        List<ImportJob> evicted = new ArrayList<>();
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            Iterator<ImportJob> oldest = jobs.values().iterator();
+            while (jobs.size() > MAX_JOBS && oldest.hasNext()) {
+                ImportJob candidate = oldest.next();
+                if (candidate.finished()) {
+                    oldest.remove();
+                    evicted.add(candidate);
+                }
+            }
+        }
+        for (ImportJob old : evicted) {
+            try {
+                Files.deleteIfExists(old.rejectedRows);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + old.rejectedRows + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void run(ImportJob job) {
+        job.startNanos = System.nanoTime();
+        job.state = JobState.RUNNING;
+        try (InputStream in = new CountingInputStream(Files.newInputStream(job.upload), job.bytesRead);
+             Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             Writer writer = Files.newBufferedWriter(job.rejectedRows, StandardCharsets.UTF_8);
+             CSVPrinter rejectedRows = CSVFormat.DEFAULT.print(writer)) {
+            rejectedRows.printRecord("record_number", "reason", "content", "difficulty", "subject", "correct_answer");
+            questionCsvImporter.importCsv(reader, job.policy, new QuestionCsvImporter.ImportListener() {
+                @Override
+                public void onRejected(CSVRecord record, String reason) {
+                    List<Object> values = new ArrayList<>(record.size() + 2);
+                    values.add(record.getRecordNumber());
+                    values.add(reason);
+                    for (int i = 0; i < record.size(); i++) {
+                        values.add(record.get(i));
+                    }
+                    try {
+                        rejectedRows.printRecord(values);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    job.rejected++;
+                }
+
+                @Override
+                public void onProgress(long rows, long imported, long updated, long duplicates, long rejected) {
+                    job.rows = rows;
+                    job.imported = imported;
+                    job.updated = updated;
+                    job.duplicates = duplicates;
+                    job.rejected = rejected;
+                }
+            });
+            job.state = JobState.DONE;
+        } catch (Exception e) {
+            System.err.println("Question import " + job.id + " (" + job.fileName + ") failed: " + e.getMessage());
+            job.error = e.getMessage();
+            job.state = JobState.FAILED;
+        } finally {
+            job.endNanos = System.nanoTime();
+            try {
+                Files.deleteIfExists(job.upload);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + job.upload + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static ImportStatus status(ImportJob job) {
+        JobState state = job.state;
+        long rows = job.rows;
+        long elapsedNanos = job.startNanos == 0 ? 0
+                : (job.endNanos != 0 ? job.endNanos : System.nanoTime()) - job.startNanos;
+        double seconds = elapsedNanos / 1e9;
+        double rowsPerSecond = seconds > 0 ? rows / seconds : 0.0;
+
+        double fraction = state == JobState.DONE ? 1.0
+                : job.fileSize > 0 ? Math.min(1.0, (double) job.bytesRead.get() / job.fileSize) : 0.0;
+        Long etaSeconds = null;
+        if (job.finished()) {
+            etaSeconds = 0L;
+        } else if (fraction > 0 && seconds > 0) {
+            etaSeconds = Math.round(seconds * (1.0 - fraction) / fraction);
+        }
+        return new ImportStatus(job.id, job.fileName, state, rows, job.imported, job.updated, job.duplicates, job.rejected,
+                Math.round(fraction * 1000) / 10.0, rowsPerSecond, etaSeconds, elapsedNanos / 1_000_000, job.error);
+    }
+}
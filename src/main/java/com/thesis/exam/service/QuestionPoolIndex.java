@@ -0,0 +1,364 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.ItemParameterBank;
+import com.thesis.exam.model.BloomLevel;
+import com.thesis.exam.model.Difficulty;
+import com.thesis.exam.model.Question;
+import com.thesis.exam.repository.QuestionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-memory index of question IDs per subject.
+ *
+ * Each subject has an immutable snapshot of its question pool, grouped by
+ * Difficulty, Bloom level and IRT b-parameter bucket. Exam generation samples
+ * IDs from the snapshot and only fetches the chosen rows by primary key,
+ * replacing the ORDER BY RAND() scans on the question table.
+ *
+ * The snapshot also carries the IRT a/b/c parameters as an ItemParameterBank
+ * for adaptive testing sessions.
+ *
+ * Snapshots are built lazily on first use and replaced (copy-on-write) when
+ * questions are saved, so readers never see a half-updated pool.
+ */
+@Service
+public class QuestionPoolIndex {
+
+    // IRT b parameter is bucketed in steps of 0.5 over -3..+3
+    public static final double B_MIN = -3.0;
+    public static final double B_MAX = 3.0;
+    public static final double B_BUCKET_WIDTH = 0.5;
+    public static final int B_BUCKETS = (int) ((B_MAX - B_MIN) / B_BUCKET_WIDTH);
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    private final Map<Long, SubjectPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Key of a single index cell. A null bloomLevel groups untagged questions.
+     */
+    record CellKey(Difficulty difficulty, BloomLevel bloomLevel, int bBucket) {}
+
+    /**
+     * Immutable snapshot of one subject's pool.
+     */
+    static final class SubjectPool {
+        final long[] ids;
+        final Difficulty[] difficulties;
+        final BloomLevel[] bloomLevels;
+        final double[] aValues;
+        final double[] bValues;
+        final double[] cValues;
+        final Map<Difficulty, long[]> byDifficulty;
+        final Map<CellKey, long[]> byCell;
+        final ItemParameterBank itemBank;
+
+        SubjectPool(long[] ids, Difficulty[] difficulties, BloomLevel[] bloomLevels,
+                    double[] aValues, double[] bValues, double[] cValues) {
+            this.ids = ids;
+            this.difficulties = difficulties;
+            this.bloomLevels = bloomLevels;
+            this.aValues = aValues;
+            this.bValues = bValues;
+            this.cValues = cValues;
+            this.itemBank = new ItemParameterBank(ids, aValues, bValues, cValues);
+
+            Map<Difficulty, List<Long>> difficultyGroups = new EnumMap<>(Difficulty.class);
+            Map<CellKey, List<Long>> cellGroups = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                Difficulty difficulty = difficulties[i];
+                if (difficulty != null) {
+                    difficultyGroups.computeIfAbsent(difficulty, d -> new ArrayList<>()).add(ids[i]);
+                }
+                CellKey key = new CellKey(difficulty, bloomLevels[i], bBucket(bValues[i]));
+                cellGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(ids[i]);
+            }
+
+            Map<Difficulty, long[]> difficultyIndex = new EnumMap<>(Difficulty.class);
+            difficultyGroups.forEach((d, list) -> difficultyIndex.put(d, toArray(list)));
+            Map<CellKey, long[]> cellIndex = new HashMap<>();
+            cellGroups.forEach((k, list) -> cellIndex.put(k, toArray(list)));
+
+            this.byDifficulty = difficultyIndex;
+            this.byCell = cellIndex;
+        }
+
+        int indexOf(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static long[] toArray(List<Long> list) {
+            long[] result = new long[list.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = list.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Map an IRT b parameter to its bucket (0 .. B_BUCKETS-1).
+     */
+    public static int bBucket(double b) {
+        int bucket = (int) Math.floor((b - B_MIN) / B_BUCKET_WIDTH);
+        return Math.max(0, Math.min(B_BUCKETS - 1, bucket));
+    }
+
+    /**
+     * Sample up to count distinct question IDs of the given difficulty.
+     */
+    public List<Long> sample(Long subjectId, Difficulty difficulty, int count) {
+        long[] candidates = pool(subjectId).byDifficulty.getOrDefault(difficulty, new long[0]);
+        return sampleIds(candidates, count, Set.of());
+    }
+
+    /**
+     * Sample up to count distinct question IDs matching the given filters.
+     * Null difficulty or bloomLevel matches any value; minB/maxB bound the IRT b parameter by bucket.
+     */
+    public List<Long> sample(Long subjectId, Difficulty difficulty, BloomLevel bloomLevel,
+                             double minB, double maxB, int count) {
+        SubjectPool pool = pool(subjectId);
+        int minBucket = bBucket(minB);
+        int maxBucket = bBucket(maxB);
+
+        int size = 0;
+        List<long[]> cells = new ArrayList<>();
+        for (Map.Entry<CellKey, long[]> entry : pool.byCell.entrySet()) {
+            CellKey key = entry.getKey();
+            if ((difficulty == null || difficulty == key.difficulty())
+                    && (bloomLevel == null || bloomLevel == key.bloomLevel())
+                    && key.bBucket() >= minBucket && key.bBucket() <= maxBucket) {
+                cells.add(entry.getValue());
+                size += entry.getValue().length;
+            }
+        }
+
+        long[] candidates = new long[size];
+        int offset = 0;
+        for (long[] cell : cells) {
+            System.arraycopy(cell, 0, candidates, offset, cell.length);
+            offset += cell.length;
+        }
+        return sampleIds(candidates, count, Set.of());
+    }
+
+    /**
+     * Sample up to count distinct question IDs from the whole subject pool, skipping excluded IDs.
+     * Used to top up an exam when a difficulty slice runs short.
+     */
+    public List<Long> sampleAny(Long subjectId, int count, Set<Long> excluded) {
+        return sampleIds(pool(subjectId).ids, count, excluded);
+    }
+
+    /**
+     * IRT parameters of every question in a subject, for adaptive testing.
+     */
+    public ItemParameterBank itemBank(Long subjectId) {
+        return pool(subjectId).itemBank;
+    }
+
+    /**
+     * Number of indexed questions for a subject.
+     */
+    public int size(Long subjectId) {
+        return pool(subjectId).ids.length;
+    }
+
+    /**
+     * Patch the index after a single question has been inserted or updated.
+     */
+    public void onQuestionSaved(Question question) {
+        if (question.getId() == null || question.getSubject() == null || question.getSubject().getId() == null) {
+            return;
+        }
+        Long subjectId = question.getSubject().getId();
+
+        // Drop the ID from any other subject it may have moved away from
+        for (Map.Entry<Long, SubjectPool> entry : pools.entrySet()) {
+            if (!entry.getKey().equals(subjectId) && entry.getValue().indexOf(question.getId()) >= 0) {
+                pools.computeIfPresent(entry.getKey(), (id, pool) -> without(pool, question.getId()));
+            }
+        }
+
+        // Only patch pools that are already loaded; others are built on first use
+        pools.computeIfPresent(subjectId, (id, pool) -> with(pool, question));
+    }
+
+    /**
+     * Patch the index after a question's difficulty was reclassified in bulk (no entity at hand).
+     */
+    public void onDifficultyChanged(Long subjectId, long questionId, Difficulty difficulty) {
+        if (subjectId == null) {
+            return;
+        }
+        pools.computeIfPresent(subjectId, (id, pool) -> {
+            int index = pool.indexOf(questionId);
+            if (index < 0 || pool.difficulties[index] == difficulty) {
+                return pool;
+            }
+            Difficulty[] difficulties = Arrays.copyOf(pool.difficulties, pool.difficulties.length);
+            difficulties[index] = difficulty;
+            return new SubjectPool(pool.ids, difficulties, pool.bloomLevels, pool.aValues, pool.bValues, pool.cValues);
+        });
+    }
+
+    /**
+     * Drop a subject's snapshot so it is reloaded from the database on next use.
+     */
+    public void rebuild(Long subjectId) {
+        pools.remove(subjectId);
+    }
+
+    /**
+     * Drop all snapshots.
+     */
+    public void rebuildAll() {
+        pools.clear();
+    }
+
+    private SubjectPool pool(Long subjectId) {
+        return pools.computeIfAbsent(subjectId, this::load);
+    }
+
+    private SubjectPool load(Long subjectId) {
+        List<Object[]> rows = questionRepository.findPoolEntriesBySubjectId(subjectId);
+        int n = rows.size();
+        long[] ids = new long[n];
+        Difficulty[] difficulties = new Difficulty[n];
+        BloomLevel[] bloomLevels = new BloomLevel[n];
+        double[] aValues = new double[n];
+        double[] bValues = new double[n];
+        double[] cValues = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            Object[] row = rows.get(i);
+            ids[i] = ((Number) row[0]).longValue();
+            difficulties[i] = (Difficulty) row[1];
+            bloomLevels[i] = (BloomLevel) row[2];
+            bValues[i] = row[3] != null ? ((Number) row[3]).doubleValue() : 0.0;
+            aValues[i] = row[4] != null ? ((Number) row[4]).doubleValue() : 1.0;
+            cValues[i] = row[5] != null ? ((Number) row[5]).doubleValue() : 0.0;
+        }
+        return new SubjectPool(ids, difficulties, bloomLevels, aValues, bValues, cValues);
+    }
+
+    private static SubjectPool with(SubjectPool pool, Question question) {
+        int index = pool.indexOf(question.getId());
+        int n = pool.ids.length;
+        int size = index >= 0 ? n : n + 1;
+        int slot = index >= 0 ? index : n;
+
+        long[] ids = Arrays.copyOf(pool.ids, size);
+        Difficulty[] difficulties = Arrays.copyOf(pool.difficulties, size);
+        BloomLevel[] bloomLevels = Arrays.copyOf(pool.bloomLevels, size);
+        double[] aValues = Arrays.copyOf(pool.aValues, size);
+        double[] bValues = Arrays.copyOf(pool.bValues, size);
+        double[] cValues = Arrays.copyOf(pool.cValues, size);
+
+        ids[slot] = question.getId();
+        difficulties[slot] = question.getDifficulty();
+        bloomLevels[slot] = question.getBloomLevel();
+        aValues[slot] = question.getIrtDiscrimination() != null ? question.getIrtDiscrimination() : 1.0;
+        bValues[slot] = question.getIrtDifficulty() != null ? question.getIrtDifficulty() : 0.0;
+        cValues[slot] = question.getIrtGuessing() != null ? question.getIrtGuessing() : 0.0;
+        return new SubjectPool(ids, difficulties, bloomLevels, aValues, bValues, cValues);
+    }
+
+    private static SubjectPool without(SubjectPool pool, long questionId) {
+        int index = pool.indexOf(questionId);
+        if (index < 0) {
+            return pool;
+        }
+        int n = pool.ids.length;
+        long[] ids = new long[n - 1];
+        Difficulty[] difficulties = new Difficulty[n - 1];
+        BloomLevel[] bloomLevels = new BloomLevel[n - 1];
+        double[] aValues = new double[n - 1];
+        double[] bValues = new double[n - 1];
+        double[] cValues = new double[n - 1];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (i == index) {
+                continue;
+            }
+            ids[j] = pool.ids[i];
+            difficulties[j] = pool.difficulties[i];
+            bloomLevels[j] = pool.bloomLevels[i];
+            aValues[j] = pool.aValues[i];
+            bValues[j] = pool.bValues[i];
+            cValues[j] = pool.cValues[i];
+            j++;
+        }
+        return new SubjectPool(ids, difficulties, bloomLevels, aValues, bValues, cValues);
+    }
+
+    /**
+     * Pick up to count distinct IDs using Floyd's sampling algorithm.
+     * Time Complexity: O(count), the candidate array is never copied or shuffled.
+     */
+    private static List<Long> sampleIds(long[] candidates, int count, Set<Long> excluded) {
+        int n = candidates.length;
+        int available = n;
+        if (!excluded.isEmpty()) {
+            available = 0;
+            for (long id : candidates) {
+                if (!excluded.contains(id)) {
+                    available++;
+                }
+            }
+        }
+        int k = Math.min(Math.max(count, 0), available);
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> result = new ArrayList<>(k);
+
+        if (excluded.isEmpty()) {
+            Set<Integer> chosen = new HashSet<>();
+            for (int j = n - k; j < n; j++) {
+                int t = random.nextInt(j + 1);
+                int pick = chosen.add(t) ? t : j;
+                chosen.add(pick);
+                result.add(candidates[pick]);
+            }
+            return result;
+        }
+
+        // With exclusions, do a partial Fisher-Yates over the remaining candidates
+        long[] remaining = new long[available];
+        int r = 0;
+        for (long id : candidates) {
+            if (!excluded.contains(id)) {
+                remaining[r++] = id;
+            }
+        }
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(available - i);
+            long temp = remaining[i];
+            remaining[i] = remaining[j];
+            remaining[j] = temp;
+            result.add(remaining[i]);
+        }
+        return result;
+    }
+}
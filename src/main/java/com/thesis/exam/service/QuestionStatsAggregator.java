@@ -0,0 +1,239 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.model.Difficulty;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind aggregator for question statistics.
+ *
+ * processExamResult records one response per question here instead of doing a
+ * read-modify-write and a save per question. Deltas (usage, correct, high/low mastery)
+ * accumulate in memory per question ID and are flushed periodically as batched
+ * "column = column + ?" UPDATEs, so concurrent submissions never lose increments
+ * or wait on each other's row locks. A question's delta is only modified inside
+ * ConcurrentHashMap.compute and a flush takes it out with remove, so every response lands
+ * in exactly one flush with all of its counters.
+ *
+ * After each flush the "Discrimination Index" and "Dynamic Difficulty Reclassification"
+ * algorithms from the thesis are recomputed from the flushed totals of the touched questions.
+ */
+@Service
+public class QuestionStatsAggregator {
+
+    // Mastery thresholds for the Discrimination Index groups
+    public static final double HIGH_MASTERY = 0.7;
+    public static final double LOW_MASTERY = 0.3;
+
+    // Attempts needed before a question is reclassified
+    public static final int RECLASSIFY_MIN_USAGE = 10;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INCREMENT_SQL = "UPDATE question SET "
+            + "usage_count = usage_count + ?, correct_count = correct_count + ?, "
+            + "usage_by_high_mastery = usage_by_high_mastery + ?, correct_by_high_mastery = correct_by_high_mastery + ?, "
+            + "usage_by_low_mastery = usage_by_low_mastery + ?, correct_by_low_mastery = correct_by_low_mastery + ? "
+            + "WHERE id = ?";
+
+    private static final String SELECT_TOTALS_SQL = "SELECT id, subject_id, difficulty, usage_count, correct_count, "
+            + "usage_by_high_mastery, correct_by_high_mastery, usage_by_low_mastery, correct_by_low_mastery "
+            + "FROM question WHERE id IN (%s)";
+
+    private static final String UPDATE_DERIVED_SQL =
+            "UPDATE question SET discrimination_index = ?, difficulty = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QuestionPoolIndex questionPoolIndex;
+
+    private final Map<Long, StatsDelta> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Pending counter deltas for one question. Only modified under the map's lock for its key.
+     */
+    static final class StatsDelta {
+        long usage;
+        long correct;
+        long usageHigh;
+        long correctHigh;
+        long usageLow;
+        long correctLow;
+
+        StatsDelta add(StatsDelta other) {
+            usage += other.usage;
+            correct += other.correct;
+            usageHigh += other.usageHigh;
+            correctHigh += other.correctHigh;
+            usageLow += other.usageLow;
+            correctLow += other.correctLow;
+            return this;
+        }
+    }
+
+    private record FlushedTotals(long id, Long subjectId, Difficulty difficulty, int usage, int correct,
+                                 int usageHigh, int correctHigh, int usageLow, int correctLow) {}
+
+    /**
+     * Record one response to a question.
+     *
+     * @param studentMastery The student's mastery level when answering
+     */
+    public void record(Long questionId, boolean isCorrect, double studentMastery) {
+        pending.compute(questionId, (id, delta) -> {
+            if (delta == null) {
+                delta = new StatsDelta();
+            }
+            delta.usage++;
+            if (isCorrect) {
+                delta.correct++;
+            }
+            if (studentMastery >= HIGH_MASTERY) {
+                delta.usageHigh++;
+                if (isCorrect) {
+                    delta.correctHigh++;
+                }
+            } else if (studentMastery <= LOW_MASTERY) {
+                delta.usageLow++;
+                if (isCorrect) {
+                    delta.correctLow++;
+                }
+            }
+            return delta;
+        });
+    }
+
+    /**
+     * Discrimination Index: DI = P(High) - P(Low)
+     */
+    public static double discriminationIndex(int usageHigh, int correctHigh, int usageLow, int correctLow) {
+        double pHigh = usageHigh > 0 ? (double) correctHigh / usageHigh : 0.0;
+        double pLow = usageLow > 0 ? (double) correctLow / usageLow : 0.0;
+        return pHigh - pLow;
+    }
+
+    /**
+     * Dynamic Difficulty Reclassification based on success rate.
+     * Below 30% correct is HARD, above 80% is EASY, otherwise MEDIUM.
+     * Questions with fewer than RECLASSIFY_MIN_USAGE attempts keep their current difficulty.
+     */
+    public static Difficulty reclassify(Difficulty current, int usage, int correct) {
+        if (usage < RECLASSIFY_MIN_USAGE) {
+            return current;
+        }
+        double successRate = (double) correct / usage;
+        if (successRate < 0.3) {
+            return Difficulty.HARD;
+        } else if (successRate > 0.8) {
+            return Difficulty.EASY;
+        }
+        return Difficulty.MEDIUM;
+    }
+
+    /**
+     * Apply pending deltas to the question table and recompute derived columns.
+     */
+    @Scheduled(fixedDelay = 30000)
+    public synchronized void flush() {
+        List<Object[]> increments = new ArrayList<>();
+        for (Long questionId : pending.keySet()) {
+            // Responses recorded after the remove start a new delta for the next flush
+            StatsDelta delta = pending.remove(questionId);
+            if (delta == null || delta.usage == 0) {
+                continue;
+            }
+            increments.add(new Object[]{delta.usage, delta.correct, delta.usageHigh, delta.correctHigh,
+                    delta.usageLow, delta.correctLow, questionId});
+        }
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        List<FlushedTotals> reclassified = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INCREMENT_SQL, increments);
+                for (int from = 0; from < increments.size(); from += BATCH_SIZE) {
+                    List<Object[]> chunk = increments.subList(from, Math.min(from + BATCH_SIZE, increments.size()));
+                    reclassified.addAll(recomputeDerived(chunk));
+                }
+            });
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            for (Object[] increment : increments) {
+                StatsDelta delta = new StatsDelta();
+                delta.usage = (Long) increment[0];
+                delta.correct = (Long) increment[1];
+                delta.usageHigh = (Long) increment[2];
+                delta.correctHigh = (Long) increment[3];
+                delta.usageLow = (Long) increment[4];
+                delta.correctLow = (Long) increment[5];
+                pending.merge((Long) increment[6], delta, StatsDelta::add);
+            }
+            System.err.println("Failed to flush question statistics: " + e.getMessage());
+            return;
+        }
+
+        // Keep the pool index in step with the new classifications
+        for (FlushedTotals totals : reclassified) {
+            questionPoolIndex.onDifficultyChanged(totals.subjectId(), totals.id(),
+                    reclassify(totals.difficulty(), totals.usage(), totals.correct()));
+        }
+    }
+
+    /**
+     * Read back totals for a chunk of questions and write DI and difficulty.
+     *
+     * @return Questions whose difficulty changed
+     */
+    private List<FlushedTotals> recomputeDerived(List<Object[]> chunk) {
+        StringBuilder placeholders = new StringBuilder();
+        Object[] ids = new Object[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+            ids[i] = chunk.get(i)[6];
+        }
+
+        List<FlushedTotals> totals = jdbcTemplate.query(String.format(SELECT_TOTALS_SQL, placeholders),
+                (rs, rowNum) -> new FlushedTotals(
+                        rs.getLong("id"),
+                        rs.getObject("subject_id") != null ? rs.getLong("subject_id") : null,
+                        rs.getString("difficulty") != null ? Difficulty.valueOf(rs.getString("difficulty")) : null,
+                        rs.getInt("usage_count"), rs.getInt("correct_count"),
+                        rs.getInt("usage_by_high_mastery"), rs.getInt("correct_by_high_mastery"),
+                        rs.getInt("usage_by_low_mastery"), rs.getInt("correct_by_low_mastery")),
+                ids);
+
+        List<Object[]> updates = new ArrayList<>(totals.size());
+        List<FlushedTotals> changed = new ArrayList<>();
+        for (FlushedTotals t : totals) {
+            double di = discriminationIndex(t.usageHigh(), t.correctHigh(), t.usageLow(), t.correctLow());
+            Difficulty difficulty = reclassify(t.difficulty(), t.usage(), t.correct());
+            updates.add(new Object[]{di, difficulty != null ? difficulty.name() : null, t.id()});
+            if (difficulty != t.difficulty()) {
+                changed.add(t);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPDATE_DERIVED_SQL, updates);
+        return changed;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,335 @@
+package com.thesis.exam.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of every scored response (student, exam, question, answer, correct, response time).
+ *
+ * Events are stored as fixed-width 64-byte records in numbered segment files
+ * (responses-NNNNNN.log). Answer text is variable length, so it goes to a companion
+ * file (responses-NNNNNN.ans) and the record keeps its offset and length.
+ * A segment is closed once it holds SEGMENT_RECORDS records or MAX_SEGMENT_ANSWER_BYTES of answers.
+ *
+ * Readers replay history through a Cursor over memory-mapped segments, so batch jobs
+ * (IRT calibration, analytics, model training) scan responses sequentially without
+ * going through JPA.
+ */
+@Service
+public class ResponseEventLog {
+
+    public static final int RECORD_SIZE = 64;
+    public static final int SEGMENT_RECORDS = 1 << 20;                  // 64 MB of records
+    public static final long MAX_SEGMENT_ANSWER_BYTES = 256L * 1024 * 1024;
+
+    // Record layout (byte offsets)
+    private static final int TIMESTAMP = 0;
+    private static final int STUDENT_ID = 8;
+    private static final int EXAM_ID = 16;
+    private static final int SUBJECT_ID = 24;
+    private static final int QUESTION_ID = 32;
+    private static final int ANSWER_OFFSET = 40;
+    private static final int ANSWER_LENGTH = 48;      // -1 if no answer text
+    private static final int RESPONSE_TIME = 52;      // milliseconds, -1 if unknown
+    private static final int CORRECT = 56;            // 1 or 0; bytes 57-63 are padding
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("responses-(\\d{6})\\.log");
+
+    @Value("${exam.response-log.dir:data/response-log}")
+    private String directory;
+
+    private Path logDirectory;
+    private int activeSegment;
+    private FileChannel recordChannel;
+    private FileChannel answerChannel;
+    private long activeRecords;
+    private long activeAnswerBytes;
+
+    /**
+     * One response to append. answer may be null and responseTimeMillis -1 when unknown.
+     */
+    public record ResponseEvent(long studentId, long examId, long subjectId, long questionId,
+                                String answer, boolean correct, int responseTimeMillis) {}
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        logDirectory = Paths.get(directory);
+        Files.createDirectories(logDirectory);
+        List<Integer> segments = listSegments();
+        activeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        openActiveSegment();
+        System.out.println("Response event log: " + logDirectory.toAbsolutePath() + ", segment " + activeSegment
+                + " with " + activeRecords + " records");
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (recordChannel != null) {
+            recordChannel.close();
+            answerChannel.close();
+        }
+    }
+
+    /**
+     * Append events and force them to disk. Answers are written before the records that point to them.
+     */
+    public synchronized void append(List<ResponseEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            if (activeRecords > 0 && (activeRecords + events.size() > SEGMENT_RECORDS
+                    || activeAnswerBytes >= MAX_SEGMENT_ANSWER_BYTES)) {
+                roll();
+            }
+
+            long timestamp = System.currentTimeMillis();
+            List<byte[]> answers = new ArrayList<>(events.size());
+            int answerBytes = 0;
+            for (ResponseEvent event : events) {
+                byte[] answer = event.answer() != null ? event.answer().getBytes(StandardCharsets.UTF_8) : null;
+                answers.add(answer);
+                answerBytes += answer != null ? answer.length : 0;
+            }
+
+            ByteBuffer answerBuffer = ByteBuffer.allocate(answerBytes);
+            ByteBuffer recordBuffer = ByteBuffer.allocate(events.size() * RECORD_SIZE);
+            long answerOffset = activeAnswerBytes;
+            for (int i = 0; i < events.size(); i++) {
+                ResponseEvent event = events.get(i);
+                byte[] answer = answers.get(i);
+                int base = i * RECORD_SIZE;
+                recordBuffer.putLong(base + TIMESTAMP, timestamp);
+                recordBuffer.putLong(base + STUDENT_ID, event.studentId());
+                recordBuffer.putLong(base + EXAM_ID, event.examId());
+                recordBuffer.putLong(base + SUBJECT_ID, event.subjectId());
+                recordBuffer.putLong(base + QUESTION_ID, event.questionId());
+                recordBuffer.putLong(base + ANSWER_OFFSET, answerOffset);
+                recordBuffer.putInt(base + ANSWER_LENGTH, answer != null ? answer.length : -1);
+                recordBuffer.putInt(base + RESPONSE_TIME, event.responseTimeMillis());
+                recordBuffer.put(base + CORRECT, (byte) (event.correct() ? 1 : 0));
+                if (answer != null) {
+                    answerBuffer.put(answer);
+                    answerOffset += answer.length;
+                }
+            }
+
+            answerBuffer.flip();
+            while (answerBuffer.hasRemaining()) {
+                answerChannel.write(answerBuffer);
+            }
+            answerChannel.force(false);
+            while (recordBuffer.hasRemaining()) {
+                recordChannel.write(recordBuffer);
+            }
+            recordChannel.force(false);
+
+            activeAnswerBytes = answerOffset;
+            activeRecords += events.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append response events", e);
+        }
+    }
+
+    /**
+     * Open a cursor over every event committed so far, oldest first.
+     * Events appended after this call are not visible to the cursor.
+     */
+    public Cursor openCursor() {
+        List<Integer> segments;
+        int lastSegment;
+        long lastRecords;
+        long lastAnswerBytes;
+        // The active segment and its counts must come from the same moment, before any roll
+        synchronized (this) {
+            try {
+                segments = listSegments();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to list response log segments", e);
+            }
+            lastSegment = activeSegment;
+            lastRecords = activeRecords;
+            lastAnswerBytes = activeAnswerBytes;
+        }
+
+        int[] numbers = new int[segments.size()];
+        long[] recordCounts = new long[segments.size()];
+        long[] answerSizes = new long[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            numbers[i] = segments.get(i);
+            if (numbers[i] == lastSegment) {
+                recordCounts[i] = lastRecords;
+                answerSizes[i] = lastAnswerBytes;
+            } else {
+                try {
+                    recordCounts[i] = Files.size(recordPath(numbers[i])) / RECORD_SIZE;
+                    answerSizes[i] = Files.size(answerPath(numbers[i]));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read response log segment " + numbers[i], e);
+                }
+            }
+        }
+        return new Cursor(numbers, recordCounts, answerSizes);
+    }
+
+    /**
+     * Forward-only view over the log. next() moves to the following event; the getters read
+     * the current record straight from the mapped segment.
+     */
+    public final class Cursor implements AutoCloseable {
+        private final int[] segments;
+        private final long[] recordCounts;
+        private final long[] answerSizes;
+
+        private int segmentIndex = -1;
+        private MappedByteBuffer records;
+        private MappedByteBuffer answers;
+        private long recordIndex = 0;
+        private int base = -RECORD_SIZE;
+
+        private Cursor(int[] segments, long[] recordCounts, long[] answerSizes) {
+            this.segments = segments;
+            this.recordCounts = recordCounts;
+            this.answerSizes = answerSizes;
+        }
+
+        public boolean next() {
+            while (segmentIndex < 0 || recordIndex >= recordCounts[segmentIndex]) {
+                if (segmentIndex + 1 >= segments.length) {
+                    return false;
+                }
+                segmentIndex++;
+                recordIndex = 0;
+                records = map(recordPath(segments[segmentIndex]), recordCounts[segmentIndex] * RECORD_SIZE);
+                answers = null;
+            }
+            base = (int) (recordIndex * RECORD_SIZE);
+            recordIndex++;
+            return true;
+        }
+
+        public long timestamp() {
+            return records.getLong(base + TIMESTAMP);
+        }
+
+        public long studentId() {
+            return records.getLong(base + STUDENT_ID);
+        }
+
+        public long examId() {
+            return records.getLong(base + EXAM_ID);
+        }
+
+        public long subjectId() {
+            return records.getLong(base + SUBJECT_ID);
+        }
+
+        public long questionId() {
+            return records.getLong(base + QUESTION_ID);
+        }
+
+        public boolean correct() {
+            return records.get(base + CORRECT) != 0;
+        }
+
+        public int responseTimeMillis() {
+            return records.getInt(base + RESPONSE_TIME);
+        }
+
+        /**
+         * The answer text, or null if none was recorded. Maps the segment's answer file on first use.
+         */
+        public String answer() {
+            int length = records.getInt(base + ANSWER_LENGTH);
+            if (length < 0) {
+                return null;
+            }
+            if (answers == null) {
+                answers = map(answerPath(segments[segmentIndex]), answerSizes[segmentIndex]);
+            }
+            byte[] bytes = new byte[length];
+            answers.get((int) records.getLong(base + ANSWER_OFFSET), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            // Mappings are released by the garbage collector; drop the references
+            records = null;
+            answers = null;
+            segmentIndex = segments.length;
+        }
+    }
+
+    private void roll() throws IOException {
+        recordChannel.close();
+        answerChannel.close();
+        activeSegment++;
+        openActiveSegment();
+    }
+
+    private void openActiveSegment() throws IOException {
+        recordChannel = FileChannel.open(recordPath(activeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        answerChannel = FileChannel.open(answerPath(activeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Drop a partial record left behind by a crash in the middle of a write
+        long size = recordChannel.size();
+        activeRecords = size / RECORD_SIZE;
+        if (size % RECORD_SIZE != 0) {
+            recordChannel.truncate(activeRecords * RECORD_SIZE);
+        }
+        activeAnswerBytes = answerChannel.size();
+        recordChannel.position(activeRecords * RECORD_SIZE);
+        answerChannel.position(activeAnswerBytes);
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path recordPath(int segment) {
+        return logDirectory.resolve(String.format("responses-%06d.log", segment));
+    }
+
+    private Path answerPath(int segment) {
+        return logDirectory.resolve(String.format("responses-%06d.ans", segment));
+    }
+
+    private static MappedByteBuffer map(Path path, long length) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map " + path, e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.thesis.exam.service;
+
+/**
+ * The last WINDOW answers of one student in one subject, as fixed-size primitive ring buffers.
+ *
+ * Correctness is a bit mask (newest answer in bit 0) and response times a float ring with a
+ * running sum, so recording an answer and reading either feature are O(1). Answers without a
+ * response time count for accuracy only. Not thread-safe; StudentFeatureStore guards access.
+ */
+final class ResponseWindow {
+
+    public static final int WINDOW = 10;
+
+    private static final long MASK = (1L << WINDOW) - 1;
+
+    private long correctBits;
+    private int answers;
+    private final float[] times = new float[WINDOW];  // seconds
+    private int timeCount;
+    private int timeHead;
+    private double timeSum;
+
+    /**
+     * @param responseTimeMillis Response time, or a negative value if unknown
+     */
+    void record(boolean correct, int responseTimeMillis) {
+        correctBits = ((correctBits << 1) | (correct ? 1 : 0)) & MASK;
+        if (answers < WINDOW) {
+            answers++;
+        }
+        if (responseTimeMillis >= 0) {
+            addTime(responseTimeMillis / 1000.0f);
+        }
+    }
+
+    private void addTime(float seconds) {
+        if (timeCount == WINDOW) {
+            timeSum -= times[timeHead];
+        } else {
+            timeCount++;
+        }
+        times[timeHead] = seconds;
+        timeSum += seconds;
+        timeHead = (timeHead + 1) % WINDOW;
+    }
+
+    /**
+     * Share of correct answers in the window, or NaN if there are none.
+     */
+    double recentAccuracy() {
+        return answers > 0 ? (double) Long.bitCount(correctBits) / answers : Double.NaN;
+    }
+
+    /**
+     * Average response time in seconds over the window, or NaN if no time was recorded.
+     */
+    double averageResponseTime() {
+        return timeCount > 0 ? timeSum / timeCount : Double.NaN;
+    }
+
+    int answers() {
+        return answers;
+    }
+
+    long correctBits() {
+        return correctBits;
+    }
+
+    /**
+     * Response times oldest first, comma separated (the persisted form).
+     */
+    String timesAsText() {
+        StringBuilder text = new StringBuilder();
+        int oldest = timeCount == WINDOW ? timeHead : 0;
+        for (int i = 0; i < timeCount; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(times[(oldest + i) % WINDOW]);
+        }
+        return text.toString();
+    }
+
+    static ResponseWindow restore(long correctBits, int answers, String timesText) {
+        ResponseWindow window = new ResponseWindow();
+        window.correctBits = correctBits & MASK;
+        window.answers = Math.min(answers, WINDOW);
+        if (timesText != null && !timesText.isEmpty()) {
+            for (String time : timesText.split(",")) {
+                window.addTime(Float.parseFloat(time));
+            }
+        }
+        return window;
+    }
+}
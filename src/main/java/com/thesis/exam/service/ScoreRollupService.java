@@ -0,0 +1,407 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.model.RollupScope;
+import com.thesis.exam.model.ScoreRollup;
+import com.thesis.exam.repository.ScoreRollupRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pre-aggregated exam score summaries (score_rollup) per subject, per student and subject, and per day.
+ *
+ * processExamResult adds each submission to its three rollup rows with one batched upsert
+ * ("column = column + VALUES(column)"), so concurrent submissions never lose an update and the
+ * analytics pages read a few summary rows instead of the exam history. A submission is counted
+ * once: the upsert commits together with the submission's scored_submission row, keyed on the
+ * assignment (or on the exam when it was submitted without one), so every student of a shared
+ * exam is counted and a resubmission is not added again.
+ *
+ * rebuild() recomputes all rows from scored_submission in parallel chunks in the background, e.g.
+ * after a backfill or a change to the rollups; it first adds completed assignments and scored
+ * exams missing from scored_submission (such as on the first deploy). It runs at startup when the
+ * rollups do not count every recorded submission. Submissions keep being recorded meanwhile: those
+ * after the rebuild's snapshot only get their scored_submission row and are added to the rebuilt
+ * rows once these have replaced the old ones, so none is lost or counted twice.
+ */
+@Service
+public class ScoreRollupService {
+
+    public static final int HISTOGRAM_BUCKETS = 10;
+
+    // Submission IDs per rebuild chunk (one query and one partial aggregate each)
+    private static final int REBUILD_CHUNK_SIZE = 20_000;
+
+    private static final String UPSERT_SQL = "INSERT INTO score_rollup (rollup_key, scope, subject_id, student_id, day, "
+            + "exam_count, score_sum, score_sum_squares, min_score, max_score, "
+            + "hist0, hist1, hist2, hist3, hist4, hist5, hist6, hist7, hist8, hist9) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE exam_count = exam_count + VALUES(exam_count), "
+            + "score_sum = score_sum + VALUES(score_sum), score_sum_squares = score_sum_squares + VALUES(score_sum_squares), "
+            + "min_score = LEAST(min_score, VALUES(min_score)), max_score = GREATEST(max_score, VALUES(max_score)), "
+            + "hist0 = hist0 + VALUES(hist0), hist1 = hist1 + VALUES(hist1), hist2 = hist2 + VALUES(hist2), "
+            + "hist3 = hist3 + VALUES(hist3), hist4 = hist4 + VALUES(hist4), hist5 = hist5 + VALUES(hist5), "
+            + "hist6 = hist6 + VALUES(hist6), hist7 = hist7 + VALUES(hist7), hist8 = hist8 + VALUES(hist8), "
+            + "hist9 = hist9 + VALUES(hist9)";
+
+    // INSERT IGNORE reports 0 rows for a submission already recorded (ON DUPLICATE KEY UPDATE would report 1)
+    private static final String INSERT_SUBMISSION_SQL = "INSERT IGNORE INTO scored_submission "
+            + "(submission_key, subject_id, student_id, day, score) VALUES (?, ?, ?, ?, ?)";
+
+    // Completed assignments and scored exams without an assignment, as the live path records them
+    private static final String BACKFILL_ASSIGNMENTS_SQL = "INSERT IGNORE INTO scored_submission "
+            + "(submission_key, subject_id, student_id, day, score) "
+            + "SELECT CONCAT('A:', a.id), e.subject_id, a.student_id, DATE(a.completed_at), a.score / 100 "
+            + "FROM exam_assignment a JOIN exam e ON e.id = a.exam_id "
+            + "WHERE a.status IN ('COMPLETED', 'GRADED') AND a.score IS NOT NULL";
+
+    private static final String BACKFILL_EXAMS_SQL = "INSERT IGNORE INTO scored_submission "
+            + "(submission_key, subject_id, student_id, day, score) "
+            + "SELECT CONCAT('E:', e.id), e.subject_id, e.student_id, DATE(e.created_at), e.score "
+            + "FROM exam e WHERE e.score IS NOT NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM exam_assignment a WHERE a.exam_id = e.id)";
+
+    private static final String SELECT_ID_RANGE_SQL = "SELECT MIN(id), MAX(id) FROM scored_submission";
+
+    private static final String SELECT_CHUNK_SQL = "SELECT subject_id, student_id, day, score "
+            + "FROM scored_submission WHERE id BETWEEN ? AND ?";
+
+    private static final String SELECT_AFTER_SQL = "SELECT subject_id, student_id, day, score "
+            + "FROM scored_submission WHERE id > ?";
+
+    private static final String DELETE_ALL_SQL = "DELETE FROM score_rollup";
+
+    private static final String COUNT_SUBMISSIONS_SQL =
+            "SELECT COUNT(*) FROM scored_submission WHERE subject_id IS NOT NULL";
+
+    private static final String COUNT_ROLLUP_EXAMS_SQL =
+            "SELECT COALESCE(SUM(exam_count), 0) FROM score_rollup WHERE scope = 'SUBJECT'";
+
+    @Autowired
+    private ScoreRollupRepository rollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("examGenerationExecutor")
+    private ExecutorService executor;
+
+    private final BackgroundJob<RebuildReport> job = new BackgroundJob<>("Score rollup rebuild", this::runRebuild);
+
+    // Writers of scored_submission hold the read lock; a rebuild takes the write lock only to take
+    // its snapshot and to add the deferred submissions, so no insert is in flight at those points
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    // Set (under the write lock) while a rebuild replaces the rows: records only write scored_submission
+    private volatile boolean deferring;
+
+    /**
+     * Summary of a rebuild run.
+     *
+     * @param backfilled Submissions added to scored_submission from the exam history
+     */
+    public record RebuildReport(long backfilled, long exams, int rollupRows, int chunks, long elapsedMillis) {}
+
+    /**
+     * Mutable partial aggregate of one rollup row.
+     */
+    private static final class Accumulator {
+        final String key;
+        final RollupScope scope;
+        final Long subjectId;
+        final Long studentId;
+        final LocalDate day;
+        long count;
+        double sum;
+        double sumSquares;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        final long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+        Accumulator(String key, RollupScope scope, Long subjectId, Long studentId, LocalDate day) {
+            this.key = key;
+            this.scope = scope;
+            this.subjectId = subjectId;
+            this.studentId = studentId;
+            this.day = day;
+        }
+
+        void add(double score) {
+            count++;
+            sum += score;
+            sumSquares += score * score;
+            min = Math.min(min, score);
+            max = Math.max(max, score);
+            histogram[bucket(score)]++;
+        }
+
+        void merge(Accumulator other) {
+            count += other.count;
+            sum += other.sum;
+            sumSquares += other.sumSquares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram[i] += other.histogram[i];
+            }
+        }
+    }
+
+    /**
+     * Histogram bucket of a score (0 to 1); scores of 1.0 go into the last bucket.
+     */
+    public static int bucket(double score) {
+        return Math.max(0, Math.min(HISTOGRAM_BUCKETS - 1, (int) (score * HISTOGRAM_BUCKETS)));
+    }
+
+    /**
+     * Add a submission to its subject, student-subject and day rollups, in one transaction with its
+     * scored_submission row. A submission recorded before is left unchanged.
+     *
+     * @param submissionKey "A:<assignmentId>", or "E:<examId>" for an exam submitted without an assignment
+     * @param day Day the submission was completed
+     * @param score Exam score (0 to 1)
+     * @return Whether the submission was added (false if it had been recorded before)
+     */
+    public boolean record(String submissionKey, Long subjectId, Long studentId, LocalDate day, double score) {
+        Map<String, Accumulator> rows = new HashMap<>();
+        addToRollups(rows, subjectId, studentId, day, score);
+        rebuildLock.readLock().lock();
+        try {
+            Boolean recorded = transactionTemplate.execute(status -> {
+                if (jdbcTemplate.update(INSERT_SUBMISSION_SQL, submissionKey, subjectId, studentId,
+                        day != null ? Date.valueOf(day) : null, score) == 0) {
+                    return false;
+                }
+                // While a rebuild replaces the rows, it adds this submission afterwards
+                if (!deferring) {
+                    upsert(new ArrayList<>(rows.values()));
+                }
+                return true;
+            });
+            return Boolean.TRUE.equals(recorded);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild the rollups after startup if submissions are missing from scored_submission or the
+     * rollups do not count every recorded submission, e.g. on the first deploy with existing exams.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        long backfilled = backfill();
+        Long submissions = jdbcTemplate.queryForObject(COUNT_SUBMISSIONS_SQL, Long.class);
+        Long counted = jdbcTemplate.queryForObject(COUNT_ROLLUP_EXAMS_SQL, Long.class);
+        if (backfilled > 0 || (submissions != null && !submissions.equals(counted))) {
+            System.out.println("Score rollup: " + counted + " of " + submissions + " submissions counted, rebuilding");
+            job.run();
+        }
+    }
+
+    public List<ScoreRollup> getSubjectRollups() {
+        return rollupRepository.findByScope(RollupScope.SUBJECT);
+    }
+
+    public List<ScoreRollup> getStudentRollups(Long studentId) {
+        return rollupRepository.findByScopeAndStudentId(RollupScope.STUDENT_SUBJECT, studentId);
+    }
+
+    /**
+     * Day rollups of the last given number of days, most recent first.
+     */
+    public List<ScoreRollup> getDailyRollups(int days) {
+        return rollupRepository.findByScopeAndDayGreaterThanEqualOrderByDayDesc(RollupScope.DAY,
+                LocalDate.now().minusDays(days - 1L));
+    }
+
+    /**
+     * Start recomputing every rollup row in the background (see runRebuild).
+     *
+     * @return The status of the started rebuild, or null if a rebuild is already in progress
+     */
+    public BackgroundJob.JobStatus<RebuildReport> rebuild() {
+        return job.start();
+    }
+
+    public BackgroundJob.JobStatus<RebuildReport> getRebuildStatus() {
+        return job.getStatus();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+
+    /**
+     * Recompute every rollup row from scored_submission. Chunks of submission IDs up to a snapshot
+     * are aggregated in parallel without blocking submissions, and the merged rows replace the old
+     * ones in one transaction; submissions recorded after the snapshot are then added to them.
+     */
+    private RebuildReport runRebuild() {
+        long start = System.nanoTime();
+        long backfilled = backfill();
+
+        long[] range;
+        rebuildLock.writeLock().lock();
+        try {
+            range = jdbcTemplate.queryForObject(SELECT_ID_RANGE_SQL,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            deferring = true;
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+        long minId = range != null ? range[0] : 0;
+        long snapshotId = range != null ? range[1] : 0;
+
+        List<Callable<Map<String, Accumulator>>> tasks = new ArrayList<>();
+        List<Accumulator> rows;
+        try {
+            for (long from = minId; snapshotId > 0 && from <= snapshotId; from += REBUILD_CHUNK_SIZE) {
+                long chunkFrom = from;
+                long chunkTo = Math.min(snapshotId, from + REBUILD_CHUNK_SIZE - 1);
+                tasks.add(() -> aggregate(SELECT_CHUNK_SQL, chunkFrom, chunkTo));
+            }
+
+            Map<String, Accumulator> merged = new HashMap<>();
+            try {
+                for (Future<Map<String, Accumulator>> future : executor.invokeAll(tasks)) {
+                    for (Accumulator partial : future.get().values()) {
+                        Accumulator row = merged.get(partial.key);
+                        if (row == null) {
+                            merged.put(partial.key, partial);
+                        } else {
+                            row.merge(partial);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Rollup rebuild was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Rollup rebuild failed", e.getCause());
+            }
+
+            rows = new ArrayList<>(merged.values());
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(DELETE_ALL_SQL);
+                upsert(rows);
+            });
+        } finally {
+            // Also after a failure, when the old rows are still in place
+            addDeferred(snapshotId);
+        }
+
+        long exams = 0;
+        for (Accumulator row : rows) {
+            if (row.scope == RollupScope.SUBJECT) {
+                exams += row.count;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Score rollup rebuild: " + exams + " submissions (" + backfilled + " backfilled) in "
+                + tasks.size() + " chunks, " + rows.size() + " rows in " + elapsedMillis + " ms");
+        return new RebuildReport(backfilled, exams, rows.size(), tasks.size(), elapsedMillis);
+    }
+
+    /**
+     * Add the submissions recorded during a rebuild (after its snapshot) to the rollups and resume
+     * live updates.
+     */
+    private void addDeferred(long snapshotId) {
+        rebuildLock.writeLock().lock();
+        try {
+            List<Accumulator> rows = new ArrayList<>(aggregate(SELECT_AFTER_SQL, snapshotId).values());
+            if (!rows.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> upsert(rows));
+            }
+        } finally {
+            deferring = false;
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add completed assignments and scored exams that have no scored_submission row yet.
+     *
+     * @return Submissions added
+     */
+    private long backfill() {
+        rebuildLock.readLock().lock();
+        try {
+            return (long) jdbcTemplate.update(BACKFILL_ASSIGNMENTS_SQL) + jdbcTemplate.update(BACKFILL_EXAMS_SQL);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Accumulator> aggregate(String sql, Object... args) {
+        Map<String, Accumulator> rows = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            Long studentId = rs.getObject("student_id") != null ? rs.getLong("student_id") : null;
+            Date day = rs.getDate("day");
+            addToRollups(rows, rs.getLong("subject_id"), studentId,
+                    day != null ? day.toLocalDate() : null, rs.getDouble("score"));
+        }, args);
+        return rows;
+    }
+
+    private static void addToRollups(Map<String, Accumulator> rows, Long subjectId, Long studentId,
+                                     LocalDate day, double score) {
+        if (subjectId != null) {
+            rows.computeIfAbsent("S:" + subjectId,
+                    key -> new Accumulator(key, RollupScope.SUBJECT, subjectId, null, null)).add(score);
+            if (studentId != null) {
+                rows.computeIfAbsent("SS:" + subjectId + ":" + studentId,
+                        key -> new Accumulator(key, RollupScope.STUDENT_SUBJECT, subjectId, studentId, null)).add(score);
+            }
+        }
+        if (day != null) {
+            rows.computeIfAbsent("D:" + day,
+                    key -> new Accumulator(key, RollupScope.DAY, null, null, day)).add(score);
+        }
+    }
+
+    private void upsert(List<Accumulator> rows) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, 1000, (ps, row) -> {
+            ps.setString(1, row.key);
+            ps.setString(2, row.scope.name());
+            ps.setObject(3, row.subjectId);
+            ps.setObject(4, row.studentId);
+            ps.setObject(5, row.day != null ? Date.valueOf(row.day) : null);
+            ps.setLong(6, row.count);
+            ps.setDouble(7, row.sum);
+            ps.setDouble(8, row.sumSquares);
+            ps.setDouble(9, row.min);
+            ps.setDouble(10, row.max);
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                ps.setLong(11 + i, row.histogram[i]);
+            }
+        });
+    }
+}
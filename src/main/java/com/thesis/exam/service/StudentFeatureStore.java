@@ -0,0 +1,210 @@
+package com.thesis.exam.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-student, per-subject performance features for difficulty prediction: average response time
+ * and accuracy over the last ResponseWindow.WINDOW answers.
+ *
+ * processExamResult records every answer here, so features are maintained incrementally in
+ * memory and exam generation reads them in O(1) without a query. At most MAX_ENTRIES windows
+ * are kept; the least recently used are dropped. Changed windows are written behind to
+ * student_feature in batches, and reloaded from there (or rebuilt from the ResponseEventLog
+ * when the table is empty) after a restart.
+ */
+@Service
+public class StudentFeatureStore {
+
+    public static final int MAX_ENTRIES = 200_000;
+
+    // Used by exam generation when a student has no recorded response times yet
+    public static final double DEFAULT_RESPONSE_TIME = 60.0;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SELECT_RECENT_SQL = "SELECT student_id, subject_id, recent_correct_bits, recent_answers, "
+            + "recent_response_times FROM student_feature ORDER BY updated_at DESC LIMIT " + MAX_ENTRIES;
+
+    private static final String UPSERT_SQL = "INSERT INTO student_feature (feature_key, student_id, subject_id, "
+            + "recent_correct_bits, recent_answers, recent_response_times, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE recent_correct_bits = VALUES(recent_correct_bits), "
+            + "recent_answers = VALUES(recent_answers), recent_response_times = VALUES(recent_response_times), "
+            + "updated_at = VALUES(updated_at)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ResponseEventLog responseEventLog;
+
+    private record FeatureKey(long studentId, long subjectId) {}
+
+    /**
+     * Features of one student in one subject.
+     *
+     * @param averageResponseTime Seconds, NaN if no response time was recorded
+     * @param recentAccuracy 0-1, NaN if there are no answers
+     * @param recentAnswers Answers in the window
+     */
+    public record StudentFeatures(double averageResponseTime, double recentAccuracy, int recentAnswers) {}
+
+    private record FeatureRow(FeatureKey key, long correctBits, int answers, String times) {}
+
+    private final Map<FeatureKey, ResponseWindow> windows = newWindowMap();
+
+    private final Set<FeatureKey> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Access-ordered map that keeps at most MAX_ENTRIES windows, dropping the least recently used.
+     */
+    private static Map<FeatureKey, ResponseWindow> newWindowMap() {
+        return new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FeatureKey, ResponseWindow> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Record one answer.
+     *
+     * @param responseTimeMillis Response time, or a negative value if unknown
+     */
+    public void record(long studentId, long subjectId, boolean correct, int responseTimeMillis) {
+        FeatureKey key = new FeatureKey(studentId, subjectId);
+        synchronized (windows) {
+            windows.computeIfAbsent(key, k -> new ResponseWindow()).record(correct, responseTimeMillis);
+        }
+        dirty.add(key);
+    }
+
+    /**
+     * Current features, or null if no answers of the student in the subject are in memory.
+     */
+    public StudentFeatures getFeatures(long studentId, long subjectId) {
+        synchronized (windows) {
+            ResponseWindow window = windows.get(new FeatureKey(studentId, subjectId));
+            return window != null
+                    ? new StudentFeatures(window.averageResponseTime(), window.recentAccuracy(), window.answers())
+                    : null;
+        }
+    }
+
+    /**
+     * Load the most recently updated windows, or rebuild them from the response history if none
+     * were persisted yet. Windows already updated by new answers are kept.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        List<FeatureRow> rows = new ArrayList<>();
+        jdbcTemplate.query(SELECT_RECENT_SQL, rs -> {
+            rows.add(new FeatureRow(new FeatureKey(rs.getLong("student_id"), rs.getLong("subject_id")),
+                    rs.getLong("recent_correct_bits"), rs.getInt("recent_answers"), rs.getString("recent_response_times")));
+        });
+
+        Map<FeatureKey, ResponseWindow> loaded = new LinkedHashMap<>();
+        boolean fromLog = rows.isEmpty();
+        if (fromLog) {
+            // Bounded like windows: the least recently answered windows are dropped during the
+            // replay, and the most recently answered end up most recently used
+            Map<FeatureKey, ResponseWindow> replayed = newWindowMap();
+            try (ResponseEventLog.Cursor cursor = responseEventLog.openCursor()) {
+                while (cursor.next()) {
+                    replayed.computeIfAbsent(new FeatureKey(cursor.studentId(), cursor.subjectId()),
+                            key -> new ResponseWindow()).record(cursor.correct(), cursor.responseTimeMillis());
+                }
+            }
+            loaded = replayed;
+        } else {
+            // Oldest first, so the most recently updated windows end up most recently used
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                FeatureRow row = rows.get(i);
+                loaded.put(row.key(), ResponseWindow.restore(row.correctBits(), row.answers(), row.times()));
+            }
+        }
+
+        int added = 0;
+        synchronized (windows) {
+            for (Map.Entry<FeatureKey, ResponseWindow> entry : loaded.entrySet()) {
+                if (windows.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    added++;
+                    if (fromLog) {
+                        dirty.add(entry.getKey());
+                    }
+                }
+            }
+        }
+        System.out.println("Student feature store: loaded " + added + " windows from "
+                + (fromLog ? "the response log" : "student_feature") + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Write changed windows to student_feature.
+     */
+    @Scheduled(fixedDelay = 30000)
+    public synchronized void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<FeatureRow> rows = new ArrayList<>();
+        for (FeatureKey key : dirty) {
+            // Removed before reading, so an answer recorded meanwhile marks the key again
+            dirty.remove(key);
+            synchronized (windows) {
+                ResponseWindow window = windows.get(key);
+                if (window != null) {
+                    rows.add(new FeatureRow(key, window.correctBits(), window.answers(), window.timesAsText()));
+                }
+            }
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+                        ps.setString(1, row.key().studentId() + ":" + row.key().subjectId());
+                        ps.setLong(2, row.key().studentId());
+                        ps.setLong(3, row.key().subjectId());
+                        ps.setLong(4, row.correctBits());
+                        ps.setInt(5, row.answers());
+                        ps.setString(6, row.times());
+                        ps.setTimestamp(7, now);
+                    }));
+        } catch (RuntimeException e) {
+            // Retry the rows with the next flush
+            for (FeatureRow row : rows) {
+                dirty.add(row.key());
+            }
+            System.err.println("Failed to write " + rows.size() + " student feature windows: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
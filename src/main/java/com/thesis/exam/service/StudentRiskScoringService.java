@@ -0,0 +1,435 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.algorithms.RandomForestAnalyticsAlgorithm;
+import com.thesis.exam.algorithms.RandomForestModel;
+import com.thesis.exam.model.StudentRiskScore;
+import com.thesis.exam.repository.StudentRiskScoreRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Nightly at-risk scoring of every student.
+ *
+ * One forward-only, streaming query returns each student's average mastery, assignment counts
+ * and scored exams, ordered by student, so the job never loads entities or the whole history.
+ *
+ * The run reads that stream twice. The first pass trains the random forest: every student with
+ * at least two scored exams gives one sample, the features of their history before the latest
+ * exam labelled 1 if that exam scored at least PASSING_SCORE, else 0 (a reservoir keeps at most
+ * MAX_TRAINING_SAMPLES). The second pass is cut into partitions of students; each partition is
+ * scored in parallel (calculateRiskScore, generateStudentAnalytics and the forest's probability
+ * of passing the next exam) and upserted into student_risk_score with one JDBC batch. Dashboards
+ * read that table directly. Nightly and on-demand runs (start) execute on the job's own thread.
+ */
+@Service
+public class StudentRiskScoringService {
+
+    // Students per scored and written partition
+    private static final int PARTITION_SIZE = 1000;
+
+    // Risk score from which a student is listed as at risk
+    public static final double AT_RISK_THRESHOLD = 0.5;
+
+    // ASSIGNED assignments older than this count as missed deadlines
+    private static final int DEADLINE_DAYS = 7;
+
+    // Exam score from which an exam counts as passed in the training labels
+    public static final double PASSING_SCORE = 0.6;
+
+    // Fewer training samples than this keep the previous forest (or none)
+    private static final int MIN_TRAINING_SAMPLES = 50;
+
+    // Students sampled for training at most
+    private static final int MAX_TRAINING_SAMPLES = 100_000;
+
+    private static final String SELECT_HISTORY_SQL = "SELECT s.id AS student_id, m.mastery, "
+            + "a.assigned, a.completed, a.overdue, e.score "
+            + "FROM student s "
+            + "LEFT JOIN (SELECT student_id, AVG(mastery_level) AS mastery FROM student_subject_mastery "
+            + "GROUP BY student_id) m ON m.student_id = s.id "
+            + "LEFT JOIN (SELECT student_id, COUNT(*) AS assigned, "
+            + "SUM(status IN ('COMPLETED', 'GRADED')) AS completed, "
+            + "SUM(status = 'ASSIGNED' AND assigned_at < ?) AS overdue "
+            + "FROM exam_assignment GROUP BY student_id) a ON a.student_id = s.id "
+            + "LEFT JOIN exam e ON e.student_id = s.id AND e.score IS NOT NULL "
+            + "ORDER BY s.id, e.id";
+
+    private static final String UPSERT_SQL = "INSERT INTO student_risk_score (student_id, mastery_level, average_score, "
+            + "exam_count, attendance, missed_deadlines, trend, consistency, predicted_next_score, predicted_pass, "
+            + "risk_score, scored_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE mastery_level = VALUES(mastery_level), average_score = VALUES(average_score), "
+            + "exam_count = VALUES(exam_count), attendance = VALUES(attendance), "
+            + "missed_deadlines = VALUES(missed_deadlines), trend = VALUES(trend), consistency = VALUES(consistency), "
+            + "predicted_next_score = VALUES(predicted_next_score), predicted_pass = VALUES(predicted_pass), "
+            + "risk_score = VALUES(risk_score), scored_at = VALUES(scored_at)";
+
+    @Autowired
+    private RandomForestAnalyticsAlgorithm randomForestAlgorithm;
+
+    @Autowired
+    private StudentRiskScoreRepository riskScoreRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final BackgroundJob<ScoringReport> job = new BackgroundJob<>("At-risk scoring", this::runScoring);
+
+    /**
+     * Metrics of one scoring run.
+     *
+     * @param rows History rows streamed from the database by the scoring pass
+     * @param atRisk Students with a risk score of at least AT_RISK_THRESHOLD
+     * @param trainingSamples Samples the forest was trained on (0 if too few to train)
+     * @param featureImportance Permutation importance of each feature for the trained forest, or
+     *                          empty if no forest was trained
+     */
+    public record ScoringReport(int students, long rows, int atRisk, int partitions, int trainingSamples,
+                                Map<String, Double> featureImportance, long elapsedMillis, double rowsPerSecond) {}
+
+    /**
+     * @param samples Samples the forest was trained on (0 if too few to train)
+     * @param featureImportance Importance per feature name, empty if no forest was trained
+     */
+    private record TrainingResult(int samples, Map<String, Double> featureImportance) {}
+
+    private record StudentHistory(long studentId, double mastery, int assigned, int completed, int overdue,
+                                  double[] scores) {}
+
+    @Scheduled(cron = "0 30 2 * * *")
+    public void nightlyScoring() {
+        start();
+    }
+
+    /**
+     * Score every student on the calling thread.
+     *
+     * @return The run's metrics, or null if a run is already in progress
+     */
+    public ScoringReport scoreAllStudents() {
+        return job.run();
+    }
+
+    /**
+     * Start a scoring run in the background.
+     *
+     * @return The status of the started run, or null if a run is already in progress
+     */
+    public BackgroundJob.JobStatus<ScoringReport> start() {
+        return job.start();
+    }
+
+    public BackgroundJob.JobStatus<ScoringReport> getStatus() {
+        return job.getStatus();
+    }
+
+    public ScoringReport getLastReport() {
+        return job.getLastReport();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+
+    /**
+     * Most at-risk students of the last run, highest risk first.
+     */
+    public List<StudentRiskScore> getAtRiskStudents() {
+        return riskScoreRepository.findTop50ByRiskScoreGreaterThanEqualOrderByRiskScoreDesc(AT_RISK_THRESHOLD);
+    }
+
+    public long countAtRiskStudents() {
+        return riskScoreRepository.countByRiskScoreGreaterThanEqual(AT_RISK_THRESHOLD);
+    }
+
+    private ScoringReport runScoring() {
+        long start = System.nanoTime();
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        Deque<Future<Integer>> pending = new ArrayDeque<>();
+        int[] atRisk = {0};
+        int[] partitions = {0};
+        int[] students = {0};
+        List<StudentHistory> partition = new ArrayList<>(PARTITION_SIZE);
+        Timestamp scoredAt = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp overdueBefore = Timestamp.valueOf(LocalDateTime.now().minusDays(DEADLINE_DAYS));
+        long rows;
+        TrainingResult training;
+
+        try {
+            training = trainForest(overdueBefore, pool);
+            RandomForestModel forest = randomForestAlgorithm.getModel();
+
+            rows = streamHistories(overdueBefore, history -> {
+                students[0]++;
+                partition.add(history);
+                if (partition.size() == PARTITION_SIZE) {
+                    submit(new ArrayList<>(partition), pool, pending, forest, scoredAt, cores, atRisk);
+                    partition.clear();
+                    partitions[0]++;
+                }
+            });
+            if (!partition.isEmpty()) {
+                submit(partition, pool, pending, forest, scoredAt, 0, atRisk);
+                partitions[0]++;
+            }
+            while (!pending.isEmpty()) {
+                atRisk[0] += await(pending.poll());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        double rowsPerSecond = elapsedMillis > 0 ? rows * 1000.0 / elapsedMillis : rows;
+        System.out.println("At-risk scoring: " + students[0] + " students (" + atRisk[0] + " at risk) from "
+                + rows + " rows in " + elapsedMillis + " ms (" + String.format("%.0f", rowsPerSecond)
+                + " rows/sec), forest trained on " + training.samples() + " students"
+                + (training.featureImportance().isEmpty() ? "" : ", feature importance " + training.featureImportance()));
+        return new ScoringReport(students[0], rows, atRisk[0], partitions[0], training.samples(),
+                training.featureImportance(), elapsedMillis, rowsPerSecond);
+    }
+
+    /**
+     * Train the forest on the streamed histories: each student with at least two scored exams is
+     * one sample of the features before their latest exam, labelled by whether it was passed.
+     * The new forest's permutation importance is then computed on the same samples.
+     *
+     * @return The training samples (0 if there were too few and the model was kept) and feature importance
+     */
+    private TrainingResult trainForest(Timestamp overdueBefore, ForkJoinPool pool) {
+        int featureCount = RandomForestAnalyticsAlgorithm.FEATURE_NAMES.length;
+        double[][] samples = new double[MAX_TRAINING_SAMPLES][];
+        double[] targets = new double[MAX_TRAINING_SAMPLES];
+        int[] count = {0};
+        long[] seen = {0};
+        SplittableRandom random = new SplittableRandom(42);
+
+        streamHistories(overdueBefore, history -> {
+            double[] scores = history.scores();
+            if (scores.length < 2) {
+                return;
+            }
+            // Reservoir sampling: every eligible student is kept with the same probability
+            long index = seen[0]++;
+            int slot = index < MAX_TRAINING_SAMPLES ? (int) index : (int) random.nextLong(index + 1);
+            if (slot >= MAX_TRAINING_SAMPLES) {
+                return;
+            }
+            double[] features = new double[featureCount];
+            fillFeatures(features, history.mastery(), Arrays.stream(scores, 0, scores.length - 1).average().orElse(0.0),
+                    scores.length - 1, attendance(history));
+            samples[slot] = features;
+            targets[slot] = scores[scores.length - 1] >= PASSING_SCORE ? 1.0 : 0.0;
+            count[0] = Math.max(count[0], slot + 1);
+        });
+
+        if (count[0] < MIN_TRAINING_SAMPLES) {
+            return new TrainingResult(0, Map.of());
+        }
+        double[][] trainingSamples = Arrays.copyOf(samples, count[0]);
+        double[] trainingTargets = Arrays.copyOf(targets, count[0]);
+        RandomForestModel forest = randomForestAlgorithm.train(trainingSamples, trainingTargets,
+                RandomForestAnalyticsAlgorithm.TrainingOptions.defaults(featureCount), pool);
+        Map<String, Double> importance = randomForestAlgorithm.calculateFeatureImportance(forest,
+                RandomForestAnalyticsAlgorithm.FEATURE_NAMES, trainingSamples, trainingTargets,
+                RandomForestAnalyticsAlgorithm.DEFAULT_PERMUTATION_REPEATS, pool);
+        return new TrainingResult(count[0], importance);
+    }
+
+    /**
+     * Stream every student's history, in student ID order, to the consumer.
+     *
+     * @return Number of rows read
+     */
+    private long streamHistories(Timestamp overdueBefore, Consumer<StudentHistory> consumer) {
+        long[] rows = {0};
+        StreamState state = new StreamState(consumer);
+        jdbcTemplate.query(connection -> {
+            // Forward-only, read-only with fetch size MIN_VALUE: MySQL streams the rows one by one
+            PreparedStatement ps = connection.prepareStatement(SELECT_HISTORY_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, overdueBefore);
+            return ps;
+        }, rs -> {
+            rows[0]++;
+            long studentId = rs.getLong("student_id");
+            if (state.studentId != studentId) {
+                state.finishStudent();
+                state.studentId = studentId;
+                state.mastery = rs.getDouble("mastery");
+                state.assigned = rs.getInt("assigned");
+                state.completed = rs.getInt("completed");
+                state.overdue = rs.getInt("overdue");
+            }
+            double score = rs.getDouble("score");
+            if (!rs.wasNull()) {
+                state.addScore(score);
+            }
+        });
+        state.finishStudent();
+        return rows[0];
+    }
+
+    private static double attendance(StudentHistory history) {
+        return history.assigned() > 0 ? (double) history.completed() / history.assigned() : 1.0;
+    }
+
+    /**
+     * Feature vector in RandomForestAnalyticsAlgorithm.FEATURE_NAMES order.
+     */
+    private static void fillFeatures(double[] features, double mastery, double averageScore, int exams,
+                                     double attendance) {
+        features[0] = mastery;
+        features[1] = averageScore;
+        features[2] = 0.0; // Study time is not recorded
+        features[3] = exams;
+        features[4] = attendance;
+    }
+
+    /**
+     * Hand the current partition to the pool. At most maxPending partitions are queued,
+     * so the reader cannot run ahead of the scoring and hold the whole table in memory.
+     */
+    private void submit(List<StudentHistory> partition, ForkJoinPool pool, Deque<Future<Integer>> pending,
+                        RandomForestModel forest, Timestamp scoredAt, int maxPending, int[] atRisk) {
+        pending.add(pool.submit(() -> scorePartition(partition, forest, scoredAt)));
+        while (maxPending > 0 && pending.size() > maxPending * 2) {
+            atRisk[0] += await(pending.poll());
+        }
+    }
+
+    private static int await(Future<Integer> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("At-risk scoring was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("At-risk scoring failed", e.getCause());
+        }
+    }
+
+    /**
+     * Score one partition and write it.
+     *
+     * @return Number of students at risk in the partition
+     */
+    private int scorePartition(List<StudentHistory> partition, RandomForestModel forest, Timestamp scoredAt) {
+        List<StudentRiskScore> results = new ArrayList<>(partition.size());
+        double[] features = new double[RandomForestAnalyticsAlgorithm.FEATURE_NAMES.length];
+        int atRisk = 0;
+        for (StudentHistory history : partition) {
+            StudentRiskScore result = new StudentRiskScore();
+            result.setStudentId(history.studentId());
+            result.setMasteryLevel(history.mastery());
+            result.setExamCount(history.scores().length);
+            result.setAttendance(attendance(history));
+            result.setMissedDeadlines(history.overdue());
+
+            if (history.scores().length > 0) {
+                Map<String, Object> analytics = randomForestAlgorithm.generateStudentAnalytics(
+                        history.mastery(), history.scores(), history.scores().length);
+                result.setAverageScore((Double) analytics.get("averageScore"));
+                result.setTrend((String) analytics.get("trend"));
+                result.setConsistency((Double) analytics.get("consistency"));
+                result.setPredictedNextScore((Double) analytics.get("predictedNextScore"));
+            } else {
+                // No scored exams yet: mastery is the only evidence
+                result.setAverageScore(history.mastery());
+                result.setTrend("stable");
+                result.setConsistency(1.0);
+                result.setPredictedNextScore(history.mastery());
+            }
+
+            if (forest != null && forest.featureCount() == features.length) {
+                fillFeatures(features, result.getMasteryLevel(), result.getAverageScore(), result.getExamCount(),
+                        result.getAttendance());
+                result.setPredictedPass(forest.predict(features));
+            }
+
+            result.setRiskScore(randomForestAlgorithm.calculateRiskScore(result.getMasteryLevel(),
+                    result.getAttendance(), result.getAverageScore(), result.getMissedDeadlines()));
+            if (result.getRiskScore() >= AT_RISK_THRESHOLD) {
+                atRisk++;
+            }
+            results.add(result);
+        }
+
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(UPSERT_SQL, results, PARTITION_SIZE, (ps, row) -> {
+                    ps.setLong(1, row.getStudentId());
+                    ps.setDouble(2, row.getMasteryLevel());
+                    ps.setDouble(3, row.getAverageScore());
+                    ps.setInt(4, row.getExamCount());
+                    ps.setDouble(5, row.getAttendance());
+                    ps.setInt(6, row.getMissedDeadlines());
+                    ps.setString(7, row.getTrend());
+                    ps.setDouble(8, row.getConsistency());
+                    ps.setDouble(9, row.getPredictedNextScore());
+                    ps.setObject(10, row.getPredictedPass());
+                    ps.setDouble(11, row.getRiskScore());
+                    ps.setTimestamp(12, scoredAt);
+                }));
+        return atRisk;
+    }
+
+    /**
+     * The student currently being read from the stream.
+     */
+    private static final class StreamState {
+        final Consumer<StudentHistory> consumer;
+        long studentId = -1;
+        double mastery;
+        int assigned;
+        int completed;
+        int overdue;
+        double[] scores = new double[16];
+        int scoreCount;
+
+        StreamState(Consumer<StudentHistory> consumer) {
+            this.consumer = consumer;
+        }
+
+        void addScore(double score) {
+            if (scoreCount == scores.length) {
+                scores = Arrays.copyOf(scores, scoreCount * 2);
+            }
+            scores[scoreCount++] = score;
+        }
+
+        void finishStudent() {
+            if (studentId < 0) {
+                return;
+            }
+            consumer.accept(new StudentHistory(studentId, mastery, assigned, completed, overdue,
+                    Arrays.copyOf(scores, scoreCount)));
+            studentId = -1;
+            scoreCount = 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.thesis.exam.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paginated student roster for the teacher's student management page.
+ *
+ * Pages use keyset pagination: the next page starts after the last row's sort value and ID
+ * instead of at an OFFSET, so every page costs the same however deep the teacher pages. Each sort
+ * reads a (sort column, id) index of the student table: name_sort and email_sort are non-null
+ * columns generated from the name and email, and exam_count is incremented here whenever an exam
+ * is generated (and recounted at startup for students whose count has drifted), so no page
+ * aggregates the exam table.
+ */
+@Service
+public class StudentRosterService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final String INCREMENT_EXAM_COUNT_SQL = "UPDATE student SET exam_count = exam_count + 1 WHERE id = ?";
+
+    // Each student's exam_count next to the actual number of exams
+    private static final String EXAM_COUNTS_JOIN = "student s LEFT JOIN "
+            + "(SELECT student_id, COUNT(*) AS exam_count FROM exam WHERE student_id IS NOT NULL GROUP BY student_id) c "
+            + "ON c.student_id = s.id";
+
+    private static final String COUNT_DRIFTED_SQL = "SELECT COUNT(*) FROM " + EXAM_COUNTS_JOIN
+            + " WHERE s.exam_count <> COALESCE(c.exam_count, 0)";
+
+    private static final String RECOUNT_EXAMS_SQL = "UPDATE " + EXAM_COUNTS_JOIN
+            + " SET s.exam_count = COALESCE(c.exam_count, 0) WHERE s.exam_count <> COALESCE(c.exam_count, 0)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public enum RosterSort {
+        NAME("s.name_sort"),
+        EMAIL("s.email_sort"),
+        EXAM_COUNT("s.exam_count");
+
+        private final String column;
+
+        RosterSort(String column) {
+            this.column = column;
+        }
+    }
+
+    /**
+     * @param search Text contained in the name or email (null or blank for all students)
+     * @param minExams Minimum exam count, or null
+     * @param maxExams Maximum exam count, or null
+     * @param afterValue Sort value of the previous page's last row (null for the first page)
+     * @param afterId ID of the previous page's last row (null for the first page)
+     */
+    public record RosterQuery(String search, Integer minExams, Integer maxExams, RosterSort sort,
+                              boolean descending, String afterValue, Long afterId, int pageSize) {}
+
+    public record RosterRow(long id, String name, String email, boolean emailVerified, long examCount) {}
+
+    /**
+     * One page of the roster.
+     *
+     * @param nextAfterValue Value to pass as afterValue for the next page (null on the last page)
+     * @param nextAfterId ID to pass as afterId for the next page (null on the last page)
+     */
+    public record RosterPage(List<RosterRow> rows, String nextAfterValue, Long nextAfterId) {
+        public boolean hasNext() {
+            return nextAfterId != null;
+        }
+    }
+
+    /**
+     * Count a newly generated exam for its student.
+     */
+    public void recordExam(Long studentId) {
+        if (studentId != null) {
+            jdbcTemplate.update(INCREMENT_EXAM_COUNT_SQL, studentId);
+        }
+    }
+
+    /**
+     * Count newly generated exams for their students (one per entry), as one batch in the caller's
+     * transaction.
+     */
+    public void recordExams(List<Long> studentIds) {
+        jdbcTemplate.batchUpdate(INCREMENT_EXAM_COUNT_SQL, studentIds, 1000,
+                (ps, studentId) -> ps.setLong(1, studentId));
+    }
+
+    /**
+     * Recount the exams of every student whose count differs from the exam table after startup,
+     * e.g. on the first deploy with the exam_count column.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void recountOnStartup() {
+        Long drifted = jdbcTemplate.queryForObject(COUNT_DRIFTED_SQL, Long.class);
+        if (drifted != null && drifted > 0) {
+            long start = System.nanoTime();
+            int recounted = jdbcTemplate.update(RECOUNT_EXAMS_SQL);
+            System.out.println("Student roster: recounted the exams of " + recounted + " students in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    public RosterPage findPage(RosterQuery query) {
+        RosterSort sort = query.sort() != null ? query.sort() : RosterSort.NAME;
+        int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, query.pageSize()));
+
+        StringBuilder sql = new StringBuilder("SELECT s.id, s.name, s.email, s.email_verified, s.exam_count FROM student s");
+        List<Object> params = new ArrayList<>();
+
+        List<String> conditions = new ArrayList<>();
+        if (query.search() != null && !query.search().isBlank()) {
+            String pattern = "%" + escapeLike(query.search().trim()) + "%";
+            conditions.add("(s.name LIKE ? OR s.email LIKE ?)");
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (query.minExams() != null) {
+            conditions.add("s.exam_count >= ?");
+            params.add(query.minExams());
+        }
+        if (query.maxExams() != null) {
+            conditions.add("s.exam_count <= ?");
+            params.add(query.maxExams());
+        }
+        Object afterValue = sort == RosterSort.EXAM_COUNT ? parseCount(query.afterValue()) : query.afterValue();
+        if (query.afterId() != null && afterValue != null) {
+            // Rows strictly after (afterValue, afterId) in the page order, a range of the sort index
+            String op = query.descending() ? "<" : ">";
+            conditions.add("(" + sort.column + ", s.id) " + op + " (?, ?)");
+            params.add(afterValue);
+            params.add(query.afterId());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        String direction = query.descending() ? " DESC" : " ASC";
+        sql.append(" ORDER BY ").append(sort.column).append(direction).append(", s.id").append(direction);
+        sql.append(" LIMIT ?");
+        params.add(pageSize + 1); // One extra row tells whether there is a next page
+
+        List<RosterRow> rows = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new RosterRow(
+                rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getBoolean("email_verified"),
+                rs.getLong("exam_count")), params.toArray());
+
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+        }
+        if (!hasNext) {
+            return new RosterPage(rows, null, null);
+        }
+        RosterRow last = rows.get(rows.size() - 1);
+        String nextAfterValue = switch (sort) {
+            case NAME -> last.name() != null ? last.name() : "";
+            case EMAIL -> last.email() != null ? last.email() : "";
+            case EXAM_COUNT -> Long.toString(last.examCount());
+        };
+        return new RosterPage(rows, nextAfterValue, last.id());
+    }
+
+    /**
+     * An exam count cursor value, or null if it is missing or malformed (the roster then starts
+     * again at the first page).
+     */
+    private static Long parseCount(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,98 @@
+package com.thesis.exam.service;
+
+import com.thesis.exam.model.ScoreRollup;
+import com.thesis.exam.model.Subject;
+import com.thesis.exam.repository.ExamRepository;
+import com.thesis.exam.repository.StudentRepository;
+import com.thesis.exam.repository.SubjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary figures for the teacher analytics page.
+ *
+ * Score figures come from the pre-aggregated subject and day rows of ScoreRollupService,
+ * so the cost of a page view does not grow with the exam history. The summary is cached
+ * for exam.analytics.cache-ttl-seconds; a TTL of 0 reads the rollups on every call.
+ */
+@Service
+public class TeacherAnalyticsService {
+
+    // Days shown in the recent activity table
+    private static final int RECENT_DAYS = 14;
+
+    @Autowired
+    private ExamRepository examRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    @Autowired
+    private ScoreRollupService scoreRollupService;
+
+    @Value("${exam.analytics.cache-ttl-seconds:30}")
+    private long cacheTtlSeconds;
+
+    private volatile AnalyticsSummary cachedSummary;
+
+    private volatile long cachedAtNanos;
+
+    /**
+     * Score statistics of the scored exams of one subject.
+     *
+     * @param histogram Exams per score bucket ([0, 0.1), [0.1, 0.2), ... [0.9, 1.0])
+     */
+    public record SubjectScoreStats(String subjectName, long examCount, double averageScore,
+                                    double minScore, double maxScore, double scoreStdDev, long[] histogram) {}
+
+    /**
+     * @param averageScore Average score of all scored exams (0 if none)
+     * @param recentDays Day rollups of the last RECENT_DAYS days, most recent first
+     */
+    public record AnalyticsSummary(long totalStudents, long totalExams, double averageScore,
+                                   List<SubjectScoreStats> subjectStats, List<ScoreRollup> recentDays) {}
+
+    public AnalyticsSummary getSummary() {
+        AnalyticsSummary summary = cachedSummary;
+        if (summary != null && System.nanoTime() - cachedAtNanos < cacheTtlSeconds * 1_000_000_000L) {
+            return summary;
+        }
+        summary = loadSummary();
+        cachedSummary = summary;
+        cachedAtNanos = System.nanoTime();
+        return summary;
+    }
+
+    private AnalyticsSummary loadSummary() {
+        Map<Long, String> subjectNames = new HashMap<>();
+        for (Subject subject : subjectRepository.findAll()) {
+            subjectNames.put(subject.getId(), subject.getName());
+        }
+
+        List<SubjectScoreStats> subjectStats = new ArrayList<>();
+        long scoredExams = 0;
+        double scoreSum = 0.0;
+        for (ScoreRollup rollup : scoreRollupService.getSubjectRollups()) {
+            subjectStats.add(new SubjectScoreStats(subjectNames.getOrDefault(rollup.getSubjectId(), "#" + rollup.getSubjectId()),
+                    rollup.getExamCount(), rollup.getAverage(), rollup.getMinScore(), rollup.getMaxScore(),
+                    rollup.getStdDev(), rollup.getHistogram()));
+            scoredExams += rollup.getExamCount();
+            scoreSum += rollup.getScoreSum();
+        }
+        subjectStats.sort(Comparator.comparing(SubjectScoreStats::subjectName));
+
+        return new AnalyticsSummary(studentRepository.count(), examRepository.count(),
+                scoredExams > 0 ? scoreSum / scoredExams : 0.0, List.copyOf(subjectStats),
+                scoreRollupService.getDailyRollups(RECENT_DAYS));
+    }
+}
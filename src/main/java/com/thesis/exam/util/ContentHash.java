@@ -0,0 +1,52 @@
+package com.thesis.exam.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Hash of a question's normalized content, used to detect the same question imported twice.
+ * Questions whose text differs only in case, whitespace, Unicode form or a trailing period
+ * get the same hash.
+ */
+public final class ContentHash {
+
+    // Hex SHA-256
+    public static final int LENGTH = 64;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private ContentHash() {
+    }
+
+    /**
+     * NFKC, lowercase, trim, collapse whitespace and drop a trailing period.
+     */
+    public static String normalize(String content) {
+        if (content == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(content, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1).trim();
+        }
+        return normalized;
+    }
+
+    /**
+     * Hex SHA-256 of the normalized content.
+     */
+    public static String of(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalize(content).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+document.addEventListener('DOMContentLoaded', function() {
+    // Time spent on each question, sent with the exam as time_{questionId} in milliseconds.
+    // The question the student last focused, clicked or typed in is the one being timed;
+    // time while the page is hidden is not counted.
+    var form = document.querySelector('.submit-form');
+    if (!form) {
+        return;
+    }
+    var spent = {};
+    var inputs = {};
+    var active = null;
+    var since = Date.now();
+
+    document.querySelectorAll('.question-item[data-question-id]').forEach(function(item) {
+        var id = item.getAttribute('data-question-id');
+        spent[id] = 0;
+        var input = document.createElement('input');
+        input.type = 'hidden';
+        input.name = 'time_' + id;
+        input.value = '0';
+        form.appendChild(input);
+        inputs[id] = input;
+
+        ['focusin', 'pointerdown', 'input'].forEach(function(type) {
+            item.addEventListener(type, function() {
+                switchTo(id);
+            });
+        });
+    });
+
+    function charge() {
+        var now = Date.now();
+        if (active !== null && !document.hidden) {
+            spent[active] += now - since;
+        }
+        since = now;
+    }
+
+    function switchTo(id) {
+        if (id !== active) {
+            charge();
+            active = id;
+        }
+    }
+
+    document.addEventListener('visibilitychange', charge);
+
+    form.addEventListener('submit', function() {
+        charge();
+        Object.keys(inputs).forEach(function(id) {
+            inputs[id].value = String(spent[id]);
+        });
+    });
+});
@@ -0,0 +1,145 @@
+package com.thesis.exam.algorithms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The bucketed maximum-information search must pick the same item information as a full scan.
+ */
+class IRTBloomTaxonomyAlgorithmTest {
+
+    private final IRTBloomTaxonomyAlgorithm algorithm = new IRTBloomTaxonomyAlgorithm();
+
+    @Test
+    void findsItemWhenBucketsAroundThetaAreEmpty() {
+        ItemParameterBank bank = new ItemParameterBank(new long[]{1, 2},
+                new double[]{1.0, 1.0}, new double[]{-2.0, 2.0}, new double[]{0.0, 0.0});
+
+        int selected = algorithm.selectNextQuestion(0.0, bank, new BitSet());
+
+        assertNotEquals(-1, selected);
+        assertEquals(-1, algorithm.selectNextQuestion(0.0, bank, allAsked(bank)));
+    }
+
+    @Test
+    void randomesqueFindsKItemsInSparseBank() {
+        ItemParameterBank bank = new ItemParameterBank(new long[]{1, 2, 3},
+                new double[]{1.2, 0.8, 2.0}, new double[]{-3.0, 0.9, 3.5}, new double[]{0.2, 0.0, 0.25});
+        BitSet asked = new BitSet();
+        asked.set(0);
+
+        for (int run = 0; run < 100; run++) {
+            int selected = algorithm.selectNextQuestion(-1.0, bank, asked, 5);
+            assertTrue(selected == 1 || selected == 2, "selected " + selected);
+        }
+    }
+
+    @Test
+    void matchesLinearScanOnRandomBanks() {
+        Random random = new Random(42);
+        for (int run = 0; run < 2000; run++) {
+            int size = run % 10 == 0 ? 3000 : 1 + random.nextInt(60);
+            ItemParameterBank bank = randomBank(random, size, run % 3 == 0);
+            double theta = -4.5 + 9 * random.nextDouble();
+            BitSet asked = randomAsked(random, size);
+
+            double[] info = algorithm.calculateInformation(theta, bank);
+            int selected = algorithm.selectNextQuestion(theta, bank, asked);
+            int expected = linearScan(info, asked);
+
+            if (expected == -1) {
+                assertEquals(-1, selected);
+            } else {
+                assertNotEquals(-1, selected, "run " + run);
+                assertTrue(!asked.get(selected), "run " + run);
+                assertEquals(info[expected], info[selected], "run " + run);
+            }
+        }
+    }
+
+    @Test
+    void randomesqueSelectsOneOfTheTopKItems() {
+        Random random = new Random(7);
+        int k = 5;
+        for (int run = 0; run < 2000; run++) {
+            int size = 1 + random.nextInt(run % 10 == 0 ? 3000 : 60);
+            ItemParameterBank bank = randomBank(random, size, run % 3 == 0);
+            double theta = -4.5 + 9 * random.nextDouble();
+            BitSet asked = randomAsked(random, size);
+
+            double[] info = algorithm.calculateInformation(theta, bank);
+            double[] unasked = new double[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (!asked.get(i)) {
+                    unasked[count++] = info[i];
+                }
+            }
+            int selected = algorithm.selectNextQuestion(theta, bank, asked, k);
+
+            if (count == 0) {
+                assertEquals(-1, selected);
+                continue;
+            }
+            double[] sorted = Arrays.copyOf(unasked, count);
+            Arrays.sort(sorted);
+            double kthBest = sorted[Math.max(0, count - k)];
+            assertNotEquals(-1, selected, "run " + run);
+            assertTrue(!asked.get(selected), "run " + run);
+            assertTrue(info[selected] >= kthBest, "run " + run);
+        }
+    }
+
+    /**
+     * Random 3PL parameters; sparse banks put every item on one of a few b values far apart.
+     */
+    private static ItemParameterBank randomBank(Random random, int size, boolean sparse) {
+        long[] ids = new long[size];
+        double[] a = new double[size];
+        double[] b = new double[size];
+        double[] c = new double[size];
+        double[] clusters = {-3.5, -1.0, 2.0, 4.2};
+        for (int i = 0; i < size; i++) {
+            ids[i] = i + 1;
+            a[i] = 0.2 + 2.3 * random.nextDouble();
+            b[i] = sparse ? clusters[random.nextInt(clusters.length)] + 0.05 * random.nextGaussian()
+                    : -4.5 + 9 * random.nextDouble();
+            c[i] = 0.3 * random.nextDouble();
+        }
+        return new ItemParameterBank(ids, a, b, c);
+    }
+
+    private static BitSet randomAsked(Random random, int size) {
+        BitSet asked = new BitSet(size);
+        double share = random.nextDouble();
+        for (int i = 0; i < size; i++) {
+            if (random.nextDouble() < share) {
+                asked.set(i);
+            }
+        }
+        return asked;
+    }
+
+    private static BitSet allAsked(ItemParameterBank bank) {
+        BitSet asked = new BitSet(bank.size());
+        asked.set(0, bank.size());
+        return asked;
+    }
+
+    private static int linearScan(double[] info, BitSet asked) {
+        int best = -1;
+        for (int i = 0; i < info.length; i++) {
+            if (!asked.get(i) && (best == -1 || info[i] > info[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}